@@ -0,0 +1,159 @@
+package oozeWars;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * <center><b>ALLOCATIONCHECK.JAVA</b></center>
+ * Checks that a headless game of OozeWars allocates nothing on the heap while nothing happens in
+ *    it, and exits with status 1 if it does.
+ *
+ * <p>A game is started the way OozeWars does, with no one playing, and stepped for a while first
+ *    so the arrays and lists the tick reuses have grown about as big as they need to.  Then the
+ *    Schedule measures the bytes allocated on the stepping thread in every tick, and every
+ *    <i>quiet</i> tick has to have allocated none.  A tick is quiet if the game had the same
+ *    number of Particles before and after it, no Agent was registered during it, and no Particle
+ *    had more neighbors than any had before.  The ticks that aren't are the game's own events,
+ *    such as a Particle or PowerUp appearing or a PowerUp being collected, each of which makes
+ *    the objects it is made of, or a crowd that makes every list of neighbors grow.
+ *
+ * <p>Registering an Agent, such as the GunEnabler every shot schedules, is left out on purpose.
+ *    Schedule.schedule() makes a new QueueElement every time, since the QueueElement is the
+ *    Handle it returns, and callers such as a Blob keep their Handles to cancel them later.  A
+ *    pooled QueueElement could be reused for another Agent while an old Handle to it is still
+ *    held, and cancelling that Handle would then unregister the wrong Agent.
+ *
+ * <p>The same game is played through twice and only the second is checked, since the first time
+ *    the JVM runs some code, such as a PowerUp's Effect wearing off, it may load a class or link
+ *    a call and allocate while doing it.
+ *
+ * <p>Every quiet tick that allocates is printed, with the bytes of each of the ParticleManager's
+ *    phases, followed by how many ticks were quiet.  See SimulationBenchmark for the bytes per
+ *    tick of bigger games.
+ *
+ * <p>Usage: <code>java oozeWars.AllocationCheck [ticks] [warmup] [seed] [-wheel]</code>
+ */
+public class AllocationCheck
+{
+	//The most failing ticks printed
+	private static final int MAX_PRINTED = 20;
+
+	/**
+	 * Runs the check, printing what it found and exiting with status 1 if a quiet tick allocated.
+	 * @param args
+	 * :  Optionally, the number of ticks checked (default 20000), the number of ticks stepped
+	 *    first (default 5000), the seed of the game (default 325), and <code>-wheel</code> to use
+	 *    the TimingWheelSchedule.
+	 */
+	public static void main(String[] args)
+	{
+		boolean wheel = false;
+		long[] numbers = {20000, 5000, 325};
+		int count = 0;
+		for(String arg : args)
+		{
+			if(arg.equals("-wheel"))
+				wheel = true;
+			else if(count < numbers.length)
+				numbers[count++] = Long.parseLong(arg);
+		}
+		int ticks = (int)numbers[0];
+		int warmup = (int)numbers[1];
+		long seed = numbers[2];
+
+		run(seed, warmup, ticks, wheel, false);
+		int failed = run(seed, warmup, ticks, wheel, true);
+		if(failed > 0)
+		{
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/*
+	 * Plays a game and returns the number of quiet ticks that allocated, printing them if asked.
+	 */
+	private static int run(long seed, int warmup, int ticks, boolean wheel, boolean print)
+	{
+		OozeWars game = new OozeWars(30, 2, wheel);
+		game.random.setSeed(seed);
+		game.reset();
+		for(int i = 0; i < warmup && game.getWinner() < 0; i++)
+			game.step();
+
+		Schedule queue = game.queue;
+		ParticleStore store = game.getParticleStore();
+		queue.setMeasuringAllocations(true);
+		game.setTimingPhases(true);
+		PhaseTimer timer = game.getPhaseTimer();
+		long[] phaseBytes = new long[timer.getPhaseCount()];
+		Set<Schedule.Handle> handles = Collections.newSetFromMap(new IdentityHashMap<Schedule.Handle, Boolean>());
+
+		int stepped = 0, quiet = 0, failed = 0;
+		for(; stepped < ticks && game.getWinner() < 0; stepped++)
+		{
+			int particles = store.size();
+			int mostNeighbors = game.getMostNeighbors();
+			handles.clear();
+			handles.addAll(queue.getHandles());
+			for(int i = 0; i < phaseBytes.length; i++)
+				phaseBytes[i] = timer.getBytes(i);
+
+			game.step();
+			long bytes = queue.getLastStepAllocatedBytes();
+
+			if(store.size() != particles || game.getMostNeighbors() != mostNeighbors
+					|| !isRegistered(queue.getHandles(), handles))
+				continue;
+			quiet++;
+			if(bytes == 0)
+				continue;
+			if(++failed <= MAX_PRINTED && print)
+				printTick(queue.getTicks(), bytes, timer, phaseBytes);
+		}
+		queue.setMeasuringAllocations(false);
+		game.setTimingPhases(false);
+		game.stop();
+
+		if(print)
+			System.out.println("seed=" + seed + " schedule=" + (wheel ? "TimingWheelSchedule" : "Schedule")
+					+ " warmup=" + warmup + " ticks=" + stepped + " quiet=" + quiet + " allocating=" + failed);
+		return failed;
+	}
+
+	/*
+	 * Whether every Handle in the list was already registered before the tick.
+	 */
+	private static boolean isRegistered(ArrayList<Schedule.Handle> after, Set<Schedule.Handle> before)
+	{
+		for(Schedule.Handle h : after)
+		{
+			if(!before.contains(h))
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Prints a quiet tick that allocated, with the bytes of each phase that did.
+	 */
+	private static void printTick(long tick, long bytes, PhaseTimer timer, long[] phaseBytes)
+	{
+		StringBuilder line = new StringBuilder();
+		line.append("tick=").append(tick).append(" bytes=").append(bytes);
+		long inPhases = 0;
+		for(int i = 0; i < phaseBytes.length; i++)
+		{
+			long b = timer.getBytes(i) - phaseBytes[i];
+			inPhases += b;
+			if(b != 0)
+				line.append(' ').append(timer.getName(i)).append('=').append(b);
+		}
+		if(bytes != inPhases)
+			line.append(" other agents=").append(bytes - inPhases);
+		System.out.println(line);
+	}
+}
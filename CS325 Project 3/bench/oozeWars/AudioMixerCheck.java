@@ -0,0 +1,278 @@
+package oozeWars;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <center><b>AUDIOMIXERCHECK.JAVA</b></center>
+ * Checks what an AudioMixer mixes, without a sound card, and exits with status 1 if any of it is
+ *    wrong.
+ *
+ * <p>Every check makes a mixer that is never started, plays sounds made up of known samples on
+ *    it, and calls render() for the bytes it would have written to the line.  They check that:
+ *    <ul>
+ *    <li>a sound at gain 1 comes out as it went in, and one at gain 0.5 at half of it, and two
+ *        at once come out as their sum, across more than one chunk and past the end of the
+ *        shorter one;</li>
+ *    <li>load() turns 8-bit unsigned and 16-bit big-endian sounds into the mixer's samples, and
+ *        leaves a sound already in the mixer's format as it is;</li>
+ *    <li>a sound played while every voice is busy takes the voice that has played longest, and
+ *        the sound it cuts off is heard no more;</li>
+ *    <li>sums past what 16 bits can hold are clipped to 32767 and -32768.</li>
+ *    </ul>
+ *    The samples at gain 0.5 are all even, so the expected mix is exact.
+ *
+ * <p>Each check prints a line saying whether it passed, and the first sample it got wrong.
+ *
+ * <p>Usage: <code>java oozeWars.AudioMixerCheck</code>
+ */
+public class AudioMixerCheck
+{
+	//The format every mixer here mixes in, which is the game's
+	private static final float SAMPLE_RATE = AudioMixer.DEFAULT_SAMPLE_RATE;
+	private static final int CHANNELS = AudioMixer.DEFAULT_CHANNELS;
+
+	//The number of checks that failed
+	private static int failed = 0;
+
+	/**
+	 * Runs every check and prints whether each one passed.
+	 * @param args
+	 * :  Not used.
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		checkGains();
+		checkConversion();
+		checkStealing();
+		checkClipping();
+
+		if(failed > 0)
+		{
+			System.out.println("FAILED " + failed);
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/*
+	 * Plays one sound at gain 1 and a shorter one at gain 0.5 together, and checks the mix is the
+	 * first plus half the second until the second ends, then the first alone, then silence.
+	 */
+	private static void checkGains()
+	{
+		int frames = AudioMixer.FRAMES_PER_CHUNK * 2 + 100;
+		short[] loud = ramp(frames, 7, 3000);
+		short[] quiet = ramp(AudioMixer.FRAMES_PER_CHUNK + 50, 10, 2000);
+
+		AudioMixer mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(loud, 1);
+		check("gain 1", loud, render(mixer, frames));
+
+		mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(quiet, .5f);
+		short[] halved = new short[quiet.length];
+		for(int i = 0; i < quiet.length; i++)
+			halved[i] = (short)(quiet[i] / 2);
+		check("gain 0.5", halved, render(mixer, quiet.length));
+
+		mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(loud, 1);
+		mixer.play(quiet, .5f);
+		short[] sum = new short[frames + 20];
+		for(int i = 0; i < loud.length; i++)
+			sum[i] = (short)(loud[i] + (i < quiet.length ? quiet[i] / 2 : 0));
+		byte[] out = new byte[sum.length * 2];
+		int playing = mixer.render(out, 0, sum.length);
+		check("gain 1 + gain 0.5", sum, toSamples(out));
+		if(playing != 0)
+			fail("gain 1 + gain 0.5", "render() says " + playing + " voices still play after both ended");
+	}
+
+	/*
+	 * Loads the same ramp in three formats, and checks each comes out as the mixer's samples.
+	 */
+	private static void checkConversion() throws IOException
+	{
+		AudioMixer mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+
+		short[] samples = ramp(500, 11, 20000);
+		byte[] little = new byte[samples.length * 2];
+		byte[] big = new byte[samples.length * 2];
+		for(int i = 0; i < samples.length; i++)
+		{
+			little[2 * i] = big[2 * i + 1] = (byte)samples[i];
+			little[2 * i + 1] = big[2 * i] = (byte)(samples[i] >> 8);
+		}
+		check("load 16-bit little-endian", samples, mixer.load(mixer.getFormat(), little));
+		check("load 16-bit big-endian", samples,
+				mixer.load(new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, true), big));
+
+		// 8-bit sounds are unsigned, with 128 as silence, and become the high byte of 16 bits.
+		// The low byte is left to Java's converter, which fills it in so 255 becomes 32767.
+		byte[] unsigned = new byte[256];
+		short[] highBytes = new short[unsigned.length];
+		for(int i = 0; i < unsigned.length; i++)
+		{
+			unsigned[i] = (byte)i;
+			highBytes[i] = (short)(i - 128);
+		}
+		short[] widened = mixer.load(new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, SAMPLE_RATE, 8,
+				CHANNELS, CHANNELS, SAMPLE_RATE, false), unsigned);
+		if(widened != null)
+		{
+			for(int i = 0; i < widened.length; i++)
+				widened[i] >>= 8;
+		}
+		check("load 8-bit unsigned", highBytes, widened);
+
+		// and the loaded sound plays back as it was
+		mixer.play(mixer.load(new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, true), big), 1);
+		check("play a loaded sound", samples, render(mixer, samples.length));
+	}
+
+	/*
+	 * Fills both voices of a mixer, then plays a third sound, which has to cut off the one that
+	 * started first.  Then queues all three at once for a new mixer, where the third has to take
+	 * the first's voice before a single frame of it is heard.
+	 */
+	private static void checkStealing()
+	{
+		int frames = AudioMixer.FRAMES_PER_CHUNK * 3;
+		short[] first = constant(frames, 1000);
+		short[] second = constant(frames, 200);
+		short[] third = constant(frames, 30);
+
+		AudioMixer mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 2);
+		mixer.play(first, 1);
+		short[] before = render(mixer, 10);
+		mixer.play(second, 1);
+		short[] together = render(mixer, 10);
+		mixer.play(third, 1);
+		short[] after = render(mixer, frames - 20);
+
+		check("stealing: first alone", constant(10, 1000), before);
+		check("stealing: first and second", constant(10, 1200), together);
+		// the second has frames - 10 left to play, and the third plays all the way through
+		short[] expected = new short[frames - 20];
+		for(int i = 0; i < expected.length; i++)
+			expected[i] = (short)((i < frames - 10 ? 200 : 0) + 30);
+		check("stealing: the oldest is cut off", expected, after);
+		if(mixer.getStolenVoices() != 1)
+			fail("stealing: the oldest is cut off", "getStolenVoices() is " + mixer.getStolenVoices() + ", not 1");
+
+		// three sounds queued at once into two free voices: the last takes the first's voice
+		mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 2);
+		mixer.play(first, 1);
+		mixer.play(second, 1);
+		mixer.play(third, 1);
+		check("stealing: queued together", constant(10, 230), render(mixer, 10));
+		if(mixer.getStolenVoices() != 1)
+			fail("stealing: queued together", "getStolenVoices() is " + mixer.getStolenVoices() + ", not 1");
+	}
+
+	/*
+	 * Plays sounds whose sum is more than 16 bits can hold, both ways, and checks the mix is held
+	 * at the largest and smallest sample instead of wrapping around.
+	 */
+	private static void checkClipping()
+	{
+		int frames = 300;
+		AudioMixer mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(constant(frames, 30000), 1);
+		mixer.play(constant(frames, 30000), 1);
+		check("clipping at 32767", constant(frames, Short.MAX_VALUE), render(mixer, frames));
+
+		mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(constant(frames, -30000), 1);
+		mixer.play(constant(frames, -30000), 1);
+		mixer.play(constant(frames, -30000), 1);
+		check("clipping at -32768", constant(frames, Short.MIN_VALUE), render(mixer, frames));
+
+		// a sum that only just fits is left alone
+		mixer = new AudioMixer(SAMPLE_RATE, CHANNELS, 4);
+		mixer.play(constant(frames, 16000), 1);
+		mixer.play(constant(frames, 16767), 1);
+		check("no clipping at 32767", constant(frames, Short.MAX_VALUE), render(mixer, frames));
+	}
+
+	/*
+	 * Mixes the given number of frames into a new buffer and returns its samples.
+	 */
+	private static short[] render(AudioMixer mixer, int frames)
+	{
+		byte[] out = new byte[frames * CHANNELS * 2];
+		mixer.render(out, 0, frames);
+		return toSamples(out);
+	}
+
+	/*
+	 * Reads 16-bit little-endian samples out of a buffer.
+	 */
+	private static short[] toSamples(byte[] bytes)
+	{
+		short[] samples = new short[bytes.length / 2];
+		for(int i = 0; i < samples.length; i++)
+			samples[i] = (short)((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8));
+		return samples;
+	}
+
+	/*
+	 * A sound that goes back and forth between -amplitude and amplitude in even steps.
+	 */
+	private static short[] ramp(int length, int period, int amplitude)
+	{
+		short[] samples = new short[length];
+		for(int i = 0; i < length; i++)
+			samples[i] = (short)(2 * ((amplitude * ((i % period) * 2 - period) / period) / 2));
+		return samples;
+	}
+
+	/*
+	 * A sound that holds one sample.
+	 */
+	private static short[] constant(int length, int sample)
+	{
+		short[] samples = new short[length];
+		Arrays.fill(samples, (short)sample);
+		return samples;
+	}
+
+	/*
+	 * Compares what was mixed with what should have been, and prints whether they match.
+	 */
+	private static void check(String name, short[] expected, short[] actual)
+	{
+		if(actual == null)
+		{
+			fail(name, "nothing was loaded");
+			return;
+		}
+		if(actual.length != expected.length)
+		{
+			fail(name, actual.length + " samples instead of " + expected.length);
+			return;
+		}
+		for(int i = 0; i < expected.length; i++)
+		{
+			if(actual[i] != expected[i])
+			{
+				fail(name, "sample " + i + " is " + actual[i] + ", not " + expected[i]);
+				return;
+			}
+		}
+		System.out.println("ok      " + name);
+	}
+
+	/*
+	 * Prints a check that failed, and counts it.
+	 */
+	private static void fail(String name, String why)
+	{
+		failed++;
+		System.out.println("FAILED  " + name + ": " + why);
+	}
+}
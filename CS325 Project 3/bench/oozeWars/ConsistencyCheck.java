@@ -0,0 +1,154 @@
+package oozeWars;
+
+/**
+ * <center><b>CONSISTENCYCHECK.JAVA</b></center>
+ * Checks that the ways OozeWars has of finding neighboring Particles and applying the
+ *    constraints between them play a game out the same, and exits with status 1 if any of them
+ *    don't.
+ *
+ * <p>Games between SimpleBots are played from the same seeds with different settings, and the
+ *    state checksum of the game is taken after every tick.  For every seed it checks that:
+ *    <ul>
+ *    <li>a game searching the SpatialHash every tick plays out the same with
+ *        setValidatingSpatialHash(true), which compares it with checking every pair of Particles
+ *        and throws if they ever disagree;</li>
+ *    <li>a game using a NeighborList does the same, with the validation also checking that no
+ *        pair within range is missing from the list;</li>
+ *    <li>a game with its constraints applied by a ConstraintSolver plays out the same on 2, 4
+ *        and 8 threads.  It isn't compared with a single thread, which applies the constraints
+ *        one at a time as the neighbors are found.</li>
+ *    </ul>
+ *    A game that throws, or whose checksum differs from the game it is compared with, fails, and
+ *    the first tick they differ at is printed.
+ *
+ * <p>Usage: <code>java oozeWars.ConsistencyCheck [ticks] [games] [seed]</code>
+ */
+public class ConsistencyCheck
+{
+	//The number of checks that failed
+	private static int failed = 0;
+
+	/**
+	 * Runs every check and prints whether each one passed.
+	 * @param args
+	 * :  Optionally, the most ticks each game is played for (default 2000), the number of games
+	 *    (default 4), and the seed of the first game (default 325).
+	 */
+	public static void main(String[] args)
+	{
+		long[] numbers = {2000, 4, 325};
+		for(int i = 0; i < args.length && i < numbers.length; i++)
+			numbers[i] = Long.parseLong(args[i]);
+		int ticks = (int)numbers[0];
+		int games = (int)numbers[1];
+		long seed = numbers[2];
+
+		for(int i = 0; i < games; i++)
+		{
+			checkValidation(seed + i, ticks);
+			checkSolver(seed + i, ticks);
+		}
+
+		if(failed > 0)
+		{
+			System.out.println("FAILED " + failed);
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/*
+	 * Plays a game with and without each validation mode, and checks they play out the same
+	 * without the validation finding anything wrong.
+	 */
+	private static void checkValidation(long seed, int ticks)
+	{
+		for(boolean lists : new boolean[] {false, true})
+		{
+			String name = "seed " + seed + (lists ? " NeighborList" : " SpatialHash");
+			long[] expected = play(seed, ticks, lists, false, 1);
+			try
+			{
+				check(name + " validated", expected, play(seed, ticks, lists, true, 1));
+			}
+			catch(IllegalStateException e)
+			{
+				fail(name + " validated", e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * Plays a game with its constraints solved on 2, 4 and 8 threads, and checks they all play out
+	 * the same.
+	 */
+	private static void checkSolver(long seed, int ticks)
+	{
+		long[] expected = play(seed, ticks, false, false, 2);
+		for(int threads : new int[] {4, 8})
+			check("seed " + seed + " solver on " + threads + " threads", expected, play(seed, ticks, false, false, threads));
+	}
+
+	/*
+	 * Plays a game with the given settings and returns the state checksum after every tick it
+	 * lasted.
+	 */
+	private static long[] play(long seed, int ticks, boolean lists, boolean validate, int threads)
+	{
+		OozeWars game = new OozeWars(30, 2, false);
+		game.random.setSeed(seed);
+		for(int player = 0; player < 2; player++)
+			game.setBot(player, new SimpleBot(seed * 2 + player));
+		game.setUsingNeighborLists(lists);
+		game.setValidatingSpatialHash(validate);
+		game.setSolverThreads(threads);
+		game.reset();
+
+		long[] checksums = new long[ticks];
+		int stepped = 0;
+		try
+		{
+			for(; stepped < ticks && game.getWinner() < 0; stepped++)
+			{
+				game.step();
+				checksums[stepped] = game.getStateChecksum();
+			}
+		}
+		finally
+		{
+			game.stop();
+			game.setSolverThreads(1);
+		}
+		return java.util.Arrays.copyOf(checksums, stepped);
+	}
+
+	/*
+	 * Compares the checksums of two games, and prints whether they match.
+	 */
+	private static void check(String name, long[] expected, long[] actual)
+	{
+		for(int i = 0; i < Math.min(expected.length, actual.length); i++)
+		{
+			if(actual[i] != expected[i])
+			{
+				fail(name, "differs at tick " + (i + 1));
+				return;
+			}
+		}
+		if(actual.length != expected.length)
+		{
+			fail(name, "lasted " + actual.length + " ticks instead of " + expected.length);
+			return;
+		}
+		System.out.println("ok      " + name + " (" + expected.length + " ticks)");
+	}
+
+	/*
+	 * Prints a check that failed, and counts it.
+	 */
+	private static void fail(String name, String why)
+	{
+		failed++;
+		System.out.println("FAILED  " + name + ": " + why);
+	}
+}
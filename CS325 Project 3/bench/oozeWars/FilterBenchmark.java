@@ -0,0 +1,355 @@
+package oozeWars;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.AlphaThresholdFilter;
+import com.jhlabs.image.BoxBlurFilter;
+import com.jhlabs.image.FadeFilter;
+import com.jhlabs.image.FilterChain;
+import com.jhlabs.image.GradientFilter;
+import com.jhlabs.image.GrayscaleFilter;
+import com.jhlabs.image.ImageMath;
+import com.jhlabs.image.LiquidFilter;
+import com.jhlabs.image.OffsetFilter;
+import com.jhlabs.image.PointFilter;
+import com.jhlabs.image.PremultiplyFilter;
+import com.jhlabs.image.RGBAdjustFilter;
+import com.jhlabs.image.UnpremultiplyFilter;
+
+/**
+ * <center><b>FILTERBENCHMARK.JAVA</b></center>
+ * Times every filter in com.jhlabs.image, and the ImageMath helpers they are built from, at
+ *    the size of the small frame the View filters, the game's window and a full HD screen.
+ *
+ * <p>Each filter is run on a frame of ooze drawn the way LiquidFilterBenchmark draws it, in
+ *    three types of image: TYPE_INT_ARGB, which is what the game uses, TYPE_INT_RGB and
+ *    TYPE_4BYTE_ABGR.  The PointFilters only work on the raster of a TYPE_INT_ARGB image, since
+ *    going through BufferedImage.getRGB() and setRGB() converts every pixel through the
+ *    ColorModel; any other type takes that slow path on a single thread.  The <i>getRGB</i> runs
+ *    send a TYPE_INT_ARGB image down the slow path too, so its cost is measured on its own
+ *    rather than mixed up with the cost of a different type.  The <i>chain</i> is a FilterChain
+ *    of the threshold and fade the View runs one after the other, to be compared with the sum of
+ *    <i>alphaThresh</i> and <i>fade</i>.  Every filter writes into the same destination
+ *    image each time, so the bytes allocated are the filter's own.
+ *
+ * <p>Each run is warmed up for half as long as it is timed, and reports the time per call,
+ *    millions of pixels per second and the bytes allocated per call by every thread, which takes
+ *    in the ForkJoinPool's threads when a filter runs in parallel with <code>-parallel</code>.  The ImageMath runs call a
+ *    helper once for every pixel of an int array the size of the image.
+ *
+ * <p>Usage: <code>java oozeWars.FilterBenchmark [millis] [-parallel] [name...]</code>
+ */
+public class FilterBenchmark
+{
+	//The sizes of image every filter is timed at
+	private static final int[][] SIZES = {{400, 300}, {800, 600}, {1920, 1080}};
+
+	//The types of image every filter is timed on, and what they are called in the table
+	private static final int[] TYPES = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+		BufferedImage.TYPE_4BYTE_ABGR};
+	private static final String[] TYPE_NAMES = {"INT_ARGB", "INT_RGB", "4BYTE_ABGR"};
+
+	//The names of the filters createFilters() makes, in the same order
+	private static final String[] FILTER_NAMES = {"boxBlur", "liquid", "offset", "gradient",
+		"grayscale", "rgbAdjust", "fade", "alphaThresh", "premultiply", "unpremultiply",
+		"grayscale(getRGB)", "chain"};
+
+	//The colors the Particles are drawn in
+	private static final Color[] COLORS = {Color.GREEN, Color.BLUE, Color.LIGHT_GRAY, Color.WHITE};
+
+	//The number of Particles drawn for every 800x600 pixels
+	private static final int PARTICLES_PER_FRAME = 600;
+
+	//Measures what every thread allocates, or null if the JVM can't
+	private static com.sun.management.ThreadMXBean threadBean;
+
+	//Keeps the JIT from throwing away the ImageMath results
+	private static int sink;
+
+	/**
+	 * Runs the benchmark and prints a table of the results.
+	 * @param args
+	 * :  Optionally, the number of milliseconds each run is timed for (default 300),
+	 *    <code>-parallel</code> to let the filters split images into bands on the ForkJoinPool,
+	 *    as the game does with <code>-DoozeWars.parallelFilters=true</code>, and the names of the
+	 *    filters to run (default all of them).
+	 */
+	public static void main(String[] args)
+	{
+		int millis = 300;
+		ArrayList<String> names = new ArrayList<String>();
+		for(String arg : args)
+		{
+			if(arg.equals("-parallel"))
+				AbstractBufferedImageOp.setParallelByDefault(true);
+			else if(Character.isDigit(arg.charAt(0)))
+				millis = Integer.parseInt(arg);
+			else
+				names.add(arg);
+		}
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+		{
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		}
+
+		System.out.println("millis=" + millis + " parallel=" + AbstractBufferedImageOp.getParallelByDefault()
+				+ " processors=" + Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-18s %-10s %-11s %12s %12s %14s%n", "filter", "size", "type", "us/call",
+				"Mpixels/sec", "bytes/call");
+
+		for(int[] size : SIZES)
+		{
+			int width = size[0], height = size[1];
+			BufferedImage frame = createFrame(width, height);
+			for(int t = 0; t < TYPES.length; t++)
+			{
+				BufferedImage src = convert(frame, TYPES[t]);
+				BufferedImage dst = new BufferedImage(width, height, TYPES[t]);
+				BufferedImageOp[] filters = createFilters(width, height);
+				for(int f = 0; f < filters.length; f++)
+				{
+					if(!names.isEmpty() && !names.contains(FILTER_NAMES[f]))
+						continue;
+					// the slow path is only worth timing on its own for the type that has a fast one
+					if(filters[f] instanceof RGBPathFilter && TYPES[t] != BufferedImage.TYPE_INT_ARGB)
+						continue;
+					run(FILTER_NAMES[f], filters[f], src, dst, TYPE_NAMES[t], millis);
+				}
+			}
+
+			int[] pixels = convert(frame, BufferedImage.TYPE_INT_ARGB).getRGB(0, 0, width, height, null, 0, width);
+			for(String helper : new String[] {"mixColors", "bilinear", "brightness", "premultiply"})
+			{
+				if(names.isEmpty() || names.contains(helper))
+					runImageMath(helper, pixels, width, height, millis);
+			}
+		}
+	}
+
+	/*
+	 * Makes one of each filter, with the settings the View uses where it uses them.
+	 */
+	private static BufferedImageOp[] createFilters(int width, int height)
+	{
+		AlphaThresholdFilter threshold = new AlphaThresholdFilter((int)(255*0.3));
+		FadeFilter fader = new FadeFilter(0.7f);
+		return new BufferedImageOp[] {
+			new BoxBlurFilter(4, 4, 1),
+			new LiquidFilter((int)(255*0.4), (int)(255*0.4), 2),
+			new OffsetFilter(width / 3, height / 3, true),
+			new GradientFilter(new Point(0, 0), new Point(width, height), 0xff00ff00, 0xff0000ff,
+					false, GradientFilter.LINEAR, GradientFilter.INT_LINEAR),
+			new GrayscaleFilter(),
+			new RGBAdjustFilter(0.1f, -0.1f, 0.2f),
+			new FadeFilter(0.7f),
+			new AlphaThresholdFilter((int)(255*0.3)),
+			new PremultiplyFilter(),
+			new UnpremultiplyFilter(),
+			new RGBPathFilter(new GrayscaleFilter()),
+			new FilterChain(threshold, fader)
+		};
+	}
+
+	/*
+	 * Times one filter on one image.
+	 */
+	private static void run(String name, BufferedImageOp filter, BufferedImage src, BufferedImage dst,
+			String type, int millis)
+	{
+		long deadline = System.nanoTime() + millis * 500000L;
+		while(System.nanoTime() < deadline)
+			filter.filter(src, dst);
+
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		int calls = 0;
+		long now;
+		do
+		{
+			filter.filter(src, dst);
+			calls++;
+			now = System.nanoTime();
+		} while(now < end || calls < 3);
+		print(name, src.getWidth(), src.getHeight(), type, calls, now - start, allocatedBytes() - startBytes);
+	}
+
+	/*
+	 * Times calling one ImageMath helper on every pixel.
+	 */
+	private static void runImageMath(String helper, int[] pixels, int width, int height, int millis)
+	{
+		int[] copy = pixels.clone();
+		long deadline = System.nanoTime() + millis * 500000L;
+		while(System.nanoTime() < deadline)
+			sink += imageMath(helper, pixels, copy, width, height);
+
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		int calls = 0;
+		long now;
+		do
+		{
+			sink += imageMath(helper, pixels, copy, width, height);
+			calls++;
+			now = System.nanoTime();
+		} while(now < end || calls < 3);
+		print("math." + helper, width, height, "int[]", calls, now - start, allocatedBytes() - startBytes);
+	}
+
+	/*
+	 * Calls an ImageMath helper once for every pixel, and returns something made from what it gave.
+	 */
+	private static int imageMath(String helper, int[] pixels, int[] copy, int width, int height)
+	{
+		int result = 0;
+		int n = pixels.length;
+		if(helper.equals("mixColors"))
+		{
+			for(int i = 0; i < n; i++)
+				result ^= ImageMath.mixColors((i & 255) / 255f, pixels[i], pixels[n - 1 - i]);
+		}
+		else if(helper.equals("bilinear"))
+		{
+			for(int y = 0; y < height - 1; y++)
+			{
+				int row = y * width;
+				for(int x = 0; x < width - 1; x++)
+				{
+					int i = row + x;
+					result ^= ImageMath.bilinearInterpolate(0.25f, 0.75f, pixels[i], pixels[i + 1],
+							pixels[i + width], pixels[i + width + 1]);
+				}
+			}
+		}
+		else if(helper.equals("brightness"))
+		{
+			for(int i = 0; i < n; i++)
+				result += ImageMath.brightnessNTSC(pixels[i]);
+		}
+		else
+		{
+			System.arraycopy(pixels, 0, copy, 0, n);
+			ImageMath.premultiply(copy, 0, n);
+			ImageMath.unpremultiply(copy, 0, n);
+			result = copy[n / 2];
+		}
+		return result;
+	}
+
+	/*
+	 * Prints a row of the table.
+	 */
+	private static void print(String name, int width, int height, String type, int calls, long nanos, long bytes)
+	{
+		System.out.printf("%-18s %-10s %-11s %12.1f %12.1f %14s%n", name, width + "x" + height, type,
+				nanos / 1e3 / calls, (double)width * height * calls * 1e3 / nanos,
+				threadBean == null ? "-" : String.valueOf(bytes / calls));
+	}
+
+	/*
+	 * The bytes every live thread has allocated, or 0 if they can't be measured.
+	 */
+	private static long allocatedBytes()
+	{
+		if(threadBean == null)
+			return 0;
+		long total = 0;
+		for(long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds()))
+			total += Math.max(0, bytes);
+		return total;
+	}
+
+	/*
+	 * Draws a clump of Particles for each player and neutral ones scattered around, as many as
+	 * there would be in a frame of the game the size of the image.
+	 */
+	private static BufferedImage createFrame(int width, int height)
+	{
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = frame.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		Random random = new Random(0);
+		int particles = (int)((long)PARTICLES_PER_FRAME * width * height / (800 * 600));
+		for(int i = 0; i < particles; i++)
+		{
+			// a third of the Particles in each player's clump, and the last third scattered
+			int kind = i % 3;
+			Color color = COLORS[kind];
+			double cx = width * (kind == 0 ? 0.3 : 0.7), cy = height * (kind == 0 ? 0.3 : 0.7);
+			double spread = width / 10.0;
+			double x = kind == 2 ? random.nextInt(width) : cx + random.nextGaussian() * spread;
+			double y = kind == 2 ? random.nextInt(height) : cy + random.nextGaussian() * spread;
+			new Particle(x, y, 3 + random.nextInt(8), color, 0).draw(graphics, null, color, 1, x, y);
+		}
+		graphics.dispose();
+		return frame;
+	}
+
+	/*
+	 * Copies an image into a new image of the given type.
+	 */
+	private static BufferedImage convert(BufferedImage image, int type)
+	{
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), type);
+		Graphics2D graphics = copy.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return copy;
+	}
+
+	/*
+	 * Runs another PointFilter through BufferedImage.getRGB() and setRGB() whatever the type of
+	 * the image, the way PointFilter handles every type but TYPE_INT_ARGB.
+	 */
+	private static class RGBPathFilter extends PointFilter
+	{
+		private final PointFilter filter;
+
+		RGBPathFilter(PointFilter filter)
+		{
+			this.filter = filter;
+		}
+
+		@Override
+		public void setDimensions(int width, int height)
+		{
+			filter.setDimensions(width, height);
+		}
+
+		@Override
+		public int filterRGB(int x, int y, int rgb)
+		{
+			return filter.filterRGB(x, y, rgb);
+		}
+
+		@Override
+		protected void filterBand(BufferedImage src, BufferedImage dst, int startY, int endY)
+		{
+			int width = src.getWidth();
+			int[] inPixels = new int[width];
+			for(int y = startY; y < endY; y++)
+			{
+				src.getRGB(0, y, width, 1, inPixels, 0, width);
+				for(int x = 0; x < width; x++)
+					inPixels[x] = filterRGB(x, y, inPixels[x]);
+				dst.setRGB(0, y, width, 1, inPixels, 0, width);
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package oozeWars;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.jhlabs.image.LiquidFilter;
+
+/**
+ * <center><b>LIQUIDFILTERBENCHMARK.JAVA</b></center>
+ * Compares LiquidFilter's lookup tables with its original per-pixel HSB conversion.
+ *
+ * <p>Each run times filtering a frame of ooze a number of times.  The <i>blobs</i> frame is
+ *    drawn the way a game looks, with a clump of Particles for each player and neutral ones
+ *    scattered around.  The <i>mixed</i> frame scatters Particles of every color over each other,
+ *    some of them partway through fading from one color to another, which gives it tens of
+ *    thousands of different colors and is the worst case for the lookup tables.  The
+ *    <i>fresh</i> runs give the filter a new destination image every time and the <i>reused</i>
+ *    runs filter into the same one.  Both paths are checked to give the same pixels before
+ *    anything is timed.
+ *
+ * <p>Usage: <code>java oozeWars.LiquidFilterBenchmark [iterations] [particles]</code>
+ */
+public class LiquidFilterBenchmark
+{
+	//The size of the frame, which is the size of the game's window
+	private static final int WIDTH = 800, HEIGHT = 600;
+
+	//The number of times each path is run before timing starts
+	private static final int WARMUP_ITERATIONS = 50;
+
+	//The colors the Particles are drawn in
+	private static final Color[] COLORS = {Color.GREEN, Color.BLUE, Color.LIGHT_GRAY, Color.WHITE};
+
+	/**
+	 * Runs the benchmark and prints a table of the results.
+	 * @param args
+	 * :  Optionally, the number of timed iterations (default 200) and the number of Particles in
+	 *    the frame (default 600).
+	 */
+	public static void main(String[] args)
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int particles = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+		BufferedImage[] frames = {createFrame(particles, false), createFrame(particles, true)};
+		String[] names = {"blobs", "mixed"};
+		LiquidFilter hsb = createFilter(false);
+		LiquidFilter tables = createFilter(true);
+
+		System.out.print(WIDTH + "x" + HEIGHT + " particles=" + particles + " iterations=" + iterations);
+		for(int i = 0; i < frames.length; i++)
+		{
+			int[] expected = pixels(hsb.filter(frames[i], null));
+			int[] actual = pixels(tables.filter(frames[i], null));
+			System.out.print(" identical(" + names[i] + ")=" + Arrays.equals(expected, actual));
+		}
+		System.out.println();
+		System.out.printf("%-8s %-8s %-8s %12s %14s%n", "frame", "path", "dest", "us/frame", "Mpixels/sec");
+
+		for(int round = 0; round < 2; round++)
+		{
+			for(int i = 0; i < frames.length; i++)
+			{
+				for(boolean reuse : new boolean[] {false, true})
+				{
+					run(names[i], "hsb", hsb, frames[i], reuse, iterations, round == 1);
+					run(names[i], "lookup", tables, frames[i], reuse, iterations, round == 1);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Times one path.  Only the second round is printed, so both paths have been through the JIT
+	 * before anything is reported.
+	 */
+	private static void run(String frameName, String name, LiquidFilter filter, BufferedImage frame,
+			boolean reuse, int iterations, boolean print)
+	{
+		BufferedImage dst = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		for(int i = 0; i < WARMUP_ITERATIONS; i++)
+			filter.filter(frame, reuse ? dst : null);
+
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			filter.filter(frame, reuse ? dst : null);
+		long elapsed = System.nanoTime() - start;
+
+		if(print)
+			System.out.printf("%-8s %-8s %-8s %12d %14.1f%n", frameName, name, reuse ? "reused" : "fresh",
+					elapsed / iterations / 1000, (double)WIDTH * HEIGHT * iterations * 1e3 / elapsed);
+	}
+
+	/*
+	 * Creates a LiquidFilter with the settings OozeView uses.
+	 */
+	private static LiquidFilter createFilter(boolean useLookupTables)
+	{
+		LiquidFilter filter = new LiquidFilter((int)(255*0.4), (int)(255*0.4), 2);
+		filter.setUseLookupTables(useLookupTables);
+		return filter;
+	}
+
+	/*
+	 * Draws Particles over an empty frame: either a clump for each player and neutral ones
+	 * scattered around, or Particles of every color scattered over each other, some of them
+	 * fading between two.
+	 */
+	private static BufferedImage createFrame(int particles, boolean mixed)
+	{
+		BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = frame.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		Random random = new Random(0);
+		for(int i = 0; i < particles; i++)
+		{
+			Color color;
+			double x, y;
+			if(mixed)
+			{
+				color = COLORS[random.nextInt(COLORS.length)];
+				x = random.nextInt(WIDTH);
+				y = random.nextInt(HEIGHT);
+			}
+			else
+			{
+				// a third of the Particles in each player's clump, and the last third scattered
+				int kind = i % 3;
+				color = COLORS[kind];
+				double cx = kind == 0 ? 250 : 550, cy = kind == 0 ? 200 : 400;
+				double spread = kind == 2 ? 0 : 80;
+				x = kind == 2 ? random.nextInt(WIDTH) : cx + random.nextGaussian() * spread;
+				y = kind == 2 ? random.nextInt(HEIGHT) : cy + random.nextGaussian() * spread;
+			}
+			Particle p = new Particle(x, y, 3 + random.nextInt(8), color, 0);
+			int fades = mixed ? random.nextInt(4) : 0;
+			for(int j = 0; j < fades; j++)
+				p.draw(graphics, null, COLORS[random.nextInt(COLORS.length)], 1, x, y);
+			p.draw(graphics, null, color, 1, x, y);
+		}
+		graphics.dispose();
+		return frame;
+	}
+
+	/*
+	 * Copies out the pixels of an image.
+	 */
+	private static int[] pixels(BufferedImage image)
+	{
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+}
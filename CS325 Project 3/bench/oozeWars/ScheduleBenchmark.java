@@ -0,0 +1,116 @@
+package oozeWars;
+
+/**
+ * <center><b>SCHEDULEBENCHMARK.JAVA</b></center>
+ * Compares the heap-based Schedule with the TimingWheelSchedule.
+ *
+ * <p>Each run registers a number of Agents that reschedule themselves every time they fire, the
+ *    way Entity does, and times a number of steps.  The <i>mixed</i> runs also reschedule a tenth
+ *    of the Agents between 2 and 600 ticks ahead, like the PowerUp and GunEnabler Agents do.
+ *    The <i>repeat</i> runs register every Agent once with scheduleRepeating(...) instead.
+ *    Each run is warmed up first, and the bytes allocated per step are reported where the JVM
+ *    can measure them.
+ *
+ * <p>Usage: <code>java oozeWars.ScheduleBenchmark [agents] [steps]</code>
+ */
+public class ScheduleBenchmark
+{
+	//The number of steps run before timing starts
+	private static final int WARMUP_STEPS = 2000;
+
+	//The kinds of load: every Agent rescheduling every tick, some rescheduling further ahead, or repeating
+	private static final String[] LOADS = {"every", "mixed", "repeat"};
+
+	/**
+	 * Runs the benchmark and prints a table of the results.
+	 * @param args
+	 * :  Optionally, the number of Agents (default 10000) and the number of timed steps (default 5000).
+	 */
+	public static void main(String[] args)
+	{
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+		System.out.println("agents=" + agents + " steps=" + steps);
+		System.out.printf("%-20s %-8s %12s %14s %12s%n", "schedule", "load", "ns/step", "agents/sec", "bytes/step");
+
+		for(int round = 0; round < 2; round++)
+		{
+			for(String load : LOADS)
+			{
+				run(false, load, agents, steps, round == 1);
+				run(true, load, agents, steps, round == 1);
+			}
+		}
+	}
+
+	/*
+	 * Times one Schedule implementation.  Only the second round is printed, so both
+	 * implementations have been through the JIT before anything is reported.
+	 */
+	private static void run(boolean useTimingWheel, String load, int agents, int steps, boolean print)
+	{
+		Game game = new Game(2, 30, useTimingWheel);
+		final Schedule queue = game.queue;
+		final long[] fired = new long[1];
+
+		for(int i = 0; i < agents; i++)
+		{
+			final boolean wanders = load.equals("mixed") && i % 10 == 0;
+			final boolean repeats = load.equals("repeat");
+			final int seed = i;
+			Agent agent = new Agent()
+			{
+				int state = seed;
+
+				public void go(Game game, long timestep, int priorityLevel)
+				{
+					fired[0]++;
+					if(repeats)
+						return;
+
+					long interval = 1;
+					if(wanders)
+					{
+						state = state * 1103515245 + 12345;
+						interval = 2 + ((state >>> 8) & 0x7fffffff) % 599;
+					}
+					game.queue.scheduleIn(interval, priorityLevel, this);
+				}
+			};
+
+			if(repeats)
+				queue.scheduleRepeating(1, i & 1, agent);
+			else
+				queue.schedule(i & 1, agent);
+		}
+
+		for(int i = 0; i < WARMUP_STEPS; i++)
+			step(game);
+
+		queue.setMeasuringAllocations(true);
+		long bytes = 0;
+		fired[0] = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < steps; i++)
+		{
+			step(game);
+			bytes += Math.max(0, queue.getLastStepAllocatedBytes());
+		}
+		long elapsed = System.nanoTime() - start;
+		queue.setMeasuringAllocations(false);
+
+		if(print)
+			System.out.printf("%-20s %-8s %12d %14.0f %12d%n", queue.getClass().getSimpleName(),
+					load, elapsed / steps, fired[0] * 1e9 / elapsed, bytes / steps);
+	}
+
+	/*
+	 * Steps the game's Schedule once, the way the Game's timer does.
+	 */
+	private static void step(Game game)
+	{
+		game.stepFlag.turnOn();
+		game.queue.step(game);
+	}
+}
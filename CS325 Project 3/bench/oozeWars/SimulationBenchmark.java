@@ -0,0 +1,198 @@
+package oozeWars;
+
+import java.awt.Color;
+import java.util.ArrayList;
+
+/**
+ * <center><b>SIMULATIONBENCHMARK.JAVA</b></center>
+ * Times the simulation core of a headless game of OozeWars with a given number of Particles,
+ *    broken down into the phases of the ParticleManager's tick.
+ *
+ * <p>Each run starts a game the way OozeWars does, with its two players' Blobs and the neutral
+ *    Particles, then adds neutral Particles in a number of clumps, each as tightly packed as a
+ *    player's Blob, until the game has the Particles asked for.  Unless a number of clumps is
+ *    given, each clump gets as many Particles as a player's Blob starts with, since a bigger
+ *    clump pulls itself in until each of its Particles has several times the neighbors it would
+ *    in a game, and the run ends up timing the size of the clumps rather than the number of
+ *    Particles.  For fewer Particles than the game starts with, neutral Particles are taken away
+ *    instead, down to the two players' Blobs.
+ *    The playing field grows with the Particles so they are spread out about as thinly as in a
+ *    new game.  No one plays, so nothing but the game's own Random moves anything but the
+ *    physics.  The game is stepped for a while first so the clumps settle, then each phase is
+ *    timed with a PhaseTimer, and the whole Schedule step is timed along with it, so the Agents
+ *    other than the ParticleManager show up as <i>other agents</i>.
+ *
+ * <p>For every size it prints ticks per second and the bytes allocated per tick, then the time
+ *    and bytes of each phase.  Allocations are only counted on the thread stepping the game.
+ *    Every size is run twice and only the second round is printed, so everything has been through
+ *    the JIT before anything is reported.  See ScheduleBenchmark for the Schedule itself with many
+ *    Agents.
+ *
+ * <p>With <code>-lists</code> the games cache their neighbor pairs in a NeighborList, which is
+ *    off in a game by default, and the ticks between its rebuilds are printed as well.
+ *
+ * <p>Usage: <code>java oozeWars.SimulationBenchmark [ticks] [clumps] [particles...] [-wheel] [-lists]</code>
+ */
+public class SimulationBenchmark
+{
+	//The number of ticks each game is stepped before timing starts
+	private static final int WARMUP_TICKS = 100;
+
+	//The Particle counts timed if none are given
+	private static final int[] DEFAULT_SIZES = {100, 300, 1000, 3000, 10000, 20000};
+
+	//The seed every game starts from
+	private static final long SEED = 325;
+
+	//The number of Particles a new two-player game has, and the size of its playing field
+	private static final int START_PARTICLES = 152, START_WIDTH = 820, START_HEIGHT = 620;
+
+	//The number of Particles a player's Blob starts with, and the area each of them gets
+	private static final int CLUMP_SIZE = 50;
+	private static final double CLUMP_AREA_PER_PARTICLE = 80 * 80 / (double)CLUMP_SIZE;
+
+	/**
+	 * Runs the benchmark and prints the results.
+	 * @param args
+	 * :  Optionally, the number of timed ticks (default 200), the number of clumps the added
+	 *    Particles are split into (default 0, for a clump for every CLUMP_SIZE Particles added),
+	 *    the Particle counts to time (default 100 up to 20000), <code>-wheel</code> to use the
+	 *    TimingWheelSchedule, and <code>-lists</code> to use a NeighborList.
+	 */
+	public static void main(String[] args)
+	{
+		boolean wheel = false, lists = false;
+		long[] numbers = {200, 0};
+		int count = 0;
+		ArrayList<Integer> sizes = new ArrayList<Integer>();
+		for(String arg : args)
+		{
+			if(arg.equals("-wheel"))
+				wheel = true;
+			else if(arg.equals("-lists"))
+				lists = true;
+			else if(count < numbers.length)
+				numbers[count++] = Long.parseLong(arg);
+			else
+				sizes.add(Integer.parseInt(arg));
+		}
+		if(sizes.isEmpty())
+		{
+			for(int size : DEFAULT_SIZES)
+				sizes.add(size);
+		}
+		int ticks = (int)numbers[0];
+		int clumps = (int)numbers[1];
+
+		System.out.println("ticks=" + ticks + " clumps=" + (clumps > 0 ? String.valueOf(clumps) : "auto")
+				+ " schedule=" + (wheel ? "TimingWheelSchedule" : "Schedule") + " neighborLists=" + lists);
+		for(int round = 0; round < 2; round++)
+		{
+			for(int size : sizes)
+				run(size, clumps, ticks, wheel, lists, round == 1);
+		}
+	}
+
+	/*
+	 * Builds a game with the given number of Particles and times it.
+	 */
+	private static void run(int particles, int clumps, int ticks, boolean wheel, boolean lists, boolean print)
+	{
+		OozeWars game = new OozeWars(30, 2, wheel);
+		game.setUsingNeighborLists(lists);
+		game.random.setSeed(SEED);
+		double scale = Math.max(1, Math.sqrt(particles / (double)START_PARTICLES));
+		game.setWidth((int)(START_WIDTH * scale));
+		game.setHeight((int)(START_HEIGHT * scale));
+		game.reset();
+		resize(game, particles, clumps);
+
+		for(int i = 0; i < WARMUP_TICKS && game.getWinner() < 0; i++)
+			game.step();
+
+		Schedule queue = game.queue;
+		game.setTimingPhases(true);
+		queue.setMeasuringAllocations(true);
+		long bytes = 0;
+		int stepped = 0;
+		long start = System.nanoTime();
+		for(; stepped < ticks && game.getWinner() < 0; stepped++)
+		{
+			game.step();
+			bytes += Math.max(0, queue.getLastStepAllocatedBytes());
+		}
+		long elapsed = System.nanoTime() - start;
+		queue.setMeasuringAllocations(false);
+		PhaseTimer timer = game.getPhaseTimer();
+		game.setTimingPhases(false);
+		int actual = game.getParticleStore().size();
+		NeighborList neighborList = game.getNeighborList();
+		game.stop();
+
+		if(!print)
+			return;
+		stepped = Math.max(1, stepped);
+		System.out.println();
+		System.out.printf("particles=%d ticks=%d ticks/sec=%.0f us/tick=%.1f bytes/tick=%d%n", actual,
+				stepped, stepped * 1e9 / elapsed, elapsed / 1e3 / stepped, bytes / stepped);
+		System.out.printf("  %-16s %10s %8s %12s%n", "phase", "us/tick", "share", "bytes/tick");
+		long phaseNanos = 0, phaseBytes = 0;
+		for(int i = 0; i < timer.getPhaseCount(); i++)
+		{
+			printPhase(timer.getName(i), timer.getNanos(i), timer.getBytes(i), stepped, elapsed);
+			phaseNanos += timer.getNanos(i);
+			phaseBytes += timer.getBytes(i);
+		}
+		printPhase("other agents", elapsed - phaseNanos, timer.getBytes(0) < 0 ? -1 : bytes - phaseBytes,
+				stepped, elapsed);
+		if(lists)
+			System.out.printf("  rebuilt every %.2f ticks%n", neighborList.getMeanRebuildInterval());
+	}
+
+	/*
+	 * Prints one phase's share of the ticks.
+	 */
+	private static void printPhase(String name, long nanos, long bytes, int ticks, long elapsed)
+	{
+		System.out.printf("  %-16s %10.1f %7.1f%% %12s%n", name, nanos / 1e3 / ticks, nanos * 100.0 / elapsed,
+				bytes < 0 ? "-" : String.valueOf(bytes / ticks));
+	}
+
+	/*
+	 * Adds neutral Particles in clumps, or takes neutral Particles away, until the game has the
+	 * number of Particles asked for or only the players' Blobs are left.
+	 */
+	private static void resize(OozeWars game, int particles, int clumps)
+	{
+		Blob neutral = null;
+		for(Blob b : game.getBlobs())
+		{
+			if(b.getBlobID() == 0)
+				neutral = b;
+		}
+		ArrayList<Particle> loose = neutral.getParticles();
+		ParticleStore store = game.getParticleStore();
+
+		while(store.size() > particles && !loose.isEmpty())
+			game.removeParticle(loose.remove(loose.size() - 1));
+
+		int extra = particles - store.size();
+		if(clumps <= 0)
+			clumps = Math.max(1, extra / CLUMP_SIZE);
+		for(int c = 0; c < clumps && extra > 0; c++)
+		{
+			int size = extra / (clumps - c);
+			double side = Math.sqrt(size * CLUMP_AREA_PER_PARTICLE);
+			double x = side / 2 + game.random.nextDouble() * Math.max(0, game.getWidth() - side);
+			double y = side / 2 + game.random.nextDouble() * Math.max(0, game.getHeight() - side);
+			for(int i = 0; i < size; i++)
+			{
+				Particle p = new Particle(x + (game.random.nextDouble() - .5) * side,
+						y + (game.random.nextDouble() - .5) * side, game.random.nextInt(5) + 3, Color.LIGHT_GRAY, 0);
+				game.addParticle(p);
+				loose.add(p);
+			}
+			extra -= size;
+		}
+	}
+}
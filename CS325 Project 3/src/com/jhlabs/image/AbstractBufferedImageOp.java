@@ -19,12 +19,23 @@ package com.jhlabs.image;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A convenience class which implements those methods of BufferedImageOp which are rarely changed.
  */
 public abstract class AbstractBufferedImageOp implements BufferedImageOp, Cloneable {
 
+	// whether filters that can split an image into bands do so unless told otherwise
+	private static volatile boolean parallelByDefault = false;
+
+	// the fewest pixels an image needs before it is split into bands
+	private static volatile int minParallelPixels = 256 * 256;
+
+	// whether this filter splits images into bands, or null to go with the default
+	private Boolean parallel;
+
     public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel dstCM) {
         if ( dstCM == null )
             dstCM = src.getColorModel();
@@ -84,6 +95,124 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
 			image.setRGB( x, y, width, height, pixels, 0, width );
     }
 
+	/**
+	 * Sets whether filters that can split an image into bands of rows, and filter the bands on
+	 * the shared ForkJoinPool, do so unless setParallel has been called on them.
+	 * @param parallel true to split images into bands by default
+	 * @see #setParallel
+	 */
+	public static void setParallelByDefault( boolean parallel ) {
+		parallelByDefault = parallel;
+	}
+
+	/**
+	 * Returns whether filters split images into bands by default.
+	 * @return true if filters split images into bands by default
+	 * @see #setParallelByDefault
+	 */
+	public static boolean getParallelByDefault() {
+		return parallelByDefault;
+	}
+
+	/**
+	 * Sets the fewest pixels an image needs before it is split into bands. Smaller images are
+	 * filtered on the calling thread, since handing them out costs more than it saves.
+	 * @param pixels the fewest pixels to split
+	 * @see #getMinParallelPixels
+	 */
+	public static void setMinParallelPixels( int pixels ) {
+		minParallelPixels = pixels;
+	}
+
+	/**
+	 * Returns the fewest pixels an image needs before it is split into bands.
+	 * @return the fewest pixels to split
+	 * @see #setMinParallelPixels
+	 */
+	public static int getMinParallelPixels() {
+		return minParallelPixels;
+	}
+
+	/**
+	 * Sets whether this filter splits images into bands of rows and filters them on the shared
+	 * ForkJoinPool, overriding the default.  Only filters that work on each row on its own can
+	 * do this; the others ignore it.
+	 * @param parallel true to split images into bands
+	 * @see #isParallel
+	 */
+	public void setParallel( boolean parallel ) {
+		this.parallel = Boolean.valueOf( parallel );
+	}
+
+	/**
+	 * Returns whether this filter splits images into bands, either because setParallel was
+	 * called or by default.
+	 * @return true if this filter splits images into bands
+	 * @see #setParallel
+	 */
+	public boolean isParallel() {
+		Boolean p = parallel;
+		return p != null ? p.booleanValue() : parallelByDefault;
+	}
+
+	/**
+	 * Goes back to the default for whether this filter splits images into bands.
+	 * @see #setParallelByDefault
+	 */
+	public void useDefaultParallel() {
+		parallel = null;
+	}
+
+	/**
+	 * Filters some of the rows of an image.  Every row has to be able to be filtered at the same
+	 * time as any other.
+	 */
+	protected interface RowFilter {
+		public void filterRows( int startY, int endY );
+	}
+
+	/**
+	 * Filters every row of an image, split into bands on the shared ForkJoinPool if this filter
+	 * is parallel, the image is big enough and there is more than one processor, and all on
+	 * the calling thread otherwise.
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param rows what to do to each band of rows
+	 */
+	protected void filterRows( int width, int height, RowFilter rows ) {
+		int threads = ForkJoinPool.getCommonPoolParallelism();
+		if ( !isParallel() || (long)width * height < minParallelPixels || threads < 2 || height < 2 ) {
+			rows.filterRows( 0, height );
+			return;
+		}
+		// a few bands per thread, so a thread that is held up doesn't hold up the whole image
+		int bandHeight = Math.max( 1, (height + threads * 4 - 1) / (threads * 4) );
+		ForkJoinPool.commonPool().invoke( new Band( rows, 0, height, bandHeight ) );
+	}
+
+	private static class Band extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final RowFilter rows;
+		private final int startY, endY, bandHeight;
+
+		Band( RowFilter rows, int startY, int endY, int bandHeight ) {
+			this.rows = rows;
+			this.startY = startY;
+			this.endY = endY;
+			this.bandHeight = bandHeight;
+		}
+
+		protected void compute() {
+			if ( endY - startY <= bandHeight ) {
+				rows.filterRows( startY, endY );
+				return;
+			}
+			int middle = (startY + endY) >>> 1;
+			invokeAll( new Band( rows, startY, middle, bandHeight ), new Band( rows, middle, endY, bandHeight ) );
+		}
+	}
+
 	public Object clone() {
 		try {
 			return super.clone();
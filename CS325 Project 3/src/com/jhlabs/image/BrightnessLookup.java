@@ -0,0 +1,93 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.jhlabs.image;
+
+import java.awt.Color;
+
+/**
+ * Gives exactly the same result as converting a color to HSB with Color.RGBtoHSB, replacing its
+ * brightness, and converting back with Color.HSBtoRGB, without doing either conversion for
+ * every pixel.
+ *
+ * Color.HSBtoRGB works out each channel as the brightness times a factor that only depends on
+ * the hue and saturation.  Those factors are worked out once per color and kept in a small
+ * cache of the most recently seen colors, and the brightness for each of the 256 alphas comes
+ * from a table.  The arithmetic is done in the same order as Color.HSBtoRGB does it, so the
+ * result is identical to the last bit.
+ */
+public class BrightnessLookup {
+    // the number of colors kept, which must be a power of two
+    private static final int SLOTS = 4096;
+    
+    // the brightness Color.HSBtoRGB is given for each alpha
+    private static final float[] BRIGHTNESS = new float[256];
+    static {
+        for( int i = 0; i < 256; i++ )
+            BRIGHTNESS[i] = i*(1.f/255.f);
+    }
+    
+    private final int[] colors = new int[SLOTS];
+    private final float[] redFactors = new float[SLOTS];
+    private final float[] greenFactors = new float[SLOTS];
+    private final float[] blueFactors = new float[SLOTS];
+    private final float[] hsb = new float[3];
+    
+    public BrightnessLookup() {
+        // no color is ever stored with its alpha set, so this marks every slot empty
+        java.util.Arrays.fill( colors, -1 );
+    }
+    
+    /**
+     * Returns what Color.HSBtoRGB would give for the hue and saturation of a color at a new
+     * brightness.
+     * @param rgb the color; its alpha is ignored
+     * @param alpha the new brightness, from 0 to 255
+     * @return the opaque color at the new brightness
+     */
+    public int getRGB( int rgb, int alpha ) {
+        rgb &= 0xffffff;
+        int slot = (rgb ^ (rgb >>> 12) ^ (rgb >>> 20)) & (SLOTS - 1);
+        if( colors[slot] != rgb )
+            setColor( slot, rgb );
+        
+        float brightness = BRIGHTNESS[alpha];
+        int r = (int)(brightness * redFactors[slot] * 255.0f + 0.5f);
+        int g = (int)(brightness * greenFactors[slot] * 255.0f + 0.5f);
+        int b = (int)(brightness * blueFactors[slot] * 255.0f + 0.5f);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+    
+    /**
+     * Works out the factors Color.HSBtoRGB multiplies the brightness by for each channel.
+     */
+    private void setColor( int slot, int rgb ) {
+        Color.RGBtoHSB( (rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff, hsb );
+        float hue = hsb[0], saturation = hsb[1];
+        colors[slot] = rgb;
+        
+        if( saturation == 0 ) {
+            redFactors[slot] = greenFactors[slot] = blueFactors[slot] = 1.0f;
+            return;
+        }
+        float h = (hue - (float)Math.floor(hue)) * 6.0f;
+        float f = h - (float)Math.floor(h);
+        float p = 1.0f - saturation;
+        float q = 1.0f - saturation * f;
+        float t = 1.0f - (saturation * (1.0f - f));
+        float r, g, b;
+        switch( (int)h ) {
+        case 0: r = 1.0f; g = t; b = p; break;
+        case 1: r = q; g = 1.0f; b = p; break;
+        case 2: r = p; g = 1.0f; b = t; break;
+        case 3: r = p; g = q; b = 1.0f; break;
+        case 4: r = t; g = p; b = 1.0f; break;
+        case 5: r = 1.0f; g = p; b = q; break;
+        default: r = g = b = 0; break;
+        }
+        redFactors[slot] = r;
+        greenFactors[slot] = g;
+        blueFactors[slot] = b;
+    }
+}
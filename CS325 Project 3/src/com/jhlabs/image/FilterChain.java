@@ -0,0 +1,142 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.jhlabs.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+
+/**
+ * Runs a sequence of PointFilters and NeighborhoodFilters as a single filter, in one pass over
+ * the image, without making an image for what each filter in between gives.
+ *
+ * The image is worked through a tile of rows at a time, small enough that the tile stays in
+ * the processor's cache while every filter runs over it.  Each tile is read with as many rows
+ * above and below it as the NeighborhoodFilters later in the chain reach, and each of those
+ * filters trims its radius off, so the last filter gives exactly the rows of the tile.  The
+ * rows a tile shares with the one before it are carried over rather than read again, so the
+ * chain can also filter an image into itself.
+ *
+ * The result is the same as running the filters one after another.  The chain runs on the
+ * calling thread, since a NeighborhoodFilter may keep state between rows.
+ */
+public class FilterChain extends AbstractBufferedImageOp {
+    // how many bytes of pixels each tile should take up, about the size of a level 2 cache
+    private static final int TILE_BYTES = 128 * 1024;
+    
+    private final BufferedImageOp[] filters;
+    
+    // the rows each filter needs above and below the tile, and how many rows each tile has
+    private final int[] halos;
+    private int tileHeight = 0;
+    
+    // the tile being filtered, the rows read for the tile before, somewhere to filter into, and
+    // somewhere to read new rows into
+    private int[] tile, previous, spare, fresh;
+    
+    /**
+     * @param filters the filters to run, in order; each must be a PointFilter or a
+     *        NeighborhoodFilter
+     */
+    public FilterChain( BufferedImageOp... filters ) {
+        this.filters = filters.clone();
+        halos = new int[filters.length + 1];
+        for ( int i = filters.length - 1; i >= 0; i-- ) {
+            if ( filters[i] instanceof PointFilter )
+                halos[i] = halos[i + 1];
+            else if ( filters[i] instanceof NeighborhoodFilter )
+                halos[i] = halos[i + 1] + ((NeighborhoodFilter)filters[i]).getRadius();
+            else
+                throw new IllegalArgumentException( filters[i].getClass().getName() + " is neither a PointFilter nor a NeighborhoodFilter" );
+        }
+    }
+    
+    /**
+     * @param tileHeight the number of rows in each tile, or 0 to pick a number that fits in the cache
+     */
+    public void setTileHeight( int tileHeight ) {
+        this.tileHeight = tileHeight;
+    }
+    
+    /**
+     * @return the number of rows in each tile, or 0 if it is picked to fit in the cache
+     */
+    public int getTileHeight() {
+        return tileHeight;
+    }
+    
+    public BufferedImage filter( BufferedImage src, BufferedImage dst ) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        
+        if ( dst == null )
+            dst = createCompatibleDestImage( src, null );
+        
+        for ( BufferedImageOp filter : filters )
+            if ( filter instanceof PointFilter )
+                ((PointFilter)filter).setDimensions( width, height );
+        
+        int halo = halos[0];
+        int rows = tileHeight > 0 ? tileHeight : Math.max( 1, TILE_BYTES / 4 / width - 2*halo );
+        int capacity = width * Math.min( height, rows + 2*halo );
+        tile = ensureCapacity( tile, capacity );
+        previous = ensureCapacity( previous, capacity );
+        spare = ensureCapacity( spare, capacity );
+        fresh = ensureCapacity( fresh, capacity );
+        
+        // the rows of the source in previous, from the tile before
+        int previousStart = 0, previousEnd = 0;
+        
+        for ( int startY = 0; startY < height; startY += rows ) {
+            int endY = Math.min( height, startY + rows );
+            int inStart = Math.max( 0, startY - halo );
+            int inEnd = Math.min( height, endY + halo );
+            
+            // carry over the source rows the tile before read, which dst may have overwritten since
+            int carried = Math.max( 0, previousEnd - inStart );
+            System.arraycopy( previous, (inStart - previousStart) * width, tile, 0, carried * width );
+            if ( inStart + carried < inEnd ) {
+                int count = inEnd - inStart - carried;
+                getRGB( src, 0, inStart + carried, width, count, fresh );
+                System.arraycopy( fresh, 0, tile, carried * width, count * width );
+            }
+            System.arraycopy( tile, 0, previous, 0, (inEnd - inStart) * width );
+            previousStart = inStart;
+            previousEnd = inEnd;
+            
+            // the rows of the image in tile
+            int[] in = tile;
+            int rowsStart = inStart, rowsEnd = inEnd;
+            for ( int i = 0; i < filters.length; i++ ) {
+                if ( filters[i] instanceof PointFilter ) {
+                    PointFilter filter = (PointFilter)filters[i];
+                    for ( int y = rowsStart, index = 0; y < rowsEnd; y++ )
+                        for ( int x = 0; x < width; x++, index++ )
+                            in[index] = filter.filterRGB( x, y, in[index] );
+                } else {
+                    int outStart = Math.max( 0, startY - halos[i + 1] );
+                    int outEnd = Math.min( height, endY + halos[i + 1] );
+                    ((NeighborhoodFilter)filters[i]).filterRows( in, rowsStart, spare, outStart, outEnd, width, height );
+                    int[] temp = in;
+                    in = spare;
+                    spare = temp;
+                    rowsStart = outStart;
+                    rowsEnd = outEnd;
+                }
+            }
+            tile = in;
+            
+            setRGB( dst, 0, startY, width, endY - startY, tile );
+        }
+        return dst;
+    }
+    
+    private static int[] ensureCapacity( int[] pixels, int size ) {
+        return pixels != null && pixels.length >= size ? pixels : new int[size];
+    }
+    
+    public String toString() {
+        return "Filter Chain";
+    }
+}
@@ -6,16 +6,24 @@ package com.jhlabs.image;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.util.ArrayList;
 
 /**
  *
  * @author Administrator
  */
-public class LiquidFilter extends AbstractBufferedImageOp {
+public class LiquidFilter extends AbstractBufferedImageOp implements NeighborhoodFilter {
     private int lowAlphaCutoff;
     private int highAlphaCutoff;
     private int offset;
+    private boolean useLookupTables = true;
+    
+    // the colors at each brightness, and the pixel buffers kept from one frame to the next
+    private BrightnessLookup lookup = new BrightnessLookup();
+    private int[] inPixels, outPixels;
     
     public LiquidFilter( int lowAlphaCutoff, int highAlphaCutoff, int offset ) {
         this.lowAlphaCutoff = lowAlphaCutoff;
@@ -24,11 +32,79 @@ public class LiquidFilter extends AbstractBufferedImageOp {
     }
     
     public BufferedImage filter( BufferedImage src, BufferedImage dst ) {
-        int width = src.getWidth();
-        int height = src.getHeight();
-
         if ( dst == null )
             dst = createCompatibleDestImage( src, null );
+        
+        if ( !useLookupTables )
+            return filterHSB( src, dst );
+        
+        int width = src.getWidth();
+        int height = src.getHeight();
+        
+        // read and write the images' own pixels where they can be, and reused buffers otherwise
+        int[] in = getPixels( src );
+        if ( in == null ) {
+            inPixels = ensureCapacity( inPixels, width*height );
+            in = getRGB( src, 0, 0, width, height, inPixels );
+        }
+        int[] out = src == dst ? null : getPixels( dst );
+        boolean copyOut = out == null;
+        if ( copyOut )
+            out = outPixels = ensureCapacity( outPixels, width*height );
+        
+        filterRows( in, 0, out, 0, height, width, height );
+        
+        if ( copyOut )
+            setRGB( dst, 0, 0, width, height, out );
+        return dst;
+    }
+    
+    /**
+     * The shading compares each pixel with the ones offset away along the diagonal.
+     */
+    public int getRadius() {
+        return offset;
+    }
+    
+    public void filterRows( int[] in, int inStartY, int[] out, int startY, int endY, int width, int height ) {
+        int low = lowAlphaCutoff, high = highAlphaCutoff;
+        float[] hsb = useLookupTables ? null : new float[3];
+        for( int y = startY; y < endY; ++y) {
+            int row = (y - inStartY)*width;
+            int outRow = (y - startY)*width;
+            int above = (Math.max(0,y-offset) - inStartY)*width;
+            int below = (Math.min(height-1,y+offset) - inStartY)*width;
+            for( int x = 0; x < width; ++x) {
+                int midArgb = in[row + x];
+                int midA = midArgb >>> 24;
+                if( midA < low ) {
+                    out[outRow + x] = 0;
+                    continue;
+                }
+                midA += midA > high ? (255 - midA)*2/3 : 0;
+                int topLeftA = in[above + Math.max(0,x-offset)] >>> 24;
+                topLeftA += topLeftA > high ? (255 - topLeftA)*2/3 : 0;
+                int botRightA = in[below + Math.min(width-1,x+offset)] >>> 24;
+                botRightA += botRightA > high ? (255 - botRightA)*2/3 : 0;
+                
+                int alpha = ImageMath.clamp( botRightA - topLeftA + midA - 127, 0, 255);
+                if ( hsb == null )
+                    out[outRow + x] = lookup.getRGB( midArgb, alpha );
+                else {
+                    Color.RGBtoHSB((midArgb >> 16) & 0xff, (midArgb >> 8) & 0xff, midArgb & 0xff, hsb);
+                    out[outRow + x] = Color.HSBtoRGB(hsb[0], hsb[1], alpha*(1.f/255.f));
+                }
+            }
+        }
+    }
+    
+    /**
+     * The original path, which converts every pixel to HSB and back.  It gives exactly the same
+     * result as the lookup tables, only much more slowly.
+     */
+    private BufferedImage filterHSB( BufferedImage src, BufferedImage dst ) {
+        int width = src.getWidth();
+        int height = src.getHeight();
 
         int[] inPixels = new int[width*height];
         int[] outPixels = new int[width*height];
@@ -67,6 +143,41 @@ public class LiquidFilter extends AbstractBufferedImageOp {
         return dst;
     }
     
+    /**
+     * Returns the array an image keeps its pixels in, if it is a whole TYPE_INT_ARGB image with
+     * one int per pixel and no padding, or null otherwise.
+     */
+    private static int[] getPixels( BufferedImage image ) {
+        if ( image.getType() != BufferedImage.TYPE_INT_ARGB )
+            return null;
+        WritableRaster raster = image.getRaster();
+        if ( raster.getParent() != null || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || !( raster.getSampleModel() instanceof SinglePixelPackedSampleModel )
+                || ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride() != image.getWidth() )
+            return null;
+        DataBufferInt buffer = (DataBufferInt)raster.getDataBuffer();
+        return buffer.getOffset() == 0 ? buffer.getData() : null;
+    }
+    
+    private static int[] ensureCapacity( int[] pixels, int size ) {
+        return pixels != null && pixels.length == size ? pixels : new int[size];
+    }
+    
+    /**
+     * @return whether the filter uses lookup tables instead of converting every pixel to HSB
+     */
+    public boolean getUseLookupTables() {
+        return useLookupTables;
+    }
+    
+    /**
+     * @param useLookupTables whether the filter uses lookup tables instead of converting every
+     *        pixel to HSB; both give exactly the same result
+     */
+    public void setUseLookupTables( boolean useLookupTables ) {
+        this.useLookupTables = useLookupTables;
+    }
+    
     /**
      * Converts the components of a color, as specified by the HSL
      * model, to an equivalent set of values for the default RGB model.
@@ -0,0 +1,32 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.jhlabs.image;
+
+/**
+ * A filter whose output for each pixel only depends on the pixels no more than a known radius
+ * away from it, so an image can be filtered a band of rows at a time as long as each band comes
+ * with the rows within the radius above and below it.  Pixels past the edge of the image are
+ * taken from the nearest edge.  FilterChain uses this to run such filters together with
+ * PointFilters in a single pass.
+ */
+public interface NeighborhoodFilter {
+    /**
+     * @return how far away, in rows or columns, the farthest pixel each pixel depends on can be
+     */
+    public int getRadius();
+    
+    /**
+     * Filters the rows from startY up to but not including endY.
+     * @param in the rows of the source image from inStartY on, one int per pixel; it holds every
+     *        row within the radius of the rows being filtered, or up to the edge of the image
+     * @param inStartY the row of the image that the first row of in is
+     * @param out where the filtered rows go, starting with row startY
+     * @param startY the first row to filter
+     * @param endY the row after the last one to filter
+     * @param width the width of the image
+     * @param height the height of the whole image
+     */
+    public void filterRows( int[] in, int inStartY, int[] out, int startY, int endY, int width, int height );
+}
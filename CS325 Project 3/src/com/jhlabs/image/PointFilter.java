@@ -20,25 +20,48 @@ import java.awt.image.*;
 
 /**
  * An abstract superclass for point filters. The interface is the same as the old RGBImageFilter.
+ * Since every pixel is filtered on its own, TYPE_INT_ARGB images can be split into bands of rows
+ * that are filtered on several threads at once (see setParallel); filterRGB must then be safe
+ * to call from several threads, which it is for every filter that only reads its settings.
  */
 public abstract class PointFilter extends AbstractBufferedImageOp {
 
 	protected boolean canFilterIndexColorModel = false;
 
-    public BufferedImage filter( BufferedImage src, BufferedImage dst ) {
+    public BufferedImage filter( final BufferedImage src, BufferedImage dst ) {
         int width = src.getWidth();
         int height = src.getHeight();
-		int type = src.getType();
-		WritableRaster srcRaster = src.getRaster();
 
         if ( dst == null )
             dst = createCompatibleDestImage( src, null );
-		WritableRaster dstRaster = dst.getRaster();
 
         setDimensions( width, height);
 
+		// only the rasters of TYPE_INT_ARGB images are safe to use from several threads at once
+		if ( src.getType() == BufferedImage.TYPE_INT_ARGB ) {
+			final BufferedImage out = dst;
+			filterRows( width, height, new RowFilter() {
+				public void filterRows( int startY, int endY ) {
+					filterBand( src, out, startY, endY );
+				}
+			} );
+		} else
+			filterBand( src, dst, 0, height );
+
+        return dst;
+    }
+
+	/**
+	 * Filters the rows from startY up to but not including endY.
+	 */
+	protected void filterBand( BufferedImage src, BufferedImage dst, int startY, int endY ) {
+        int width = src.getWidth();
+		int type = src.getType();
+		WritableRaster srcRaster = src.getRaster();
+		WritableRaster dstRaster = dst.getRaster();
+
 		int[] inPixels = new int[width];
-        for ( int y = 0; y < height; y++ ) {
+        for ( int y = startY; y < endY; y++ ) {
 			// We try to avoid calling getRGB on images as it causes them to become unmanaged, causing horrible performance problems.
 			if ( type == BufferedImage.TYPE_INT_ARGB ) {
 				srcRaster.getDataElements( 0, y, width, 1, inPixels );
@@ -52,8 +75,6 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
 				dst.setRGB( 0, y, width, 1, inPixels, 0, width );
 			}
         }
-
-        return dst;
     }
 
 	public void setDimensions(int width, int height) {
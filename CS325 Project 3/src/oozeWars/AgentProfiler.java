@@ -0,0 +1,312 @@
+package oozeWars;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <center><b>AGENTPROFILER.JAVA</b></center>
+ * Times every Agent a Schedule fires while it is enabled, and adds the times up by the class of
+ *    the Agent and the priority level it was fired at, so a slow tick can be pinned on the
+ *    ParticleManager, a Bullet, an Explosion or a PowerUp's Effect.
+ *
+ * <p>For each class and level it keeps the number of calls, the total and the longest time, and
+ *    a histogram of the times.  The histogram has SUB_BUCKETS buckets for every power of two
+ *    nanoseconds, the way HdrHistogram does, so every time from a nanosecond to centuries lands in
+ *    a fixed array and its percentiles are within an eighth of the truth.
+ *    Nothing is allocated while timing, except the first time a class is seen at a level.
+ *
+ * <p>Timing costs two reads of the clock for every Agent fired, which is lost in the time a game's
+ *    few Agents take each tick but would show up in a Schedule of thousands of tiny Agents.  The
+ *    counts are written by the thread stepping the Schedule and read by whoever asks for the
+ *    report, so a report taken while the game runs may be off by the Agent being fired.
+ */
+public class AgentProfiler implements AgentProfilerMXBean
+{
+	//The number of buckets in each power of two, as a power of two itself
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	//Enough buckets for any positive long
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	//The number of priority levels of the Schedule being profiled
+	private final int priorityLevels;
+
+	//The times of each class of Agent, one per priority level, made the first time one is fired
+	//there.  Only the stepping thread adds to it, and it and the report lock it while they do.
+	private final HashMap<Class<?>, Times[]> times = new HashMap<Class<?>, Times[]>();
+
+	//The class looked up last, and its times, since the same class is often fired many times in a row
+	private Class<?> lastClass;
+	private Times[] lastTimes;
+
+	//Whether Agents are being timed, which another thread may change at any time
+	private volatile boolean enabled;
+
+	//The name the profiler is registered under with JMX, or null
+	private ObjectName objectName;
+
+	/**
+	 * Creates a profiler for a Schedule, which starts out disabled.
+	 * @param priorityLevels
+	 * :  The number of priority levels of the Schedule.
+	 */
+	public AgentProfiler(int priorityLevels)
+	{
+		this.priorityLevels = priorityLevels;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/*
+	 * Fires an Agent and adds the time it took to its class's times.
+	 */
+	void fire(Agent agent, Game game, long ticks, int priorityLevel)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			agent.go(game, ticks, priorityLevel);
+		}
+		finally
+		{
+			long nanos = System.nanoTime() - start;
+			getTimes(agent.getClass(), priorityLevel).add(nanos);
+		}
+	}
+
+	/*
+	 * Finds the times of a class of Agent at a priority level, making them if need be.
+	 */
+	private Times getTimes(Class<?> agentClass, int priorityLevel)
+	{
+		Times[] levels = lastTimes;
+		if(agentClass != lastClass)
+		{
+			levels = times.get(agentClass);
+			if(levels == null)
+			{
+				levels = new Times[priorityLevels];
+				synchronized(times)
+				{
+					times.put(agentClass, levels);
+				}
+			}
+			lastClass = agentClass;
+			lastTimes = levels;
+		}
+
+		Times t = levels[priorityLevel];
+		if(t == null)
+			t = levels[priorityLevel] = new Times(agentClass, priorityLevel);
+		return t;
+	}
+
+	public long getCalls()
+	{
+		long calls = 0;
+		for(Times t : getAllTimes())
+			calls += t.calls;
+		return calls;
+	}
+
+	public long getNanos()
+	{
+		long nanos = 0;
+		for(Times t : getAllTimes())
+			nanos += t.nanos;
+		return nanos;
+	}
+
+	public void reset()
+	{
+		for(Times t : getAllTimes())
+			t.reset();
+	}
+
+	public String getReport()
+	{
+		ArrayList<Times> all = getAllTimes();
+		Collections.sort(all, new Comparator<Times>()
+		{
+			public int compare(Times a, Times b)
+			{
+				return Long.compare(b.nanos, a.nanos);
+			}
+		});
+		long total = 0;
+		for(Times t : all)
+			total += t.nanos;
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-5s %-36s %10s %10s %7s %9s %9s %9s %9s %9s%n", "level", "agent", "calls",
+				"total ms", "share", "mean us", "p50 us", "p90 us", "p99 us", "max us"));
+		for(Times t : all)
+		{
+			long calls = t.calls;
+			if(calls == 0)
+				continue;
+			report.append(String.format("%-5d %-36s %10d %10.1f %6.1f%% %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+					t.priorityLevel, getName(t.agentClass), calls, t.nanos / 1e6, t.nanos * 100.0 / Math.max(1, total),
+					t.nanos / 1e3 / calls, t.getPercentile(0.5) / 1e3, t.getPercentile(0.9) / 1e3,
+					t.getPercentile(0.99) / 1e3, t.max / 1e3));
+		}
+		return report.toString();
+	}
+
+	public void dump()
+	{
+		System.out.print(getReport());
+	}
+
+	/**
+	 * Registers the profiler with the platform MBeanServer, so it can be reached through JMX.
+	 * @param name
+	 * :  What to call it, so profilers of different Games can be told apart.
+	 * @throws JMException
+	 * If it can't be registered, such as when another profiler has the same name.
+	 */
+	public synchronized void register(String name) throws JMException
+	{
+		unregister();
+		ObjectName objectName = new ObjectName("oozeWars:type=AgentProfiler,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Unregisters the profiler from the platform MBeanServer, if it is registered.
+	 * @throws JMException
+	 */
+	public synchronized void unregister() throws JMException
+	{
+		if(objectName == null)
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if(server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		objectName = null;
+	}
+
+	/*
+	 * Copies out every class's times at every level that has been fired.
+	 */
+	private ArrayList<Times> getAllTimes()
+	{
+		ArrayList<Times> all = new ArrayList<Times>();
+		synchronized(times)
+		{
+			for(Map.Entry<Class<?>, Times[]> entry : times.entrySet())
+			{
+				for(Times t : entry.getValue())
+				{
+					if(t != null)
+						all.add(t);
+				}
+			}
+		}
+		return all;
+	}
+
+	/*
+	 * The name of a class without its package.  An anonymous class is named after the class it is
+	 * in, followed by its number.
+	 */
+	private static String getName(Class<?> agentClass)
+	{
+		String name = agentClass.getName();
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	/*
+	 * The bucket a time falls in.  The first SUB_BUCKETS times have a bucket each; after that each
+	 * power of two is split into SUB_BUCKETS buckets.
+	 */
+	private static int bucketOf(long nanos)
+	{
+		if(nanos < SUB_BUCKETS)
+			return (int)Math.max(0, nanos);
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int)((nanos >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/*
+	 * The smallest time that falls in a bucket.
+	 */
+	private static long lowestIn(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		return (long)((bucket & (SUB_BUCKETS - 1)) | SUB_BUCKETS) << shift;
+	}
+
+	/*
+	 * The times of one class of Agent at one priority level.
+	 */
+	private static class Times
+	{
+		final Class<?> agentClass;
+		final int priorityLevel;
+		long calls, nanos, max;
+		final long[] counts = new long[BUCKETS];
+
+		Times(Class<?> agentClass, int priorityLevel)
+		{
+			this.agentClass = agentClass;
+			this.priorityLevel = priorityLevel;
+		}
+
+		void add(long time)
+		{
+			calls++;
+			nanos += time;
+			if(time > max)
+				max = time;
+			counts[bucketOf(time)]++;
+		}
+
+		void reset()
+		{
+			calls = nanos = max = 0;
+			Arrays.fill(counts, 0);
+		}
+
+		/*
+		 * The time that the given fraction of calls took no longer than, as the middle of the
+		 * bucket it falls in.
+		 */
+		double getPercentile(double fraction)
+		{
+			long wanted = (long)Math.ceil(calls * fraction);
+			long seen = 0;
+			for(int b = 0; b < BUCKETS; b++)
+			{
+				seen += counts[b];
+				if(seen >= wanted && counts[b] > 0)
+				{
+					long low = lowestIn(b), high = b + 1 < BUCKETS ? lowestIn(b + 1) - 1 : Long.MAX_VALUE;
+					return Math.min(max, low + (high - low) / 2.0);
+				}
+			}
+			return max;
+		}
+	}
+}
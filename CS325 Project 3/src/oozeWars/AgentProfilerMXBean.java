@@ -0,0 +1,52 @@
+package oozeWars;
+
+/**
+ * <center><b>AGENTPROFILERMXBEAN.JAVA</b></center>
+ * What an AgentProfiler shows through JMX, so a game that is being played can be profiled from
+ *    JConsole or VisualVM: turn <i>Enabled</i> on, play through the slow part, and read
+ *    <i>Report</i>.
+ */
+public interface AgentProfilerMXBean
+{
+	/**
+	 * @return
+	 * <b>TRUE</b> if every Agent the Schedule fires is being timed.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Starts or stops timing every Agent the Schedule fires.  What has been measured is kept.
+	 * @param enabled
+	 * :  <b>TRUE</b> to time the Agents.
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * @return
+	 * The number of Agents fired while profiling since the last reset.
+	 */
+	public long getCalls();
+
+	/**
+	 * @return
+	 * The nanoseconds spent in Agents while profiling since the last reset.
+	 */
+	public long getNanos();
+
+	/**
+	 * @return
+	 * A table of every class of Agent at every priority level, the most time first, with how many
+	 * times it was fired and how long it took.
+	 */
+	public String getReport();
+
+	/**
+	 * Prints the report to standard output.
+	 */
+	public void dump();
+
+	/**
+	 * Forgets everything measured so far.
+	 */
+	public void reset();
+}
@@ -0,0 +1,424 @@
+package oozeWars;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * <center><b>ASSETMANAGER.JAVA</b></center>
+ * Loads the game's images, fonts, sounds and music on background threads, so nothing waits
+ *    for one asset while another could be loading.
+ *
+ * <p>Each asset is asked for by the name of its file, which is looked up next to
+ *    OozeWars.class.  The first request starts loading it and every request gets back the same
+ *    Future.  Code that can do without an asset for a moment, like a sound effect, takes it with
+ *    getNow() and carries on if it isn't ready; code that can't blocks on get().  An asset that
+ *    fails to load gives null.
+ *
+ * <p>ChangeListeners are told each time an asset finishes, on the thread that loaded it.  The
+ *    first time every asset asked for has finished, a table of how long each one took is
+ *    printed.
+ */
+public class AssetManager
+{
+	//The manager the game loads its assets through
+	private static AssetManager defaultManager;
+
+	//The threads the assets are loaded on
+	private final ExecutorService executor;
+
+	//Every asset asked for, by name, in the order they were asked for
+	private final Map<String, Asset<?>> assets = new LinkedHashMap<String, Asset<?>>();
+
+	//The number of assets that have finished, whether or not they loaded
+	private int finished;
+
+	//Whether the timings have been printed yet
+	private boolean reported;
+
+	//When the manager was made, which the timings are measured from
+	private final long created = System.nanoTime();
+
+	//Told each time an asset finishes
+	private final ArrayList<ChangeListener> listeners = new ArrayList<ChangeListener>();
+
+	/**
+	 * Creates a manager that loads assets on the given number of daemon threads.
+	 * @param threads
+	 * :  The most assets loaded at once.
+	 */
+	public AssetManager(int threads)
+	{
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private int count;
+
+			public synchronized Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "AssetManager-" + ++count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return
+	 * The manager the game loads its assets through, with a thread for each processor.
+	 */
+	public static synchronized AssetManager getDefault()
+	{
+		if(defaultManager == null)
+			defaultManager = new AssetManager(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		return defaultManager;
+	}
+
+	/**
+	 * Starts loading an image, or gets the one already asked for.  The image is copied into one
+	 * the screen can draw quickly, if there is a screen.
+	 * @param name
+	 * :  The name of the image's file.
+	 * @return
+	 * The image, once it has loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	public Future<BufferedImage> loadImage(final String name)
+	{
+		return (Future<BufferedImage>)load(name, "image", new Callable<BufferedImage>()
+		{
+			public BufferedImage call() throws IOException
+			{
+				BufferedImage image = ImageIO.read(getResource(name));
+				if(GraphicsEnvironment.isHeadless())
+					return image;
+
+				BufferedImage compatible = GraphicsEnvironment.getLocalGraphicsEnvironment()
+						.getDefaultScreenDevice().getDefaultConfiguration()
+						.createCompatibleImage(image.getWidth(), image.getHeight());
+				Graphics2D g = compatible.createGraphics();
+				g.drawImage(image, 0, 0, null);
+				g.dispose();
+				return compatible;
+			}
+		});
+	}
+
+	/**
+	 * Starts loading a TrueType font, or gets the one already asked for.
+	 * @param name
+	 * :  The name of the font's file.
+	 * @return
+	 * The font, at a size of 1, once it has loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	public Future<Font> loadFont(final String name)
+	{
+		return (Future<Font>)load(name, "font", new Callable<Font>()
+		{
+			public Font call() throws Exception
+			{
+				InputStream stream = getResource(name).openStream();
+				try
+				{
+					return Font.createFont(Font.TRUETYPE_FONT, stream);
+				}
+				finally
+				{
+					stream.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts loading a sound into memory, or gets the one already asked for.
+	 * @param name
+	 * :  The name of the sound's file.
+	 * @return
+	 * The sound, once it has loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	public Future<Sound> loadSound(final String name)
+	{
+		return (Future<Sound>)load(name, "sound", new Callable<Sound>()
+		{
+			public Sound call() throws Exception
+			{
+				return new Sound(getResource(name), true);
+			}
+		});
+	}
+
+	/**
+	 * Starts loading something, or gets the Future of whatever was already asked for under the
+	 * same name.
+	 * @param name
+	 * :  The name of the asset.
+	 * @param kind
+	 * :  What sort of asset it is, for the timings.
+	 * @param loader
+	 * :  Loads the asset.  Called on one of the manager's threads.
+	 * @return
+	 * The asset, once it has loaded.
+	 */
+	public synchronized Future<?> load(String name, String kind, Callable<?> loader)
+	{
+		Asset<?> asset = assets.get(name);
+		if(asset == null)
+		{
+			asset = new Asset<Object>(name, kind, loader);
+			assets.put(name, asset);
+			executor.execute(asset);
+		}
+		return asset;
+	}
+
+	/**
+	 * Waits for an asset to load.
+	 * @param future
+	 * :  The asset, as given by one of the load methods.
+	 * @return
+	 * The asset, or null if it failed to load.
+	 */
+	public static <T> T get(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @param future
+	 * :  The asset, as given by one of the load methods.
+	 * @return
+	 * The asset if it has loaded, or null if it is still loading or failed to load.
+	 */
+	public static <T> T getNow(Future<T> future)
+	{
+		return future.isDone() ? get(future) : null;
+	}
+
+	/**
+	 * @param name
+	 * :  The name of an image's file.
+	 * @return
+	 * The image, waiting for it to load if need be, or null if it failed to load.
+	 */
+	public BufferedImage getImage(String name)
+	{
+		return get(loadImage(name));
+	}
+
+	/**
+	 * @param name
+	 * :  The name of a font's file.
+	 * @return
+	 * The font, waiting for it to load if need be, or null if it failed to load.
+	 */
+	public Font getFont(String name)
+	{
+		return get(loadFont(name));
+	}
+
+	/**
+	 * @param name
+	 * :  The name of a sound's file.
+	 * @return
+	 * The sound if it has loaded, or null if it is still loading or failed to load.  Starts
+	 *    loading the sound if it hasn't been asked for.
+	 */
+	public Sound getSoundNow(String name)
+	{
+		return getNow(loadSound(name));
+	}
+
+	/**
+	 * @return
+	 * The number of assets that have finished, whether or not they loaded.
+	 */
+	public synchronized int getFinished()
+	{
+		return finished;
+	}
+
+	/**
+	 * @return
+	 * The number of assets that have been asked for.
+	 */
+	public synchronized int getRequested()
+	{
+		return assets.size();
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if every asset that has been asked for has finished.
+	 */
+	public synchronized boolean isDone()
+	{
+		return finished == assets.size();
+	}
+
+	/**
+	 * @param listener
+	 * :  Told each time an asset finishes, on the thread that loaded it.
+	 */
+	public synchronized void addChangeListener(ChangeListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 * :  A listener that will no longer be told when assets finish.
+	 */
+	public synchronized void removeChangeListener(ChangeListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return
+	 * A table of every asset asked for, with when it was asked for, how long it waited for a
+	 *    thread, how long it took to load, and when it finished, in milliseconds since the
+	 *    manager was made.
+	 */
+	public synchronized String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-28s %-6s %9s %9s %9s %9s%n", "asset", "kind", "asked", "waited", "loading", "done"));
+		long last = 0;
+		for(Asset<?> asset : assets.values())
+		{
+			report.append(String.format("%-28s %-6s %9.1f ", asset.name, asset.kind, since(asset.requested)));
+			if(asset.finished == 0)
+				report.append(String.format("%9s %9s %9s", "-", "-", "-"));
+			else
+			{
+				report.append(String.format("%9.1f %9.1f %9.1f", (asset.started - asset.requested) / 1e6,
+						(asset.finished - asset.started) / 1e6, since(asset.finished)));
+				last = Math.max(last, asset.finished);
+			}
+			if(asset.failed)
+				report.append("  failed");
+			report.append(String.format("%n"));
+		}
+		report.append(String.format("all %d assets done at %.1f ms%n", assets.size(), since(last)));
+		return report.toString();
+	}
+
+	/*
+	 * The time between when the manager was made and the given System.nanoTime(), in
+	 * milliseconds.
+	 */
+	private double since(long nanoTime)
+	{
+		return (nanoTime - created) / 1e6;
+	}
+
+	/*
+	 * Counts an asset as finished, tells the listeners, and prints the timings if it was the
+	 * last one.
+	 */
+	private void assetFinished(Asset<?> asset)
+	{
+		ChangeListener[] toTell;
+		String report = null;
+		synchronized(this)
+		{
+			finished++;
+			if(finished == assets.size() && !reported)
+			{
+				reported = true;
+				report = getReport();
+			}
+			toTell = listeners.toArray(new ChangeListener[listeners.size()]);
+		}
+
+		if(report != null)
+			System.out.print(report);
+		ChangeEvent event = new ChangeEvent(this);
+		for(ChangeListener listener : toTell)
+			listener.stateChanged(event);
+	}
+
+	/*
+	 * Where an asset's file is: next to OozeWars.class.
+	 */
+	private static URL getResource(String name) throws IOException
+	{
+		URL url = OozeWars.class.getResource(name);
+		if(url == null)
+			throw new IOException("No such asset: " + name);
+		return url;
+	}
+
+	/*
+	 * An asset being loaded, and when each step of loading it happened.
+	 */
+	private class Asset<T> extends FutureTask<T>
+	{
+		final String name, kind;
+		final long requested = System.nanoTime();
+		volatile long started, finished;
+		volatile boolean failed;
+
+		@SuppressWarnings("unchecked")
+		Asset(String name, String kind, Callable<?> loader)
+		{
+			super((Callable<T>)loader);
+			this.name = name;
+			this.kind = kind;
+		}
+
+		@Override
+		public void run()
+		{
+			started = System.nanoTime();
+			super.run();
+		}
+
+		@Override
+		protected void setException(Throwable t)
+		{
+			failed = true;
+			System.out.println("Could not load " + name + ": " + t);
+			super.setException(t);
+		}
+
+		@Override
+		protected void done()
+		{
+			finished = System.nanoTime();
+			assetFinished(this);
+		}
+	}
+}
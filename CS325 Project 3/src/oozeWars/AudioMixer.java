@@ -0,0 +1,350 @@
+package oozeWars;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * <center><b>AUDIOMIXER.JAVA</b></center>
+ * Plays any number of preloaded sounds at once through a single SourceDataLine, mixing them
+ * in software.
+ *
+ * <p>The mixer has a fixed pool of <i>voices</i>, each of which can play one sound at a time
+ *    at its own gain.  play() only puts the sound on a lock-free queue, so it never blocks
+ *    and never starts a thread.  The mixing thread takes sounds off the queue, gives each one
+ *    a free voice, and mixes every playing voice into the line a chunk at a time.  If every
+ *    voice is busy, the voice that has been playing the longest is stolen.
+ *
+ * <p>Sounds are 16-bit signed PCM in the mixer's format, as made by load().  render() mixes
+ *    into a byte buffer without a line, so the mixer can be checked without a sound card.
+ */
+public class AudioMixer
+{
+	//The sample rate and number of channels of the default mixer, which match the game's sounds
+	public static final float DEFAULT_SAMPLE_RATE = 22050;
+	public static final int DEFAULT_CHANNELS = 1;
+
+	//The number of voices in the default mixer
+	public static final int DEFAULT_VOICES = 16;
+
+	//The number of frames mixed at a time, and the number of chunks the line buffers
+	public static final int FRAMES_PER_CHUNK = 256;
+	public static final int CHUNKS_BUFFERED = 4;
+
+	//The fraction bits of the fixed point each voice's gain is kept in, and the gain that leaves
+	//a sound as it is
+	private static final int GAIN_BITS = 12;
+	private static final int UNITY_GAIN = 1 << GAIN_BITS;
+
+	//The mixer the game's Sounds play through, and whether it has been tried yet
+	private static AudioMixer defaultMixer;
+	private static boolean defaultTried;
+
+	//The format of the sounds and of the line
+	private final AudioFormat format;
+
+	//The voices, and the order they started playing in
+	private final Voice[] voices;
+	private long started;
+
+	//The number of voices that have been stolen
+	private volatile long stolen;
+
+	//Sounds waiting for a voice
+	private final ConcurrentLinkedQueue<Voice> pending = new ConcurrentLinkedQueue<Voice>();
+
+	//The sum of every voice for each sample of the chunk being mixed
+	private final int[] mix;
+
+	//The line, and the thread mixing into it, while the mixer is running
+	private SourceDataLine line;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a mixer that isn't running yet.
+	 * @param sampleRate
+	 * :  The sample rate of the sounds and of the line.
+	 * @param channels
+	 * :  The number of channels of the sounds and of the line.
+	 * @param voices
+	 * :  The most sounds that can play at once.
+	 */
+	public AudioMixer(float sampleRate, int channels, int voices)
+	{
+		if(voices < 1)
+			throw new IllegalArgumentException("A mixer needs at least one voice");
+
+		format = new AudioFormat(sampleRate, 16, channels, true, false);
+		this.voices = new Voice[voices];
+		for(int i = 0; i < voices; i++)
+			this.voices[i] = new Voice();
+		mix = new int[FRAMES_PER_CHUNK * channels];
+	}
+
+	/**
+	 * @return
+	 * The mixer the game's Sounds play through, started the first time it is asked for, or null
+	 *    if there is no line to play it on.
+	 */
+	public static synchronized AudioMixer getDefault()
+	{
+		if(!defaultTried)
+		{
+			defaultTried = true;
+			AudioMixer mixer = new AudioMixer(DEFAULT_SAMPLE_RATE, DEFAULT_CHANNELS, DEFAULT_VOICES);
+			try
+			{
+				mixer.start();
+				defaultMixer = mixer;
+			}
+			catch (IllegalArgumentException e) {System.out.println("No audio line for the mixer");}
+			catch (LineUnavailableException e) {System.out.println("No audio line for the mixer");}
+			catch (SecurityException e) {System.out.println("No audio line for the mixer");}
+		}
+		return defaultMixer;
+	}
+
+	/**
+	 * @return
+	 * The format of the sounds and of the line.
+	 */
+	public AudioFormat getFormat()
+	{
+		return format;
+	}
+
+	/**
+	 * Converts a sound to the mixer's format.
+	 * @param soundFormat
+	 * :  The format of the sound.
+	 * @param data
+	 * :  The sound's bytes.
+	 * @return
+	 * The sound's samples in the mixer's format, or null if it can't be converted.
+	 * @throws IOException
+	 */
+	public short[] load(AudioFormat soundFormat, byte[] data) throws IOException
+	{
+		AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data),
+				soundFormat, data.length / soundFormat.getFrameSize());
+		if(!soundFormat.matches(format))
+		{
+			if(!AudioSystem.isConversionSupported(format, soundFormat))
+				return null;
+			stream = AudioSystem.getAudioInputStream(format, stream);
+		}
+
+		// the converted length isn't always known up front, so the buffer grows as needed
+		byte[] bytes = new byte[data.length];
+		int length = 0;
+		while(true)
+		{
+			if(length == bytes.length)
+				bytes = Arrays.copyOf(bytes, bytes.length * 2 + 2);
+			int read = stream.read(bytes, length, bytes.length - length);
+			if(read < 0)
+				break;
+			length += read;
+		}
+		stream.close();
+
+		short[] samples = new short[length / 2];
+		for(int i = 0; i < samples.length; i++)
+			samples[i] = (short)((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8));
+		return samples;
+	}
+
+	/**
+	 * Queues a sound to be played.  Never blocks, so it can be called from any thread.
+	 * @param samples
+	 * :  The sound, as made by load().
+	 * @param gain
+	 * :  The volume to play the sound at, where 1 leaves it as it is.
+	 */
+	public void play(short[] samples, float gain)
+	{
+		Voice request = new Voice();
+		request.samples = samples;
+		request.gain = (int)(gain * UNITY_GAIN);
+		pending.offer(request);
+	}
+
+	/**
+	 * Mixes the next frames of every playing voice.  Only called by the mixing thread, or by
+	 * whoever owns the mixer while it isn't running.
+	 * @param out
+	 * :  The buffer the 16-bit little-endian samples are written into.
+	 * @param offset
+	 * :  Where in the buffer to start writing.
+	 * @param frames
+	 * :  The number of frames to mix.
+	 * @return
+	 * The number of voices still playing.
+	 */
+	public int render(byte[] out, int offset, int frames)
+	{
+		int channels = format.getChannels();
+		int active = 0;
+		for(int done = 0; done < frames; done += FRAMES_PER_CHUNK)
+		{
+			startPending();
+
+			int count = Math.min(FRAMES_PER_CHUNK, frames - done) * channels;
+			Arrays.fill(mix, 0, count, 0);
+			active = 0;
+			for(int v = 0; v < voices.length; v++)
+			{
+				Voice voice = voices[v];
+				if(voice.samples == null)
+					continue;
+				short[] samples = voice.samples;
+				int gain = voice.gain, position = voice.position;
+				int end = Math.min(count, samples.length - position);
+				for(int i = 0; i < end; i++)
+					mix[i] += samples[position + i] * gain >> GAIN_BITS;
+				voice.position = position + end;
+				if(voice.position >= samples.length)
+					voice.samples = null;
+				else
+					active++;
+			}
+
+			int at = offset + done * channels * 2;
+			for(int i = 0; i < count; i++)
+			{
+				int sample = mix[i];
+				if(sample > Short.MAX_VALUE)
+					sample = Short.MAX_VALUE;
+				else if(sample < Short.MIN_VALUE)
+					sample = Short.MIN_VALUE;
+				out[at++] = (byte)sample;
+				out[at++] = (byte)(sample >> 8);
+			}
+		}
+		return active;
+	}
+
+	/**
+	 * @return
+	 * The number of sounds that have been cut off to make room for newer ones.
+	 */
+	public long getStolenVoices()
+	{
+		return stolen;
+	}
+
+	/**
+	 * @return
+	 * The number of voices in the mixer.
+	 */
+	public int getVoices()
+	{
+		return voices.length;
+	}
+
+	/**
+	 * Opens the line and starts the thread that mixes into it.
+	 * @throws LineUnavailableException
+	 */
+	public synchronized void start() throws LineUnavailableException
+	{
+		if(running)
+			return;
+
+		final int chunkBytes = FRAMES_PER_CHUNK * format.getFrameSize();
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+		line = (SourceDataLine)AudioSystem.getLine(info);
+		line.open(format, chunkBytes * CHUNKS_BUFFERED);
+		line.start();
+		running = true;
+
+		thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				byte[] chunk = new byte[chunkBytes];
+				// writing blocks until the line has room, which keeps the mixer in step with it
+				while(running)
+				{
+					render(chunk, 0, FRAMES_PER_CHUNK);
+					line.write(chunk, 0, chunkBytes);
+				}
+				line.stop();
+				line.close();
+			}
+		}, "AudioMixer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the mixing thread and closes the line.  Sounds still playing are cut off.
+	 */
+	public void stop()
+	{
+		Thread mixing;
+		synchronized(this)
+		{
+			if(!running)
+				return;
+			running = false;
+			mixing = thread;
+			thread = null;
+		}
+		try { mixing.join(); } catch (InterruptedException e) { /* oh well */ }
+	}
+
+	/*
+	 * Gives each queued sound a voice, stealing the one that has played longest if none are free.
+	 */
+	private void startPending()
+	{
+		Voice request;
+		while((request = pending.poll()) != null)
+		{
+			Voice voice = null;
+			for(int v = 0; v < voices.length && voice == null; v++)
+				if(voices[v].samples == null)
+					voice = voices[v];
+			if(voice == null)
+			{
+				voice = voices[0];
+				for(int v = 1; v < voices.length; v++)
+					if(voices[v].order < voice.order)
+						voice = voices[v];
+				stolen++;
+			}
+			voice.samples = request.samples;
+			voice.gain = request.gain;
+			voice.position = 0;
+			voice.order = started++;
+		}
+	}
+
+	/*
+	 * A sound playing in the mixer, or waiting to.
+	 */
+	private static class Voice
+	{
+		//The sound, or null if the voice is free
+		short[] samples;
+
+		//The next sample to play
+		int position;
+
+		//The volume, in fixed point with UNITY_GAIN as 1
+		int gain;
+
+		//When the voice started playing, for finding the oldest
+		long order;
+	}
+}
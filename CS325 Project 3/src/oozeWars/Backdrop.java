@@ -2,19 +2,8 @@ package oozeWars;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.GraphicsConfiguration;
-import java.awt.GraphicsDevice;
-import java.awt.GraphicsEnvironment;
-import java.awt.Image;
-import java.awt.Toolkit;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.awt.image.ImageObserver;
-import java.io.File;
-import java.io.IOException;
-import java.net.URISyntaxException;
-
-import javax.swing.ImageIcon;
+import java.util.concurrent.Future;
 
 /**
  * <center><b>BACKDROP.JAVA</b></center>
@@ -30,65 +19,40 @@ import javax.swing.ImageIcon;
  * as the method for retrieving the image.  This also means that the image must be in the same
  * folder that contains the .class file of Backdrop.java.
  * 
+ * <p>The image is loaded in the background by the AssetManager.  Until it has loaded, the
+ * Backdrop draws nothing.
+ * 
  * @author Nick Kitten <br /> Sean Fedak
  *
  */
 
 public class Backdrop implements Sprite 
 {
-	//The image that will be used for this Backdrop.
-	private BufferedImage image;
-	private int width, height;
+	//The image that will be used for this Backdrop, which may still be loading.
+	private Future<BufferedImage> image;
 	
 	public Backdrop( String path )
 	{
-		try
-		{
-			try 
-			{
-				System.out.println(new File("").getCanonicalPath());
-			} 
-			catch (IOException e) {e.printStackTrace();}
-			
-			Image tempImg = new ImageIcon(getClass().getResource(path)).getImage();
-			
-			ImageObserver observer = new ImageObserver()
-			{
-				@Override
-				public boolean imageUpdate(Image img, int info, int x,
-						int y, int w, int h) 
-				{
-					if( ( info & ImageObserver.ERROR ) != 0 )
-						System.out.println("Image Loading Error");
-					return ( info & ImageObserver.ALLBITS ) != 0;
-				}
-			};
-			
-			// need to wait for image to load
-			while( tempImg.getWidth(observer) == -1);
-			
-			GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
-			GraphicsDevice device = env.getDefaultScreenDevice();
-			GraphicsConfiguration config = device.getDefaultConfiguration();
-			image = config.createCompatibleImage(tempImg.getWidth(observer), tempImg.getHeight(observer));
-			
-			Graphics2D g = image.createGraphics();
-			g.drawImage(tempImg, 0, 0, observer);
-			g.dispose();
-			
-			System.out.println("Background Loaded");
-		}
-		catch(SecurityException e)
-		{
-			System.out.println("Image load failed");
-		}
+		image = AssetManager.getDefault().loadImage(path);
+	}
+	
+	/**
+	 * @return
+	 * <b>TRUE</b> if the image has loaded, or failed to, so the Backdrop is drawn as it will be.
+	 */
+	public boolean isLoaded()
+	{
+		return image.isDone();
 	}
 	
 	@Override
 	public void draw(Graphics2D graphics, Game game) 
 	{
+		BufferedImage loaded = AssetManager.getNow(image);
+		if(loaded == null)
+			return;
 		OozeWars g = (OozeWars) game;
-		graphics.drawImage(image, 0, 0, g.getWidth(), g.getHeight(), Color.MAGENTA, null);
+		graphics.drawImage(loaded, 0, 0, g.getWidth(), g.getHeight(), Color.MAGENTA, null);
 		//graphics.drawRenderedImage(image, AffineTransform.getTranslateInstance(0, 0));
 	}
 
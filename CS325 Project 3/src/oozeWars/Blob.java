@@ -8,8 +8,6 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
 
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.JOptionPane;
 
 import com.jhlabs.image.Colormap;
@@ -44,7 +42,7 @@ import oozeWars.OozeWars.PlayerControls;
  *
  */
 
-public class Blob extends Entity 
+public class Blob extends Entity implements FieldSprite
 {
 	//The ArrayList of Particles that are part of this Blob
 	private ArrayList<Particle> particles;
@@ -101,30 +99,25 @@ public class Blob extends Entity
 	//The number of Particles that the Blob had prior to this timestep.
 	private int lastNumParticles;
 	
-	//The sound that the Blob will make when sucking up a new Particle.
-	private static final Sound slurp = initializeSound();
+	//The sound that the Blob will make when sucking up a new Particle, loaded by the AssetManager
+	private static final String SLURP_SOUND = "slurp.wav";
 	
 	//Variables to know whether the blob currently has the nitro or god powerups
 	private boolean nitro, god;
 	
+	//The Handles of Agents acting on this Blob, such as its GunEnabler and PowerUp effects, so
+	//they can be cancelled when the Blob leaves the game.
+	private ArrayList<Schedule.Handle> agents = new ArrayList<Schedule.Handle>();
 	
-	/*
-	 * Static method for retrieving the slurping sound that the Blob makes when 
-	 * it obtains a new particle.  We use this instead of making the sound when
-	 * the first Blob is created so we reduce the lag of loading the sound while
-	 * the game is being played.
+	
+	/**
+	 * Starts loading the slurping sound that the Blob makes when it obtains a new
+	 * particle.  We use this instead of loading the sound when the first Blob is
+	 * created so we reduce the lag of loading the sound while the game is being played.
 	 */
-	private static Sound initializeSound()
+	public static void preloadSounds()
 	{
-		try 
-		{
-			return new Sound( Blob.class.getResourceAsStream("slurp.wav"), true );
-		} 
-		catch (UnsupportedAudioFileException e) {e.printStackTrace();}
-		catch (LineUnavailableException e) {e.printStackTrace();}
-		catch (IOException e) {e.printStackTrace();}
-		
-		return null;
+		AssetManager.getDefault().loadSound(SLURP_SOUND);
 	}
 	
 	/**
@@ -167,11 +160,14 @@ public class Blob extends Entity
 
 		init( game );
 		
+		//A headless game has nothing to show the score on
+		if(game.isHeadless())
+			return;
 		if(blobID == 1)
 			scoreDisplay = new Score(10, 25, color, score);
 		else if(blobID == 2)
-			scoreDisplay = new Score(game.view.getWidth() - 350, 25, color, score);
-		game.view.addSprite(scoreDisplay, 2);
+			scoreDisplay = new Score(game.getViewWidth() - 350, 25, color, score);
+		game.addSprite(scoreDisplay, 2);
 	}
 	
 	/**
@@ -206,8 +202,8 @@ public class Blob extends Entity
 		if(blobID == 1)
 			healthBar = new HealthBar(10, 30, 100, 10, this, color);
 		else if(blobID == 2)
-			healthBar = new HealthBar(game.view.getWidth() - 350, 30, 100, 10, this, color);
-		game.queue.schedule(1, healthBar);
+			healthBar = new HealthBar(game.getViewWidth() - 350, 30, 100, 10, this, color);
+		healthBar.startRepeating(game.queue, 1);
 		score = (long)( health * particles.size() + .5 );
 		
 		/*
@@ -327,8 +323,13 @@ public class Blob extends Entity
 		//Graphics2D g = backBuf.createGraphics();
 		double scale = ov.SCALE;
 		
+		// a simulation thread may be changing the Blob; it is drawn from a RenderSnapshot instead
+		if( game.isSimulationThreaded() )
+			return;
+		
+		double alpha = game.getInterpolation();
 		for( Particle p : particles )
-			p.draw(graphics, game, color, scale );
+			p.draw(graphics, game, color, scale, p.getRenderX(alpha), p.getRenderY(alpha) );
 		
 		if(healthBar != null)
 			healthBar.draw(graphics, game, scale);
@@ -348,9 +349,36 @@ public class Blob extends Entity
 		//ScaleFilter s = new ScaleFilter(ow.getWidth(), ow.getHeight());
 		//graphics.drawRenderedImage( s.filter(frontBuf, null), null);
 	}
+	
+	/**
+	 * Draws this Blob the same way as draw(Graphics2D, Game), but lays its Particles straight into
+	 * the MetaballRenderer's field.
+	 * @param renderer
+	 * :  The MetaballRenderer the Particles are drawn into.
+	 * @param graphics
+	 * :  The Java graphics that the health bar will be drawn with.
+	 * @param game
+	 * :  The game that this Blob will be drawn for.
+	 */
+	public void draw(MetaballRenderer renderer, Graphics2D graphics, Game game)
+	{
+		double scale = ((OozeView) game.view).SCALE;
+		
+		if( game.isSimulationThreaded() )
+			return;
+		
+		double alpha = game.getInterpolation();
+		for( Particle p : particles )
+			p.draw(renderer, color, scale, p.getRenderX(alpha), p.getRenderY(alpha) );
+		
+		if(healthBar != null)
+			healthBar.draw(graphics, game, scale);
+	}
 
 	/**
-	 * Instructions for this Blob to carry out each timestep of the game.
+	 * Instructions for this Blob to carry out each timestep of the game.  This steps the Blob's
+	 * Particles; the ParticleStore integrates them afterwards, and then <code>act</code> does
+	 * the rest.
 	 * @param game
 	 * :  The game this Blob will be taking action in.
 	 * @param timestep
@@ -385,28 +413,45 @@ public class Blob extends Entity
 				p.go(game, timestep, priorityLevel, minSpeed, maxSpeed, friction, maxRadius, growth);
 			}
 		}
-		
+	}
+	
+	/**
+	 * The rest of this Blob's timestep, which reads where its Particles are once
+	 * <code>go</code> has stepped them and the ParticleStore has integrated them: the Blob
+	 * fires if its player asked it to, and its score is updated.
+	 * @param g
+	 * :  The game this Blob will be taking action in.
+	 * @param priorityLevel
+	 * :  The importance the Blob carries for performing its actions.
+	 */
+	public void act(OozeWars g, int priorityLevel)
+	{
 		if(head != null)
 		{
-			if( particles.size() > lastNumParticles )
-				slurp.play();
+			if( particles.size() > lastNumParticles && !g.isHeadless() )
+			{
+				Sound slurp = AssetManager.getDefault().getSoundNow(SLURP_SOUND);
+				if( slurp != null )
+					slurp.play();
+			}
 			
 			PlayerControls pc = g.getControls()[blobID-1];
 			
 			if(pc.isFire() && isFireReady())
 			{
 				Bullet b = shoot();
-				g.queue.scheduleIn(coolDown, priorityLevel, new GunEnabler(this) );
+				addAgent(g.queue.scheduleIn(coolDown, priorityLevel, new GunEnabler(this)));
 				
 				if( b == null)
 					return;
 				
-				g.queue.schedule(1, b );
-				g.view.addSprite(b, 1);
+				b.startRepeating(g.queue, 1);
+				g.addSprite(b, 1);
 			}
 			
 			updateScore();
-			scoreDisplay.setScore(score);
+			if(scoreDisplay != null)
+				scoreDisplay.setScore(score);
 		}
 	}
 	
@@ -658,6 +703,53 @@ public class Blob extends Entity
 		}
 	}
 	
+	/**
+	 * Records every Particle in this Blob, where it is now, and its health bar in a snapshot for
+	 * drawing.
+	 * @param frame
+	 * :  The snapshot being written.
+	 */
+	public void snapshot(RenderSnapshot frame)
+	{
+		for(int i = 0; i < particles.size(); i++)
+			frame.add(particles.get(i), color);
+		if(healthBar != null)
+			healthBar.snapshot(frame);
+	}
+	
+	/**
+	 * Keeps track of an Agent acting on this Blob, so that it is cancelled along with the Blob.
+	 * Handles of Agents that have already fired are dropped.
+	 * @param handle
+	 * :  The Handle returned when the Agent was scheduled.
+	 */
+	public void addAgent(Schedule.Handle handle)
+	{
+		for(int i = agents.size() - 1; i > -1; i--)
+		{
+			if(!agents.get(i).isPending())
+			{
+				agents.set(i, agents.get(agents.size() - 1));
+				agents.remove(agents.size() - 1);
+			}
+		}
+		agents.add(handle);
+	}
+	
+	/**
+	 * Cancels every Agent acting on this Blob, including its HealthBar.  Called when the Blob
+	 * leaves the game.
+	 */
+	public void cancelAgents()
+	{
+		for(Schedule.Handle handle : agents)
+			handle.cancel();
+		agents.clear();
+		
+		if(healthBar != null)
+			healthBar.stopRepeating();
+	}
+	
 	/**
 	 * Removes the tail Particle in this Blob's Particles and replaces it with
 	 * the ith Particle.
@@ -679,8 +771,8 @@ public class Blob extends Entity
 	public void updateHealth()
 	{
 		health = (head != null) ? head.getRadius() : 0;
-		for(Particle p:  particles)
-			health += p.getRadius();
+		for(int i = 0; i < particles.size(); i++)
+			health += particles.get(i).getRadius();
 	}
 	
 	/**
@@ -776,8 +868,9 @@ public class Blob extends Entity
 	 */
 	public void fullHeal()
 	{
-		for(Particle p:  particles)
+		for(int i = 0; i < particles.size(); i++)
 		{
+			Particle p = particles.get(i);
 			if(p instanceof Head)
 				p.setRadius(16);
 			else
@@ -804,4 +897,103 @@ public class Blob extends Entity
 	{
 		return powerUpsCollected;
 	}
+	
+	/*
+	 * The health bar of a player's Blob, or null for the neutral Blob.
+	 */
+	HealthBar getHealthBar()
+	{
+		return healthBar;
+	}
+	
+	/*
+	 * The Handles of the Agents acting on this Blob, some of which may have fired already.
+	 */
+	ArrayList<Schedule.Handle> getAgents()
+	{
+		return agents;
+	}
+	
+	/*
+	 * Writes the Blob's state for a Snapshot, other than its ID, which the Snapshot writes first so
+	 * that Particles can refer to the Blob.  The Blob's Agents are written with the Schedule.
+	 */
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		out.writeBoolean(dead);
+		out.writeInt(particles.size());
+		for(int i = 0; i < particles.size(); i++)
+			out.writeParticle(particles.get(i));
+		out.writeParticle(head);
+		out.writeColor(color);
+		out.writeColor(baseColor);
+		out.writeLong(score);
+		out.writeLong(damageDealt);
+		out.writeInt(powerUpsCollected);
+		out.writeDouble(minSpeed);
+		out.writeDouble(maxSpeed);
+		out.writeDouble(friction);
+		out.writeDouble(accel);
+		out.writeDouble(health);
+		out.writeDouble(blobForce);
+		out.writeDouble(maxRadius);
+		out.writeDouble(growth);
+		out.writeDouble(comfyDistance);
+		out.writeInt(coolDown);
+		out.writeBoolean(fireReady);
+		out.writeInt(lastNumParticles);
+		out.writeBoolean(nitro);
+		out.writeBoolean(god);
+		out.writeBoolean(healthBar != null);
+		if(healthBar != null)
+			healthBar.writeState(out);
+	}
+	
+	/*
+	 * Reads back the state written by writeState() into a Blob made with the neutral constructor
+	 * and given its ID.  The health bar is made but not scheduled; the score is shown if there is a
+	 * View to show it on.
+	 */
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		dead = in.readBoolean();
+		particles.clear();
+		for(int i = in.readInt(); i > 0; i--)
+			particles.add(in.readParticle());
+		head = (Head)in.readParticle();
+		color = in.readColor();
+		baseColor = in.readColor();
+		score = in.readLong();
+		damageDealt = in.readLong();
+		powerUpsCollected = in.readInt();
+		minSpeed = in.readDouble();
+		maxSpeed = in.readDouble();
+		friction = in.readDouble();
+		accel = in.readDouble();
+		health = in.readDouble();
+		blobForce = in.readDouble();
+		maxRadius = in.readDouble();
+		growth = in.readDouble();
+		comfyDistance = in.readDouble();
+		coolDown = in.readInt();
+		fireReady = in.readBoolean();
+		lastNumParticles = in.readInt();
+		nitro = in.readBoolean();
+		god = in.readBoolean();
+		if(in.readBoolean())
+		{
+			healthBar = new HealthBar(0, 0, 1, 1, this, baseColor);
+			healthBar.readState(in);
+		}
+		
+		OozeWars game = in.getGame();
+		if(game.isHeadless())
+			return;
+		if(blobID == 1)
+			scoreDisplay = new Score(10, 25, baseColor, score);
+		else if(blobID == 2)
+			scoreDisplay = new Score(game.getViewWidth() - 350, 25, baseColor, score);
+		if(scoreDisplay != null)
+			game.addSprite(scoreDisplay, 2);
+	}
 }
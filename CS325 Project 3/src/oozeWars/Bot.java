@@ -0,0 +1,22 @@
+package oozeWars;
+
+/**
+ * <center><b>BOT.JAVA</b></center>
+ * Plays for one of the players by setting their PlayerControls once every tick, the way the
+ *    keyboard would.  Bots are given to the game with OozeWars.setBot(...), and are mostly used
+ *    to run games without a View.
+ */
+public interface Bot
+{
+	/**
+	 * Sets the player's controls for the coming tick.  Called before the ParticleManager moves
+	 *    anything, and only while the player's Blob is alive.
+	 * @param game
+	 * :  The game being played.
+	 * @param blob
+	 * :  The Blob the Bot is playing.
+	 * @param controls
+	 * :  The player's controls, which the Blob's Head reads when it moves.
+	 */
+	public void control(OozeWars game, Blob blob, OozeWars.PlayerControls controls);
+}
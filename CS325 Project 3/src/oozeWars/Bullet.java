@@ -5,15 +5,13 @@ import java.awt.Graphics2D;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
-public class Bullet extends Particle 
+public class Bullet extends Particle implements FieldSprite, SnapshotSprite
 {
 	private double damage;
 	private double orientation;
 	private final double range = 400;
-	private static Sound[] launchSound = initializeSound();
+	//The sounds a Bullet can make when it is fired, loaded by the AssetManager
+	private static final String[] LAUNCH_SOUNDS = {"launch1.wav", "launch2.wav"};
 	
 	private boolean played = false;
 	
@@ -45,23 +43,31 @@ public class Bullet extends Particle
 		if( played == false )
 		{
 			played = true;
-			launchSound[game.random.nextInt(2)].play();
+			String name = LAUNCH_SOUNDS[game.random.nextInt(2)];
+			if( !game.isHeadless() )
+			{
+				Sound launch = AssetManager.getDefault().getSoundNow(name);
+				if( launch != null )
+					launch.play();
+			}
 		}
 			
 		
-		if( x < 0 || y < 0 || x > game.view.getWidth() || y > game.view.getHeight() )
+		OozeWars ow = (OozeWars)game;
+		if( x < 0 || y < 0 || x > ow.getViewWidth() || y > ow.getViewHeight() )
 			setDead(true);
 
-		if( ! isDead() )
-			game.queue.schedule(priorityLevel, this);
-		else
+		if( isDead() )
 		{
-			game.view.removeSprite(this, 1);
+			stopRepeating();
+			game.removeSprite(this, 1);
 			return;
 		}
 		
+		if( repeating == null )
+			game.queue.schedule(priorityLevel, this);
+		
 		super.go(game, timestep, priorityLevel);
-		OozeWars ow = (OozeWars)game;
 		
 		ArrayList<Particle> targets;
 		
@@ -81,8 +87,8 @@ public class Bullet extends Particle
 				if(dx * dx + dy * dy < range)
 				{
 					Explosion e = explode( b, ow );
-					game.queue.schedule(priorityLevel, e );
-					game.view.addSprite(e, 2);
+					e.startRepeating( game.queue, priorityLevel );
+					game.addSprite(e, 2);
 					return;
 				}
 			}
@@ -102,25 +108,52 @@ public class Bullet extends Particle
 	@Override
 	public void draw(Graphics2D graphics, Game game ) {
 		// TODO Auto-generated method stub
-		super.draw(graphics, game, color, ((OozeView)game.view).SCALE);
+		double alpha = game.getInterpolation();
+		super.draw(graphics, game, color, ((OozeView)game.view).SCALE, getRenderX(alpha), getRenderY(alpha));
 	}
 	
-	private static Sound[] initializeSound()
+	/* (non-Javadoc)
+	 * @see oozeWars.FieldSprite#draw(oozeWars.MetaballRenderer, java.awt.Graphics2D, oozeWars.Game)
+	 */
+	public void draw(MetaballRenderer renderer, Graphics2D graphics, Game game)
 	{
-		Sound[] sounds = new Sound[3];
-		
-		for( int i = 0; i < 2; i++)
-		{
-			try 
-			{
-				sounds[i] = new Sound(Bullet.class.getResource("launch" + (i+1) + ".wav"), true);
-			} 
-			catch (UnsupportedAudioFileException e) {e.printStackTrace();} 
-			catch (LineUnavailableException e) {e.printStackTrace();}
-			catch (IOException e) {e.printStackTrace();}
-		}
-		
-		return sounds;
+		double alpha = game.getInterpolation();
+		super.draw(renderer, color, ((OozeView)game.view).SCALE, getRenderX(alpha), getRenderY(alpha));
+	}
+	
+	/* (non-Javadoc)
+	 * @see oozeWars.SnapshotSprite#snapshot(oozeWars.RenderSnapshot)
+	 */
+	public void snapshot(RenderSnapshot frame)
+	{
+		frame.add(this, color);
+	}
+	
+	/**
+	 * Starts loading the sounds Bullets make, so they are ready by the time one is fired.
+	 */
+	public static void preloadSounds()
+	{
+		for(String name : LAUNCH_SOUNDS)
+			AssetManager.getDefault().loadSound(name);
+	}
+	
+	@Override
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		super.writeState(out);
+		out.writeDouble(damage);
+		out.writeDouble(orientation);
+		out.writeBoolean(played);
+	}
+	
+	@Override
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		super.readState(in);
+		damage = in.readDouble();
+		orientation = in.readDouble();
+		played = in.readBoolean();
 	}
 
 }
@@ -0,0 +1,236 @@
+package oozeWars;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <center><b>CONSTRAINTSOLVER.JAVA</b></center>
+ * Applies constraints between pairs of Particles on several threads at once.
+ *
+ * <p>Applying a stick constraint moves both Particles in the pair, so two pairs that share a
+ *    Particle can not be applied at the same time.  The solver splits the pairs into batches
+ *    in which no Particle appears more than once, then runs the batches one after another,
+ *    splitting each batch across the threads of a ForkJoinPool.
+ *
+ * <p>A pair is put in the first batch after every earlier batch that touches either of its
+ *    Particles.  This means every Particle still sees its constraints in the order the pairs
+ *    were added, and since nothing inside a batch can interfere, the result only depends on
+ *    the pairs and the order they were added in.  It is the same no matter how many threads
+ *    run it or how they are scheduled.
+ */
+public class ConstraintSolver
+{
+	/**
+	 * A constraint that can be applied between two Particles, given by their index.
+	 */
+	public interface Constraint
+	{
+		public void apply(int i, int j);
+	}
+
+	//The smallest number of pairs that is worth handing to another thread
+	private static final int GRAIN = 64;
+
+	//The number of pairs added so far, and each pair's Particle indices
+	private int size;
+	private int[] pairI, pairJ;
+
+	//The batch each pair was put in, and the pairs sorted by batch
+	private int[] batchOf, sorted;
+
+	//Where each batch starts in sorted
+	private int[] batchStart;
+
+	//For each Particle index, the first batch that can still take a pair with that Particle
+	private int[] level;
+
+	//The threads that run the batches
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a solver that runs on the given number of threads.
+	 * @param workers
+	 * :  The number of threads to use.  Must be at least 1.
+	 */
+	public ConstraintSolver(int workers)
+	{
+		if(workers < 1)
+			throw new IllegalArgumentException("Invalid number of workers");
+
+		pool = new ForkJoinPool(workers);
+		pairI = new int[256];
+		pairJ = new int[256];
+		batchOf = new int[256];
+		sorted = new int[256];
+		batchStart = new int[16];
+		level = new int[256];
+	}
+
+	/**
+	 * @return
+	 * The number of threads this solver runs on.
+	 */
+	public int getWorkers()
+	{
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Removes every pair from the solver.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * @return
+	 * The number of pairs that have been added since the last clear().
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds a pair of Particles to be constrained.  Constraints on the same Particle are
+	 * applied in the order they are added.
+	 * @param i
+	 * :  The index of the first Particle.
+	 * @param j
+	 * :  The index of the second Particle.
+	 */
+	public void add(int i, int j)
+	{
+		if(size == pairI.length)
+		{
+			pairI = Arrays.copyOf(pairI, size * 2);
+			pairJ = Arrays.copyOf(pairJ, size * 2);
+		}
+		pairI[size] = i;
+		pairJ[size] = j;
+		size++;
+	}
+
+	/**
+	 * Applies the constraint to every pair that has been added.
+	 * @param constraint
+	 * :  The constraint to apply to each pair.
+	 * @param numParticles
+	 * :  One more than the largest Particle index used by any pair.
+	 */
+	public void solve(final Constraint constraint, int numParticles)
+	{
+		int batches = makeBatches(numParticles);
+
+		for(int b = 0; b < batches; b++)
+		{
+			int start = batchStart[b];
+			int end = batchStart[b + 1];
+
+			if(end - start <= GRAIN)
+				applyRange(constraint, start, end);
+			else
+				pool.invoke(new BatchTask(constraint, start, end));
+		}
+	}
+
+	/**
+	 * Shuts down the solver's threads.  The solver can not be used afterwards.
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/*
+	 * Assigns every pair to a batch and sorts the pairs by batch, keeping the order they were
+	 * added in within each batch.  Returns the number of batches.
+	 */
+	private int makeBatches(int numParticles)
+	{
+		if(level.length < numParticles)
+			level = new int[Math.max(numParticles, level.length * 2)];
+		Arrays.fill(level, 0, numParticles, 0);
+
+		if(batchOf.length < size)
+		{
+			batchOf = new int[pairI.length];
+			sorted = new int[pairI.length];
+		}
+
+		int batches = 0;
+		for(int k = 0; k < size; k++)
+		{
+			int i = pairI[k];
+			int j = pairJ[k];
+			int b = Math.max(level[i], level[j]);
+			batchOf[k] = b;
+			level[i] = level[j] = b + 1;
+			if(b + 1 > batches)
+				batches = b + 1;
+		}
+
+		if(batchStart.length < batches + 1)
+			batchStart = new int[Math.max(batches + 1, batchStart.length * 2)];
+		Arrays.fill(batchStart, 0, batches + 1, 0);
+
+		// counting sort by batch
+		for(int k = 0; k < size; k++)
+			batchStart[batchOf[k] + 1]++;
+		for(int b = 0; b < batches; b++)
+			batchStart[b + 1] += batchStart[b];
+		for(int k = 0; k < size; k++)
+			sorted[batchStart[batchOf[k]]++] = k;
+
+		// the pass above moved every start to the end of its batch; shift them back
+		for(int b = batches; b > 0; b--)
+			batchStart[b] = batchStart[b - 1];
+		batchStart[0] = 0;
+
+		return batches;
+	}
+
+	/*
+	 * Applies the constraint to the pairs in a range of sorted.
+	 */
+	private void applyRange(Constraint constraint, int start, int end)
+	{
+		for(int s = start; s < end; s++)
+		{
+			int k = sorted[s];
+			constraint.apply(pairI[k], pairJ[k]);
+		}
+	}
+
+	/*
+	 * Splits a range of one batch in half until the pieces are small enough to apply directly.
+	 */
+	@SuppressWarnings("serial")
+	private class BatchTask extends RecursiveAction
+	{
+		private final Constraint constraint;
+		private final int start, end;
+
+		BatchTask(Constraint constraint, int start, int end)
+		{
+			this.constraint = constraint;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end - start <= GRAIN)
+			{
+				applyRange(constraint, start, end);
+				return;
+			}
+
+			int mid = (start + end) >>> 1;
+			invokeAll(new BatchTask(constraint, start, mid), new BatchTask(constraint, mid, end));
+		}
+	}
+}
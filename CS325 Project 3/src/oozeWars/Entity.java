@@ -6,6 +6,8 @@ public abstract class Entity implements Sprite, Agent
 {
 	protected double x, y, oldX, oldY;
 	protected boolean dead;
+	//The registration that fires this Entity every tick, or null if it reschedules itself
+	protected Schedule.Handle repeating;
 	
 	public Entity(double x, double y)
 	{
@@ -45,11 +47,36 @@ public abstract class Entity implements Sprite, Agent
 	 */
 	@Override
 	public void go(Game game, long timestep, int priorityLevel) {
-		// TODO Auto-generated method stub
-		if(!isDead())
+		if(isDead())
+		{
+			stopRepeating();
+			game.removeSprite(this, 1);
+		}
+		else if(repeating == null)
 			game.queue.schedule(priorityLevel, this);
-		else
-			game.view.removeSprite(this, 1);
+	}
+	
+	/**
+	 * Registers the Entity to have go() called every tick at the given priority level, until it
+	 * dies or stopRepeating() is called.
+	 * @param queue
+	 * :  The Schedule the Entity will be registered with.
+	 * @param priorityLevel
+	 * :  The priority level the Entity will be fired at.
+	 */
+	public void startRepeating(Schedule queue, int priorityLevel)
+	{
+		stopRepeating();
+		repeating = queue.scheduleRepeating(1, priorityLevel, this);
+	}
+	
+	/**
+	 * Stops the Entity from being fired every tick, if startRepeating() was called.
+	 */
+	public void stopRepeating()
+	{
+		if(repeating != null)
+			repeating.cancel();
 	}
 
 	/**
@@ -99,6 +126,34 @@ public abstract class Entity implements Sprite, Agent
 		return oldY;
 	}
 	
+	/**
+	 * Where to draw the Entity in a frame that falls between the last two steps.
+	 * @param alpha
+	 * :  How far the frame falls between the steps, from 0 (the step before last) to 1 (the
+	 *    last step), as given by Game.getInterpolation().
+	 * @return
+	 * The x value between getOldX() and getX().
+	 */
+	public double getRenderX(double alpha)
+	{
+		double oldX = getOldX();
+		return oldX + alpha * (getX() - oldX);
+	}
+	
+	/**
+	 * Where to draw the Entity in a frame that falls between the last two steps.
+	 * @param alpha
+	 * :  How far the frame falls between the steps, from 0 (the step before last) to 1 (the
+	 *    last step), as given by Game.getInterpolation().
+	 * @return
+	 * The y value between getOldY() and getY().
+	 */
+	public double getRenderY(double alpha)
+	{
+		double oldY = getOldY();
+		return oldY + alpha * (getY() - oldY);
+	}
+	
 	public void push(double dx, double dy)
 	{
 		x += dx;
@@ -10,19 +10,16 @@ import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
 import com.jhlabs.image.ImageMath;
 
 //Moves particles around (naturally)
-class Explosion extends Entity
+class Explosion extends Entity implements SnapshotSprite
 {
 	// determines how quickly the falloff function goes to zero:
 	// higher values indicate a steeper drop-off
 	static final double SCALE_FACTOR = 5;
 	// Shape used to draw explosion animation
-	Shape star = createStar();
+	static final Shape STAR = createStar();
 	// max radius of the explosion
 	double radius;
 	// max acceleration to apply to a particle
@@ -49,11 +46,12 @@ class Explosion extends Entity
 	private Blob parent;
 	
 	ArrayList<Particle> targetParticles;
-	private static Sound hit = initializeSound();
+	//The sound an Explosion makes, loaded by the AssetManager
+	private static final String HIT_SOUND = "hit.wav";
 	private boolean played = false;
 	
 	// create a multi-pointed star
-	private Shape createStar()
+	private static Shape createStar()
 	{
 		Polygon poly = new Polygon();
 		Point p0 = new Point(30,0);
@@ -105,13 +103,75 @@ class Explosion extends Entity
 		transform.scale(0.01, 0.01);
 	}
 	
+	// creates an empty explosion for a Snapshot to fill in with readState()
+	Explosion()
+	{
+		super(0, 0);
+	}
+	
+	// writes the explosion's state for a Snapshot
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		out.writeDouble(x);
+		out.writeDouble(y);
+		out.writeBoolean(dead);
+		out.writeDouble(radius);
+		out.writeDouble(accel);
+		out.writeInt(duration);
+		out.writeInt(bangDuration);
+		out.writeDouble(damage);
+		out.writeInt(time);
+		out.writeBoolean(particlesPushed);
+		out.writeDouble(minR2);
+		out.writeDouble(maxR2);
+		double[] matrix = new double[6];
+		transform.getMatrix(matrix);
+		for( double m : matrix )
+			out.writeDouble(m);
+		out.writeFloat(alpha);
+		out.writeBlob(target);
+		out.writeBlob(parent);
+		out.writeBoolean(played);
+	}
+	
+	// reads back the state written by writeState()
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		x = oldX = in.readDouble();
+		y = oldY = in.readDouble();
+		dead = in.readBoolean();
+		radius = in.readDouble();
+		accel = in.readDouble();
+		duration = in.readInt();
+		bangDuration = in.readInt();
+		damage = in.readDouble();
+		time = in.readInt();
+		particlesPushed = in.readBoolean();
+		minR2 = in.readDouble();
+		maxR2 = in.readDouble();
+		double[] matrix = new double[6];
+		for( int i = 0; i < matrix.length; i++ )
+			matrix[i] = in.readDouble();
+		transform = new AffineTransform(matrix);
+		alpha = in.readFloat();
+		target = in.readBlob();
+		parent = in.readBlob();
+		played = in.readBoolean();
+		targetParticles = target.getParticles();
+	}
+	
 	@Override
 	public void go(Game game, long timestep, int priorityLevel)
 	{
 		if(played == false)
 		{
 			played = true;
-			hit.play();
+			if( !game.isHeadless() )
+			{
+				Sound hit = AssetManager.getDefault().getSoundNow(HIT_SOUND);
+				if( hit != null )
+					hit.play();
+			}
 		}
 		
 		//OozeWars g = (OozeWars)game;
@@ -230,27 +290,34 @@ class Explosion extends Entity
 	// draw the explosion graphics
 	@Override
 	public void draw(Graphics2D g, Game game)
+	{
+		draw(g, transform, alpha);
+	}
+	
+	// copies the explosion graphics into a snapshot, to be drawn on the Swing thread
+	public void snapshot(RenderSnapshot frame)
+	{
+		frame.addExplosion(transform, alpha);
+	}
+	
+	// draws the explosion graphics with the given transformation and transparency
+	static void draw(Graphics2D g, AffineTransform transform, float alpha)
 	{
 		// inner red star is half the size of outer yellow
 		AffineTransform inner = (AffineTransform)transform.clone();
 		inner.scale(0.5, 0.5);
 		
 		g.setColor( new Color(0.8f, 0.2f, 0f, alpha));
-		g.fill(transform.createTransformedShape(star));
+		g.fill(transform.createTransformedShape(STAR));
 		g.setColor(new Color(0.8f, 0.8f, 0f, alpha));
-		g.fill(inner.createTransformedShape(star));
+		g.fill(inner.createTransformedShape(STAR));
 	}
 	
-	private static Sound initializeSound()
+	/**
+	 * Starts loading the sound Explosions make, so it is ready by the time one goes off.
+	 */
+	public static void preloadSounds()
 	{	
-		try 
-		{
-			return new Sound(Explosion.class.getResource("hit.wav"), true);
-		} 
-		catch (UnsupportedAudioFileException e) {e.printStackTrace();}
-		catch (LineUnavailableException e) {e.printStackTrace();}
-		catch (IOException e) {e.printStackTrace();}
-		
-		return null;
+		AssetManager.getDefault().loadSound(HIT_SOUND);
 	}
 }
\ No newline at end of file
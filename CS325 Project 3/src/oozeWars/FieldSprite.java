@@ -0,0 +1,14 @@
+/**
+	FIELDSPRITE.JAVA
+	
+	A Sprite made of Particles, which can lay them straight into a MetaballRenderer's field instead of drawing
+	them with Java2D.  Anything else it draws goes on the Graphics2D, which draws into the same field.
+*/
+
+package oozeWars;
+import java.awt.*;
+
+public interface FieldSprite extends Sprite
+{
+	public void draw(MetaballRenderer renderer, Graphics2D graphics, Game game);
+}
@@ -10,14 +10,17 @@
 	game to start the game going.
 	
 	<p>
-	The game constructs a java.util.Timer to repeatedly issue to the Swing Schedule a small Runnable which
-	does the same two things over and over again:
+	The game constructs a java.util.Timer to repeatedly issue to the Swing Schedule a small Runnable, at the frame
+	rate, which does the same two things over and over again:
 	
 	<p>
 	<ol>
-	<li>The Schedule is pulsed.  If there are any Agents registered for this tick, they are fired and
-	given the opportunity to manipulate the game model.  This is basically the *internal* game model.
-	<li>Next we issue a repaint() on the View.
+	<li>The Schedule is pulsed once for every step that has come due since the last time, at the frame rate.  If
+	there are any Agents registered for these ticks, they are fired and given the opportunity to manipulate the game
+	model.  This is basically the *internal* game model.  If the game has fallen far behind, only a few steps are taken and the rest are dropped;
+	and if the last Runnable hasn't been handled by the time the next is due, the next is skipped.
+	<li>Next we issue a repaint() on the View.  Since frames and steps don't line up, getInterpolation() tells the
+	Sprites how far the frame falls between the last two steps.
 	</o>
 	
 	After this Runnable is called, all other queue events will be handled by the Swing Schedule, such as key events
@@ -25,6 +28,21 @@
 	sprite registered with the View is given an opportunity to redraw themselves.
 	</ol>
 	
+	<p><b>Simulation Thread</b>
+	
+	<p>If setSimulationThreaded(true) is called before the game is started, the Schedule is instead pulsed on its
+	own high-priority thread, so a slow tick no longer holds up painting or input on the Swing thread.  The two
+	threads then never touch the same objects at the same time:
+	
+	<ul>
+	<li>After every step the simulation thread calls publishFrame(), which subclasses override to copy whatever the
+	View draws into a snapshot for the Swing thread (see RenderSnapshot).
+	<li>Listeners hand input to the model with post(...), which puts it on a lock-free queue that the simulation
+	thread empties before each step.
+	<li>Sprites added to or removed from the View by Agents are queued up until the View next paints.
+	<li>Agents that need to show dialogs or switch screens do so through invokeOnView(...).
+	</ul>
+	
 	<p>
 	This Runnable loop is started with start(), and is 
 	stopped and cleaned up with stop().  These methods are provided to you to override and add your own
@@ -124,6 +142,12 @@
 	keystroke, mouse, and other UI events.
 	</ul>
 	
+	<p><b>Headless Games</b>
+	
+	<p>A Game whose View is never set runs <i>headless</i>: start() registers no listeners and starts no timer, and
+	the game is instead run by calling step() as often as wanted.  Agents should add and remove their sprites with
+	the Game's addSprite(...) and removeSprite(...), which do nothing when there is no View.
+	
 */
 
 package oozeWars;
@@ -132,11 +156,14 @@ import java.util.*;
 import java.util.Timer;
 import javax.swing.*;
 import java.lang.reflect.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 public class Game
 {
-	/** Random number generator. */
-	public final Random random = new Random();
+	/** Random number generator.  Its state can be saved and restored along with the rest of the game. */
+	public final RestorableRandom random = new RestorableRandom();
 
 	/** The game's internal event queue. */
 	public final Schedule queue;
@@ -162,8 +189,21 @@ public class Game
 	
 	// internal variables
 	java.util.Timer pace;
-	double frameRate;			// the target rate
-	boolean paused = false;     // used to know whether the game is paused or not
+	double frameRate;			// the target rate at which the View is repainted
+	double stepRate;			// the rate at which the Schedule is stepped
+	long stepPeriod;			// the nanoseconds between steps
+	long accumulated;			// nanoseconds that have passed but not been stepped yet
+	long lastFrameTime;			// when advance() was last called
+	volatile long lastStepTime;	// when the last step was due
+	double interpolation = 1;	// how far the last frame fell between the last two steps
+	final AtomicBoolean framePending = new AtomicBoolean();	// whether a frame is waiting for the Swing thread
+	static final int MAX_CATCH_UP_STEPS = 5;	// the most steps taken at once to catch up after falling behind
+	volatile boolean paused = false;     // used to know whether the game is paused or not
+	boolean running = false;	// whether the game has been started and not yet stopped
+	boolean simulationThreaded = false;	// whether the Schedule is stepped on its own thread rather than the Swing thread
+	Thread simulation;			// the thread stepping the Schedule, or null
+	volatile boolean simulating = false;	// cleared to tell the simulation thread to finish
+	final ConcurrentLinkedQueue<Runnable> events = new ConcurrentLinkedQueue<Runnable>();	// input waiting for the simulation thread
 
 	/** Constructs a Game with an Schedule of the provided number of priority levels, and a desired
 		maximum frame rate.  The View is initially set to null.
@@ -174,8 +214,23 @@ public class Game
 	*/
 	public Game(int numQueuePriorityLevels, double maximumFrameRate)
 	{
-		queue = new Schedule(numQueuePriorityLevels);
-		frameRate = maximumFrameRate;
+		this(numQueuePriorityLevels, maximumFrameRate, false);
+	}
+	
+	/** Constructs a Game with a Schedule of the provided number of priority levels, and a desired
+		maximum frame rate.  The View is initially set to null.
+	*	@param numQueuePriorityLevels
+	*	:  The number of priority levels that the queue should have.
+	*	@param maximumFrameRate
+	*	:  The maximum number of frames per second that the game should run at.
+	*	@param useTimingWheel
+	*	:  <b>TRUE</b> to keep the queue's Agents in a TimingWheelSchedule, <b>FALSE</b> to use the
+	*	   heap-based Schedule.
+	*/
+	public Game(int numQueuePriorityLevels, double maximumFrameRate, boolean useTimingWheel)
+	{
+		queue = useTimingWheel ? new TimingWheelSchedule(numQueuePriorityLevels) : new Schedule(numQueuePriorityLevels);
+		frameRate = stepRate = maximumFrameRate;
 	}
 	
 	/** Sets the View.  You typically don't call this -- it's called by the View itself during initialization. 
@@ -200,7 +255,7 @@ public class Game
 	/** Starts or resets the game. */
 	public void reset()
 	{
-		if (pace != null) stop();
+		if (running) stop();
 		start();
 	}
 		
@@ -211,10 +266,15 @@ public class Game
 		stepFlag.testAndTurnOff();
 		repaintFlag.testAndTurnOff();
 		paused = true;
+		running = false;
 		if(pace != null)
 			pace.cancel();
+		pace = null;
+		stopSimulation();
+		events.clear();
 		queue.clear();
-		view.clear();
+		if(view != null)
+			view.clear();
 	}
 		
 	/** Called by reset() to start the game.  Override this to initialize or reinitialize things, but be sure
@@ -228,38 +288,288 @@ public class Game
 		// need to do this access game instance from inner anonymous class
 		final Game thisGame = this;
 		paused = false;
+		running = true;
+		
+		// a headless game has no listeners or timer: it is stepped by whoever is running it
+		if(view == null)
+		{
+			stepFlag.turnOn();
+			return;
+		}
 		
 		registerListeners(view);
 		
 		stepFlag.turnOn();
 		repaintFlag.turnOn();
 		
-		TimerTask painter = new TimerTask( ) 
+		stepPeriod = (long)(1000000000L / stepRate);
+		accumulated = 0;
+		lastStepTime = lastFrameTime = System.nanoTime();
+		interpolation = 1;
+		
+		TimerTask painter;
+		if(simulationThreaded)
 		{
-			public void run ( ) 
+			startSimulation();
+			
+			// the simulation thread steps the model; the timer only asks for frames
+			painter = new TimerTask( ) 
 			{
-
-				SwingUtilities.invokeLater(new Runnable( ) 
+				public void run ( ) 
 				{
-					public void run( ) 
+					repaintFlag.turnOn();
+					view.repaint( );
+				}
+			};
+		}
+		else
+		{
+			painter = new TimerTask( ) 
+			{
+				public void run ( ) 
+				{
+					// if the last frame hasn't been handled yet, don't pile another one up behind it
+					if( !framePending.compareAndSet(false, true) )
+						return;
+					
+					SwingUtilities.invokeLater(new Runnable( ) 
 					{
-						if( !paused )
+						public void run( ) 
 						{
-							queue.step( thisGame ); // advance my model
-							view.repaint( ); // draw the model
-							stepFlag.turnOn();
-							repaintFlag.turnOn();
+							framePending.set(false);
+							if( !paused )
+							{
+								advance( ); // advance my model
+								view.repaint( ); // draw the model
+								repaintFlag.turnOn();
+							}
+							else
+								lastFrameTime = System.nanoTime();
 						}
-					}
-				} );
-
-			} 
-		};
-        
+					} );
+	
+				} 
+			};
+		}
+		
 		if(pace == null)
 			pace = new Timer();
 		
-		pace.scheduleAtFixedRate(painter, 0, (long)(1000 / frameRate) );
+		pace.scheduleAtFixedRate(painter, 0, Math.max(1, Math.round(1000 / frameRate)) );
+	}
+	
+	/* Steps the Schedule once for every full step period that has passed since the last call, carrying the
+	   remainder over to the next call.  If more than MAX_CATCH_UP_STEPS are owed, the rest are dropped so a slow
+	   stretch doesn't turn into a burst of fast-forwarding.  Stops early if an Agent pauses or stops the game.
+	   Returns the number of steps taken. */
+	int advance()
+	{
+		long now = System.nanoTime();
+		accumulated += now - lastFrameTime;
+		lastFrameTime = now;
+		
+		int steps = 0;
+		while(accumulated >= stepPeriod && !paused)
+		{
+			if(steps == MAX_CATCH_UP_STEPS)
+			{
+				accumulated %= stepPeriod;
+				break;
+			}
+			queue.step( this );
+			stepFlag.turnOn();
+			accumulated -= stepPeriod;
+			steps++;
+		}
+		
+		if(steps > 0)
+			lastStepTime = now - accumulated;
+		interpolation = Math.min(1.0, (double) accumulated / stepPeriod);
+		return steps;
+	}
+	
+	/* Starts the thread that steps the Schedule when the game is simulation-threaded.  Each time around it hands
+	   over the input, takes whatever steps are due and publishes a frame, then sleeps until the next step is due. */
+	void startSimulation()
+	{
+		simulating = true;
+		
+		simulation = new Thread("Simulation")
+		{
+			public void run()
+			{
+				while(simulating)
+				{
+					handleEvents();
+					if(!paused)
+					{
+						if(advance() > 0)
+							publishFrame();
+					}
+					else
+						lastFrameTime = System.nanoTime();
+					
+					long wait = stepPeriod - accumulated - (System.nanoTime() - lastFrameTime);
+					if(wait > 0)
+						LockSupport.parkNanos(wait);
+				}
+			}
+		};
+		simulation.setPriority(Thread.MAX_PRIORITY);
+		simulation.setDaemon(true);
+		simulation.start();
+	}
+	
+	/* Tells the simulation thread to finish and waits for it to, unless it is the thread asking. */
+	void stopSimulation()
+	{
+		Thread t = simulation;
+		if(t == null)
+			return;
+		
+		simulating = false;
+		simulation = null;
+		if(t == Thread.currentThread())
+			return;
+		
+		LockSupport.unpark(t);
+		boolean interrupted = false;
+		while(t.isAlive())
+		{
+			try { t.join(); }
+			catch(InterruptedException e) { interrupted = true; }
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	/* Runs all the input posted since the last step. */
+	void handleEvents()
+	{
+		Runnable event;
+		while((event = events.poll()) != null)
+			event.run();
+	}
+	
+	/** Steps the Schedule once, right away.  This is how a headless game, one with no View, is run: as many
+		steps as the caller wants, as fast as it likes.  Does nothing while the game is paused. */
+	public void step()
+	{
+		if(paused)
+			return;
+		queue.step(this);
+		stepFlag.turnOn();
+	}
+	
+	/** @return <b>TRUE</b> if the game has no View, and is run by calling step() rather than by a timer. */
+	public boolean isHeadless()
+	{
+		return view == null;
+	}
+	
+	/** Adds a sprite to the View.  Does nothing if the game is headless.
+	*	@param sprite
+	*	:  The sprite to add.
+	*	@param layer
+	*	:  The layer to add it to.
+	*/
+	public void addSprite(Sprite sprite, int layer)
+	{
+		if(view != null)
+			view.addSprite(sprite, layer);
+	}
+	
+	/** Removes a sprite from the View.  Does nothing if the game is headless.
+	*	@param sprite
+	*	:  The sprite to remove.
+	*	@param layer
+	*	:  The layer to remove it from.
+	*/
+	public void removeSprite(Sprite sprite, int layer)
+	{
+		if(view != null)
+			view.removeSprite(sprite, layer);
+	}
+	
+	/** Returns how far the current frame falls between the last two steps, from 0 (drawn where things were at the
+		step before last) to 1 (drawn where they are now).  Sprites can draw themselves at getRenderX(...) and
+		getRenderY(...) of this, so that movement looks smooth when frames and steps don't line up. */
+	public double getInterpolation()
+	{
+		if(simulation == null)
+			return interpolation;
+		return getInterpolation(lastStepTime);
+	}
+	
+	/** Returns how far the current frame falls between the step taken at the given System.nanoTime() and the
+		step after it. */
+	public double getInterpolation(long stepTime)
+	{
+		return Math.max(0.0, Math.min(1.0, (double)(System.nanoTime() - stepTime) / stepPeriod));
+	}
+	
+	/** Returns the System.nanoTime() at which the last step was due.  Called from publishFrame() to timestamp
+		a snapshot. */
+	protected long getLastStepTime()
+	{
+		return lastStepTime;
+	}
+	
+	/** @return The number of times a second the Schedule is stepped, which is the frame rate the Game was
+		constructed with.  Agents move things a fixed amount every step, so the game only plays at the speed
+		it was tuned for at this rate. */
+	public double getSimulationRate()
+	{
+		return stepRate;
+	}
+	
+	/** Called on the simulation thread after every step, when the game is simulation-threaded.  Override this
+		to copy what the View draws into a snapshot it can draw from while the next step runs. */
+	protected void publishFrame()
+	{
+	}
+	
+	/** Hands a piece of input to the game model.  When the game is simulation-threaded it is queued up and run by
+		the simulation thread before its next step; otherwise it is run right away.  Listeners should change the
+		model only through this method.
+	*	@param event
+	*	:  The change to make to the model.
+	*/
+	public void post(Runnable event)
+	{
+		if(simulation != null)
+			events.add(event);
+		else
+			event.run();
+	}
+	
+	/** Runs something that has to happen on the Swing thread, such as showing a dialog.  It is run right away if
+		this is the Swing thread, and otherwise handed to it with SwingUtilities.invokeLater(...).
+	*	@param task
+	*	:  The task to run on the Swing thread.
+	*/
+	public void invokeOnView(Runnable task)
+	{
+		if(SwingUtilities.isEventDispatchThread())
+			task.run();
+		else
+			SwingUtilities.invokeLater(task);
+	}
+	
+	/** Chooses whether the Schedule is stepped on its own thread instead of the Swing thread.  Takes effect the
+		next time the game is started.
+	*	@param threaded
+	*	:  <b>TRUE</b> to step the Schedule on a simulation thread, <b>FALSE</b> to step it on the Swing thread.
+	*/
+	public void setSimulationThreaded(boolean threaded)
+	{
+		simulationThreaded = threaded;
+	}
+	
+	/** @return <b>TRUE</b> if the Schedule is stepped on its own thread instead of the Swing thread. */
+	public boolean isSimulationThreaded()
+	{
+		return simulationThreaded;
 	}
 		
 	/** Pauses or unpauses the Game 
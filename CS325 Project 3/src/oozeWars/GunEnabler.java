@@ -14,5 +14,13 @@ public class GunEnabler implements Agent
 	{
 		blob.setFireReady(true);
 	}
+	
+	/*
+	 * The Blob that will be able to fire again.
+	 */
+	Blob getBlob()
+	{
+		return blob;
+	}
 
 }
@@ -2,6 +2,7 @@ package oozeWars;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.IOException;
 
 import oozeWars.OozeWars.PlayerControls;
 
@@ -60,8 +61,8 @@ public class Head extends Particle
 	
 	public void calcOrientation()
 	{
-		double vx = x - oldX;
-		double vy = y - oldY;
+		double vx = getX() - getOldX();
+		double vy = getY() - getOldY();
 		
 		if( vx * vx + vy * vy < .001 )
 			return;
@@ -84,8 +85,7 @@ public class Head extends Particle
 	@Override
 	public void setRadius(double newRadius) 
 	{
-		radius = newRadius;
-		halfWidth = (int)newRadius + BLUR_WIDTH;
+		setRadiusAndMass( newRadius, 0 );
 	}
 
 	/* (non-Javadoc)
@@ -107,6 +107,21 @@ public class Head extends Particle
 	{
 		return orientation;
 	}
+	
+	@Override
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		super.writeState(out);
+		out.writeDouble(orientation);
+	}
+	
+	@Override
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		super.readState(in);
+		orientation = in.readDouble();
+	}
+	
 	/* (non-Javadoc)
 	 * @see oozeWars.Particle#go(oozeWars.Game, long, int)
 	 */
@@ -115,24 +130,24 @@ public class Head extends Particle
 			double minSpeed, double maxSpeed, double friction, double maxRadius, double growth )
 	{
 		OozeWars ow = (OozeWars)game;
-		PlayerControls pc = ow.getControls()[blobID-1];
+		PlayerControls pc = ow.getControls()[getBlobID()-1];
 		double accel = .6;
 		
 		if(pc.isDown())
 		{
-			y += accel;
+			push(0, accel);
 		}
 		if(pc.isUp())
 		{
-			y -= accel;
+			push(0, -accel);
 		}
 		if(pc.isLeft())
 		{
-			x -= accel;
+			push(-accel, 0);
 		}
 		if(pc.isRight())
 		{
-			x += accel;
+			push(accel, 0);
 		}
 		
 		super.go(game, timestep, priorityLevel, minSpeed, maxSpeed, friction, maxRadius * 1.25, growth * 1.6);
@@ -0,0 +1,195 @@
+package oozeWars;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * <center><b>HEADLESSRUNNER.JAVA</b></center>
+ * Plays games of OozeWars between SimpleBots without a View, as fast as the simulation can
+ *    step, and prints how each one ended.  Nothing in it needs a display, a sound card or
+ *    a MIDI synthesizer, so it runs with <code>-Djava.awt.headless=true</code>.
+ *
+ * <p>With <code>-record</code> each game is written to a Replay file named after its seed.
+ *    With <code>-save</code> each game is saved to a Snapshot file named after its seed once it
+ *    has played the given number of ticks, and with <code>-snapshot</code> every game is restored
+ *    from a Snapshot file instead of starting from the beginning, so a crowded late game can be
+ *    played again and again without playing up to it first.  With <code>-profile</code> the
+ *    Schedule times every Agent it fires, and the AgentProfiler's report is printed after each
+ *    game.  With <code>-replay</code> no Bots play: each Replay given is played back as fast as
+ *    it can be, and its ticks, winner and checksum are checked against the ones it recorded.
+ *
+ * <p>Usage: <code>java oozeWars.HeadlessRunner [games] [maxTicks] [seed] [-wheel]
+ *    [-record prefix] [-save tick prefix] [-snapshot file] [-profile]</code><br />
+ *    or: <code>java oozeWars.HeadlessRunner -replay file...</code>
+ */
+public class HeadlessRunner
+{
+	/**
+	 * Plays the games and prints a line for each.
+	 * @param args
+	 * :  Optionally, the number of games (default 10), the most ticks each may last (default
+	 *    54000, half an hour of play), the seed of the first game (default 0, each following game
+	 *    adds one), <code>-wheel</code> to use the TimingWheelSchedule, <code>-record</code>
+	 *    followed by the start of the name of each game's Replay file, <code>-save</code> followed
+	 *    by the tick to save each game after and the start of the name of its Snapshot file, and
+	 *    <code>-snapshot</code> followed by the Snapshot file every game is restored from, and
+	 *    <code>-profile</code> to print where each game's ticks went.  Or
+	 *    <code>-replay</code> followed by the Replay files to play back.
+	 */
+	public static void main(String[] args)
+	{
+		boolean wheel = false, profile = false;
+		String record = null, save = null;
+		long saveTick = 0;
+		Snapshot snapshot = null;
+		ArrayList<String> replays = null;
+		long[] numbers = {10, 54000, 0};
+		int count = 0;
+		for(int a = 0; a < args.length; a++)
+		{
+			String arg = args[a];
+			if(replays != null)
+				replays.add(arg);
+			else if(arg.equals("-wheel"))
+				wheel = true;
+			else if(arg.equals("-profile"))
+				profile = true;
+			else if(arg.equals("-record") && a + 1 < args.length)
+				record = args[++a];
+			else if(arg.equals("-save") && a + 2 < args.length)
+			{
+				saveTick = Long.parseLong(args[++a]);
+				save = args[++a];
+			}
+			else if(arg.equals("-snapshot") && a + 1 < args.length)
+			{
+				try
+				{
+					snapshot = Snapshot.read(new File(args[++a]));
+				}
+				catch (IOException e)
+				{
+					System.out.println(e.getMessage());
+					return;
+				}
+				wheel = snapshot.isTimingWheel();
+			}
+			else if(arg.equals("-replay"))
+				replays = new ArrayList<String>();
+			else if(count < numbers.length)
+				numbers[count++] = Long.parseLong(arg);
+		}
+		if(replays != null)
+		{
+			playBack(replays);
+			return;
+		}
+		int games = (int)numbers[0];
+		long maxTicks = numbers[1];
+		long seed = numbers[2];
+		
+		System.out.printf("%-8s %10s %8s %10s %12s%n", "seed", "ticks", "winner", "ms", "ticks/sec");
+		long totalTicks = 0, totalNanos = 0;
+		for(int i = 0; i < games; i++)
+		{
+			OozeWars game = new OozeWars(30, 2, wheel);
+			game.random.setSeed(seed + i);
+			for(int player = 0; player < 2; player++)
+				game.setBot(player, new SimpleBot((seed + i) * 2 + player));
+			if(record != null)
+				game.setRecording(new File(record + (seed + i) + ".replay"));
+			game.setSnapshot(snapshot);
+			game.queue.setProfiling(profile);
+			
+			long start = System.nanoTime();
+			game.reset();
+			long ticks = 0;
+			while(game.getWinner() < 0 && ticks < maxTicks)
+			{
+				game.step();
+				ticks++;
+				if(save != null && ticks == saveTick && game.getWinner() < 0)
+					save(game, new File(save + (seed + i) + ".snapshot"));
+			}
+			long elapsed = System.nanoTime() - start;
+			game.stop();
+			
+			totalTicks += ticks;
+			totalNanos += elapsed;
+			System.out.printf("%-8d %10d %8s %10d %12.0f%n", seed + i, ticks,
+					game.getWinner() < 0 ? "-" : String.valueOf(game.getWinner()),
+					elapsed / 1000000, ticks * 1e9 / elapsed);
+			if(profile)
+				game.queue.getProfiler().dump();
+		}
+		System.out.printf("%-8s %10d %8s %10d %12.0f%n", "total", totalTicks, "",
+				totalNanos / 1000000, totalTicks * 1e9 / Math.max(1, totalNanos));
+	}
+
+	/*
+	 * Saves a game to a Snapshot file, and says how big it is.
+	 */
+	private static void save(OozeWars game, File file)
+	{
+		Snapshot snapshot = Snapshot.take(game);
+		try
+		{
+			snapshot.write(file);
+			System.out.println("Saved tick " + snapshot.getTicks() + " to " + file + " (" + snapshot.getSize() + " bytes)");
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not write the snapshot: " + e);
+		}
+	}
+
+	/*
+	 * Plays back each Replay until its game is won or it runs out, and prints whether it came out
+	 * the way it was recorded.
+	 */
+	private static void playBack(ArrayList<String> files)
+	{
+		System.out.printf("%-24s %10s %8s %10s %12s  %s%n", "replay", "ticks", "winner", "ms", "ticks/sec", "result");
+		int mismatches = 0;
+		for(String file : files)
+		{
+			Replay replay;
+			try
+			{
+				replay = Replay.read(new File(file));
+			}
+			catch (IOException e)
+			{
+				System.out.println(e.getMessage());
+				mismatches++;
+				continue;
+			}
+			
+			OozeWars game = new OozeWars(30, replay.getPlayers(), replay.isTimingWheel());
+			game.setReplay(replay);
+			
+			long start = System.nanoTime();
+			game.reset();
+			long ticks = 0;
+			while(game.getWinner() < 0 && ticks < replay.getTicks())
+			{
+				game.step();
+				ticks++;
+			}
+			long elapsed = System.nanoTime() - start;
+			long checksum = game.getStateChecksum();
+			game.stop();
+			
+			boolean same = ticks == replay.getTicks() && game.getWinner() == replay.getWinner()
+				&& checksum == replay.getChecksum();
+			if(!same)
+				mismatches++;
+			System.out.printf("%-24s %10d %8s %10d %12.0f  %s%n", new File(file).getName(), ticks,
+					game.getWinner() < 0 ? "-" : String.valueOf(game.getWinner()),
+					elapsed / 1000000, ticks * 1e9 / Math.max(1, elapsed), same ? "match" : "MISMATCH");
+		}
+		if(mismatches > 0)
+			System.out.println(mismatches + " of " + files.size() + " replays did not play out the way they were recorded");
+	}
+}
@@ -3,9 +3,8 @@ package oozeWars;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.Shape;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 
 public class HealthBar extends Entity 
 {
@@ -15,6 +14,8 @@ public class HealthBar extends Entity
 	private Color color, outline;
 	private final double UPDATE = .5;
 	private float strokeWidth;
+	//The rectangle that is filled in, reused every frame
+	private final Rectangle2D.Double rect = new Rectangle2D.Double();
 
 	public HealthBar(double x, double y, double w, double h, Blob b, Color col) 
 	{
@@ -30,14 +31,23 @@ public class HealthBar extends Entity
 
 	public void draw(Graphics2D graphics, Game game, double scale) 
 	{
-		AffineTransform at = AffineTransform.getScaleInstance(scale, scale);
 		graphics.setColor( color );
-		Shape rect = at.createTransformedShape( new Rectangle2D.Double(x, y, currHealth, height) );
+		rect.setRect( x * scale, y * scale, currHealth * scale, height * scale );
 		graphics.fill( rect );
 		//graphics.setColor(outline);
 		//graphics.setStroke(new BasicStroke(strokeWidth * (float)(scale)));
 		//graphics.draw(rect);
 	}
+	
+	/**
+	 * Copies the bar into a snapshot, to be drawn on the Swing thread.
+	 * @param frame
+	 * :  The snapshot being written.
+	 */
+	public void snapshot(RenderSnapshot frame)
+	{
+		frame.addBar( x, y, currHealth, height, color );
+	}
 
 	/* (non-Javadoc)
 	 * @see oozeWars.Entity#go(oozeWars.Game, long, int)
@@ -48,6 +58,41 @@ public class HealthBar extends Entity
 		currHealth += UPDATE * ( blob.getHealth() * factor - currHealth );
 		super.go(game, timestep, priorityLevel);
 	}
+	
+	/*
+	 * The Blob whose health the bar shows.
+	 */
+	Blob getBlob()
+	{
+		return blob;
+	}
+	
+	/*
+	 * Writes the bar's state for a Snapshot.
+	 */
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		out.writeDouble(x);
+		out.writeDouble(y);
+		out.writeDouble(width);
+		out.writeDouble(height);
+		out.writeDouble(factor);
+		out.writeDouble(currHealth);
+	}
+	
+	/*
+	 * Reads back the state written by writeState().
+	 */
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		x = oldX = in.readDouble();
+		y = oldY = in.readDouble();
+		width = in.readDouble();
+		height = in.readDouble();
+		factor = in.readDouble();
+		currHealth = in.readDouble();
+		strokeWidth = (float)(height * 0.1);
+	}
 
 
 }
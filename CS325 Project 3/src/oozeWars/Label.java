@@ -2,10 +2,7 @@ package oozeWars;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.FontFormatException;
 import java.awt.Graphics2D;
-import java.io.IOException;
-import java.io.InputStream;
 
 public class Label implements Sprite 
 {
@@ -18,18 +15,8 @@ public class Label implements Sprite
 	protected String text;
 
 	public static Font initFont() {
-		InputStream fontStream = Score.class.getResourceAsStream("Splats_Unsplatted.ttf");
-	
-		try 
-		{
-			Font f = Font.createFont(Font.TRUETYPE_FONT, fontStream);
-			fontStream.close();
-			return f;
-		} 
-		catch (FontFormatException e) {e.printStackTrace();}
-		catch (IOException e) {e.printStackTrace();}
-		
-		return null;
+		// loaded once by the AssetManager, waiting for it if it is still loading
+		return AssetManager.getDefault().getFont("Splats_Unsplatted.ttf");
 	}
 
 	public static Font getFont() {
@@ -7,6 +7,8 @@ import java.awt.font.TextAttribute;
 import java.text.AttributedString;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
@@ -19,6 +21,8 @@ public class MenuScreen extends JPanel implements ActionListener
 	private JPanel foreground;
 	private JPanel mainMenu, pauseMenu, scores, aboutGame, howToPlay;
 	private JLabel title;
+	//Shows how many of the game's assets have loaded, until they all have
+	private JLabel loading;
 	private OozeWars game;
 	private Box mainBox, pauseBox;
 	private JButton twoPlayer;
@@ -207,6 +211,28 @@ public class MenuScreen extends JPanel implements ActionListener
 		//******************************************************************************
 		
 
+		//***********Initialize Loading Progress***************************************
+		loading = new JLabel("", JLabel.CENTER);
+		loading.setFont(font.deriveFont(20f));
+		loading.setForeground(Color.GREEN);
+		foreground.add(loading, BorderLayout.SOUTH);
+		final AssetManager assets = AssetManager.getDefault();
+		assets.addChangeListener(new ChangeListener()
+		{
+			public void stateChanged(ChangeEvent e)
+			{
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					public void run()
+					{
+						showProgress(assets);
+					}
+				});
+			}
+		});
+		showProgress(assets);
+		//******************************************************************************
+		
 		foreground.add(mainMenu, BorderLayout.CENTER);
 		mainMenu.setVisible(true);
 		add( foreground );
@@ -258,6 +284,18 @@ public class MenuScreen extends JPanel implements ActionListener
 		}
 	}
 	
+	/*
+	 * Shows how many assets have loaded, and the background once it has.
+	 */
+	private void showProgress(AssetManager assets)
+	{
+		if(assets.isDone())
+			loading.setVisible(false);
+		else
+			loading.setText("Loading " + assets.getFinished() + " of " + assets.getRequested() + "...");
+		background.repaint();
+	}
+	
 	private JButton initializeButton(String label, Box box)
 	{
 		JButton button = new JButton(label);
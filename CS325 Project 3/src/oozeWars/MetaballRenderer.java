@@ -0,0 +1,258 @@
+package oozeWars;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import com.jhlabs.image.BrightnessLookup;
+
+/**
+ * <center><b>METABALLRENDERER.JAVA</b></center>
+ * Draws the ooze layer straight into the pixels of its images instead of through Java2D and
+ *    three separate filters.
+ *
+ * <p>Each Particle's falloff kernel is laid over the <i>field</i>, an <code>int[]</code> of
+ *    ARGB pixels, the same way Java2D would draw its sprite: the kernel's alpha builds up over
+ *    what is already there.  Sprites that aren't made of Particles, like health bars, are still
+ *    drawn with the Graphics2D from createGraphics(), which draws into the same pixels.
+ *
+ * <p>finish() then makes one pass over the field that does the work of the three filters
+ *    OozeView otherwise uses.  It shades the ooze for the screen the way LiquidFilter does.  At
+ *    the same time it thresholds and fades the field, the way AlphaThresholdFilter and
+ *    FadeFilter do, into a second field that the next frame is drawn over.  The two fields
+ *    swap every frame.
+ *
+ * <p>Only the thread painting the View uses a MetaballRenderer.
+ */
+public class MetaballRenderer
+{
+	//The size of the field and of the shaded image
+	private final int width, height;
+
+	//The field being drawn this frame and the one the next frame is drawn over, and their pixels
+	private BufferedImage field, nextField;
+	private int[] pixels, nextPixels;
+
+	//The shaded ooze that is drawn to the screen, and its pixels
+	private final BufferedImage shaded;
+	private final int[] shadedPixels;
+
+	//How much of its alpha the field keeps from one frame to the next
+	private final float fadeAmount;
+
+	//The alpha below which the field is cleared before it fades
+	private final int threshold;
+
+	//The alpha below which nothing is shaded, and above which the ooze is brightened towards opaque
+	private final int lowAlphaCutoff, highAlphaCutoff;
+
+	//How far away the pixels the shading compares are, along the diagonal
+	private final int offset;
+
+	//The colors the shading gives at each brightness, the same ones LiquidFilter gives
+	private final BrightnessLookup lookup = new BrightnessLookup();
+
+	//The alpha of the falloff kernel of each width, in pixels of the field, made as needed
+	private final ArrayList<int[]> kernels = new ArrayList<int[]>();
+
+	/**
+	 * Creates a MetaballRenderer with empty fields.
+	 * @param width
+	 * :  The width of the field, in pixels.
+	 * @param height
+	 * :  The height of the field, in pixels.
+	 * @param fadeAmount
+	 * :  How much of its alpha the field keeps from one frame to the next, from 0 to 1.
+	 * @param threshold
+	 * :  The alpha below which the field is cleared before it fades.
+	 * @param lowAlphaCutoff
+	 * :  The alpha below which nothing is shaded.
+	 * @param highAlphaCutoff
+	 * :  The alpha above which the ooze is brightened towards opaque.
+	 * @param offset
+	 * :  How far away the pixels the shading compares are, along the diagonal.
+	 */
+	public MetaballRenderer(int width, int height, float fadeAmount, int threshold,
+			int lowAlphaCutoff, int highAlphaCutoff, int offset)
+	{
+		this.width = width;
+		this.height = height;
+		this.fadeAmount = fadeAmount;
+		this.threshold = threshold;
+		this.lowAlphaCutoff = lowAlphaCutoff;
+		this.highAlphaCutoff = highAlphaCutoff;
+		this.offset = offset;
+
+		field = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+		nextField = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+		shaded = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+		pixels = getPixels(field);
+		nextPixels = getPixels(nextField);
+		shadedPixels = getPixels(shaded);
+	}
+
+	/**
+	 * @return
+	 * A Graphics2D that draws into this frame's field, for sprites that aren't made of Particles.
+	 *    It has to be disposed of before finish() is called.
+	 */
+	public Graphics2D createGraphics()
+	{
+		Graphics2D graphics = field.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		return graphics;
+	}
+
+	/**
+	 * Lays a Particle's falloff kernel over the field.
+	 * @param halfWidth
+	 * :  The Particle's half width, unscaled.
+	 * @param rgb
+	 * :  The Particle's color.
+	 * @param scale
+	 * :  The scale the field is drawn at.
+	 * @param x
+	 * :  The x location of the center of the Particle, unscaled.
+	 * @param y
+	 * :  The y location of the center of the Particle, unscaled.
+	 */
+	public void splat(int halfWidth, int rgb, double scale, double x, double y)
+	{
+		int size = (int)Math.ceil(halfWidth * 2 * scale);
+		if(size < 1)
+			return;
+		int[] kernel = getKernel(size);
+
+		int left = (int)(((int)x - halfWidth) * scale);
+		int top = (int)(((int)y - halfWidth) * scale);
+		int startX = Math.max(0, -left), endX = Math.min(size, width - left);
+		int startY = Math.max(0, -top), endY = Math.min(size, height - top);
+
+		int r = (rgb >> 16) & 0xff;
+		int g = (rgb >> 8) & 0xff;
+		int b = rgb & 0xff;
+
+		for(int ky = startY; ky < endY; ky++)
+		{
+			int row = (top + ky) * width + left;
+			int krow = ky * size;
+			for(int kx = startX; kx < endX; kx++)
+			{
+				int sa = kernel[krow + kx];
+				if(sa == 0)
+					continue;
+
+				int i = row + kx;
+				int dst = pixels[i];
+				int da = dst >>> 24;
+				if(da == 0 || sa == 255)
+				{
+					pixels[i] = (sa << 24) | (rgb & 0xffffff);
+					continue;
+				}
+
+				// source over, with straight (not premultiplied) alpha
+				int dw = da * (255 - sa) / 255;
+				int a = sa + dw;
+				float inv = 1.f / a;
+				pixels[i] = (a << 24)
+					| (int)((r * sa + ((dst >> 16) & 0xff) * dw) * inv) << 16
+					| (int)((g * sa + ((dst >> 8) & 0xff) * dw) * inv) << 8
+					| (int)((b * sa + (dst & 0xff) * dw) * inv);
+			}
+		}
+	}
+
+	/**
+	 * Shades this frame's field into the image for the screen, and fades it into the field the
+	 *    next frame is drawn over.
+	 * @return
+	 * The shaded image.
+	 */
+	public BufferedImage finish()
+	{
+		int[] in = pixels, out = shadedPixels, next = nextPixels;
+		float fade = fadeAmount;
+		int w = width, h = height;
+
+		for(int y = 0; y < h; y++)
+		{
+			int row = y * w;
+			int above = Math.max(0, y - offset) * w;
+			int below = Math.min(h - 1, y + offset) * w;
+			for(int x = 0; x < w; x++)
+			{
+				int argb = in[row + x];
+				int a = argb >>> 24;
+
+				// AlphaThresholdFilter, then FadeFilter
+				next[row + x] = a < threshold ? argb & 0xffffff : (int)(a * fade) << 24 | (argb & 0xffffff);
+
+				// LiquidFilter
+				if(a < lowAlphaCutoff)
+				{
+					out[row + x] = 0;
+					continue;
+				}
+				int topLeft = in[above + Math.max(0, x - offset)] >>> 24;
+				int bottomRight = in[below + Math.min(w - 1, x + offset)] >>> 24;
+				int light = brighten(bottomRight) - brighten(topLeft) + brighten(a) - 127;
+				out[row + x] = lookup.getRGB(argb, light < 0 ? 0 : light > 255 ? 255 : light);
+			}
+		}
+
+		BufferedImage temp = field;
+		field = nextField;
+		nextField = temp;
+		int[] tempPixels = pixels;
+		pixels = nextPixels;
+		nextPixels = tempPixels;
+
+		return shaded;
+	}
+
+	/*
+	 * The alpha of the falloff kernel of the given width: the same curve a Particle's sprite has,
+	 * sampled at the center of each pixel.
+	 */
+	private int[] getKernel(int size)
+	{
+		while(kernels.size() <= size)
+			kernels.add(null);
+		int[] kernel = kernels.get(size);
+		if(kernel == null)
+		{
+			kernel = new int[size * size];
+			float half = size / 2.f, invWidth = 1.f / half;
+			for(int y = 0; y < size; y++)
+			{
+				for(int x = 0; x < size; x++)
+				{
+					float dx = invWidth * (half - x - .5f);
+					float dy = invWidth * (half - y - .5f);
+					float q = 1.f - (dx * dx + dy * dy);
+					kernel[y * size + x] = q > 0 ? (int)(q * q * 255.f) : 0;
+				}
+			}
+			kernels.set(size, kernel);
+		}
+		return kernel;
+	}
+
+	/*
+	 * Brightens alphas above the high cutoff two thirds of the way to opaque.
+	 */
+	private int brighten(int a)
+	{
+		return a > highAlphaCutoff ? a + (255 - a) * 2 / 3 : a;
+	}
+
+	/*
+	 * The array of pixels an image of TYPE_INT_ARGB keeps its data in.
+	 */
+	private static int[] getPixels(BufferedImage image)
+	{
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+}
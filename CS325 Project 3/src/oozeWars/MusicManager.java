@@ -0,0 +1,200 @@
+package oozeWars;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Sequencer;
+import javax.sound.midi.Synthesizer;
+
+/**
+ * <center><b>MUSICMANAGER.JAVA</b></center>
+ * Plays the game's MIDI tracks, one at a time, through a single Sequencer and Synthesizer
+ *    that every track shares.
+ *
+ * <p>Adding a track only remembers where it is.  A track's Sequence is parsed the first time
+ *    the track is played, and kept for the next time, so tracks that are never picked are never
+ *    read.  The Sequencer and Synthesizer are opened the first time anything is played, or
+ *    ahead of time by open(), since opening the Synthesizer loads its whole soundbank.
+ */
+public class MusicManager
+{
+	//The tracks that can be played, in the order they were added
+	private final ArrayList<Track> tracks = new ArrayList<Track>();
+
+	//The shared devices, once they are open
+	private Sequencer sequencer;
+	private Synthesizer synthesizer;
+
+	//The track that is playing, or -1 if none is
+	private int playing = -1;
+
+	/**
+	 * Adds a track without reading it.
+	 * @param url
+	 * :  Where the track's MIDI file is.
+	 * @param volume
+	 * :  The channel volume the track is played at, from 0 to 127.
+	 * @return
+	 * The number of the track, for play().
+	 */
+	public synchronized int addTrack(URL url, int volume)
+	{
+		tracks.add(new Track(url, volume));
+		return tracks.size() - 1;
+	}
+
+	/**
+	 * @return
+	 * The number of tracks that have been added.
+	 */
+	public synchronized int getTrackCount()
+	{
+		return tracks.size();
+	}
+
+	/**
+	 * @param track
+	 * :  The number of a track.
+	 * @return
+	 * <b>TRUE</b> if the track's Sequence has been parsed.
+	 */
+	public synchronized boolean isLoaded(int track)
+	{
+		return tracks.get(track).sequence != null;
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if the Sequencer and Synthesizer have been opened.
+	 */
+	public synchronized boolean isOpen()
+	{
+		return sequencer != null;
+	}
+
+	/**
+	 * Plays a track from the start, stopping whichever track was playing.
+	 * @param track
+	 * :  The number of the track.
+	 * @param loop
+	 * :  <b>TRUE</b> if the track should play continuously.
+	 * @throws InvalidMidiDataException
+	 * @throws MidiUnavailableException
+	 * @throws IOException
+	 */
+	public synchronized void play(int track, boolean loop)
+			throws InvalidMidiDataException, MidiUnavailableException, IOException
+	{
+		Track t = tracks.get(track);
+		if(t.sequence == null)
+			t.sequence = MidiSystem.getSequence(t.url);
+		open();
+
+		sequencer.stop();
+		sequencer.setSequence(t.sequence);
+		setVolume(t.volume);
+		sequencer.setMicrosecondPosition(0L);
+		sequencer.setLoopCount(loop ? Sequencer.LOOP_CONTINUOUSLY : 0);
+		sequencer.start();
+		playing = track;
+	}
+
+	/**
+	 * @return
+	 * The track that is playing, or -1 if none is.
+	 */
+	public synchronized int getPlaying()
+	{
+		return playing;
+	}
+
+	/**
+	 * Stops whichever track is playing.
+	 */
+	public synchronized void stop()
+	{
+		if(playing < 0)
+			return;
+		playing = -1;
+		sequencer.stop();
+	}
+
+	/**
+	 * Stops the music and closes the Sequencer and Synthesizer.  They will be opened again if
+	 * another track is played.  The parsed Sequences are kept.
+	 */
+	public synchronized void close()
+	{
+		stop();
+		if(sequencer != null)
+		{
+			sequencer.close();
+			synthesizer.close();
+			sequencer = null;
+			synthesizer = null;
+		}
+	}
+
+	/**
+	 * Opens the shared Sequencer and Synthesizer and connects them, if it hasn't been done yet.
+	 * Play opens them if need be, but opening the Synthesizer loads its soundbank, so this can
+	 * be called ahead of time on another thread so the first track starts without waiting.
+	 * @throws MidiUnavailableException
+	 */
+	public synchronized void open() throws MidiUnavailableException
+	{
+		if(sequencer != null)
+			return;
+
+		Sequencer seq = MidiSystem.getSequencer(false);
+		Synthesizer synth = MidiSystem.getSynthesizer();
+		seq.open();
+		try
+		{
+			synth.open();
+			seq.getTransmitter().setReceiver(synth.getReceiver());
+		}
+		catch (MidiUnavailableException e)
+		{
+			seq.close();
+			synth.close();
+			throw e;
+		}
+		sequencer = seq;
+		synthesizer = synth;
+	}
+
+	/*
+	 * Sets the volume of every channel of the Synthesizer.
+	 */
+	private void setVolume(int volume)
+	{
+		for(MidiChannel channel : synthesizer.getChannels())
+		{
+			if(channel != null)
+				channel.controlChange(7, volume);
+		}
+	}
+
+	/*
+	 * A track that can be played, and its Sequence once it has been parsed.
+	 */
+	private static class Track
+	{
+		final URL url;
+		final int volume;
+		Sequence sequence;
+
+		Track(URL url, int volume)
+		{
+			this.url = url;
+			this.volume = volume;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package oozeWars;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <center><b>NEIGHBORLIST.JAVA</b></center>
+ * A cached list of the pairs of Particles that could be neighbors, also known as a Verlet list.
+ *
+ * <p>When the list is built it records every pair of Particles closer than the range of
+ *    influence plus a margin called the <i>skin</i>, along with where every Particle was.  As
+ *    long as no Particle has moved more than half of the skin since then, no two Particles can
+ *    have closed the gap by more than the whole skin, so every pair that is within range now is
+ *    already in the list.  Each tick only the cached pairs have to be checked, and the list is
+ *    only rebuilt once some Particle has moved far enough, or Particles were added or removed.
+ *
+ * <p>The list keeps count of how often it is rebuilt so the savings can be measured.
+ */
+public class NeighborList
+{
+	//The extra distance beyond the range of influence that pairs are cached for
+	private final double skin;
+
+	//The squared distance a Particle may move before the list has to be rebuilt
+	private final double squaredTrigger;
+
+	//The number of cached pairs, and each pair's Particle indices
+	private int size;
+	private int[] pairI, pairJ;
+
+	//Where each Particle was when the list was built
+	private double[] refX, refY;
+
+	//The number of Particles when the list was built, or -1 if it has to be rebuilt
+	private int builtSize = -1;
+
+	//The number of ticks the list has been used for, and how many of them rebuilt it
+	private long ticks, rebuilds;
+
+	//The tick of the last rebuild, and the number of ticks between the last two rebuilds
+	private long lastRebuildTick, lastInterval;
+
+	/**
+	 * Creates an empty list that will have to be built before it is used.
+	 * @param skin
+	 * :  The extra distance beyond the range of influence that pairs are cached for.
+	 */
+	public NeighborList(double skin)
+	{
+		if(skin <= 0)
+			throw new IllegalArgumentException("Invalid skin");
+
+		this.skin = skin;
+		squaredTrigger = 0.25 * skin * skin;
+		pairI = new int[256];
+		pairJ = new int[256];
+		refX = new double[256];
+		refY = new double[256];
+	}
+
+	/**
+	 * @return
+	 * The extra distance beyond the range of influence that pairs are cached for.
+	 */
+	public double getSkin()
+	{
+		return skin;
+	}
+
+	/**
+	 * Marks the list as out of date, for instance because a Particle was removed and the
+	 * indices have changed.
+	 */
+	public void invalidate()
+	{
+		builtSize = -1;
+	}
+
+	/**
+	 * Counts a tick and checks whether the list can still be used for the Particles in the store.
+	 * @param store
+	 * :  The Particles the list was built for.
+	 * @return
+	 * <b>TRUE</b> if the list has to be rebuilt before it is used.<br />
+	 * <b>FALSE</b> if the cached pairs still hold every pair that can be in range.
+	 */
+	public boolean needsRebuild(ParticleStore store)
+	{
+		ticks++;
+
+		int n = store.size();
+		if(n != builtSize)
+			return true;
+
+		double[] x = store.x;
+		double[] y = store.y;
+		for(int i = 0; i < n; i++)
+		{
+			double dx = x[i] - refX[i];
+			double dy = y[i] - refY[i];
+			if(dx * dx + dy * dy > squaredTrigger)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Empties the list and records where every Particle is now.  Pairs are then added with add().
+	 * @param store
+	 * :  The Particles the list is being built for.
+	 */
+	public void rebuild(ParticleStore store)
+	{
+		int n = store.size();
+		if(refX.length < n)
+		{
+			refX = new double[Math.max(n, refX.length * 2)];
+			refY = new double[refX.length];
+		}
+		System.arraycopy(store.x, 0, refX, 0, n);
+		System.arraycopy(store.y, 0, refY, 0, n);
+
+		size = 0;
+		builtSize = n;
+
+		rebuilds++;
+		lastInterval = ticks - lastRebuildTick;
+		lastRebuildTick = ticks;
+	}
+
+	/**
+	 * Adds a pair to the list while it is being rebuilt.
+	 * @param i
+	 * :  The index of the first Particle.
+	 * @param j
+	 * :  The index of the second Particle.
+	 */
+	public void add(int i, int j)
+	{
+		if(size == pairI.length)
+		{
+			pairI = Arrays.copyOf(pairI, size * 2);
+			pairJ = Arrays.copyOf(pairJ, size * 2);
+		}
+		pairI[size] = i;
+		pairJ[size] = j;
+		size++;
+	}
+
+	/**
+	 * @return
+	 * The number of cached pairs.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return
+	 * The index of the first Particle of the kth cached pair.
+	 */
+	public int getI(int k)
+	{
+		return pairI[k];
+	}
+
+	/**
+	 * @return
+	 * The index of the second Particle of the kth cached pair.
+	 */
+	public int getJ(int k)
+	{
+		return pairJ[k];
+	}
+
+	/**
+	 * @return
+	 * The number of ticks the list has been used for.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	/**
+	 * @return
+	 * The number of ticks that had to rebuild the list.
+	 */
+	public long getRebuilds()
+	{
+		return rebuilds;
+	}
+
+	/**
+	 * @return
+	 * The fraction of ticks that used the cached pairs without rebuilding them.
+	 */
+	public double getHitRate()
+	{
+		return ticks == 0 ? 0 : (double)(ticks - rebuilds) / ticks;
+	}
+
+	/**
+	 * @return
+	 * The average number of ticks between rebuilds.
+	 */
+	public double getMeanRebuildInterval()
+	{
+		return rebuilds == 0 ? 0 : (double)ticks / rebuilds;
+	}
+
+	/**
+	 * @return
+	 * The number of ticks between the last two rebuilds.
+	 */
+	public long getLastRebuildInterval()
+	{
+		return lastInterval;
+	}
+
+	/**
+	 * Writes the cached pairs and where every Particle was when they were cached, or that the list
+	 * has to be rebuilt.  The counts of ticks and rebuilds aren't written.
+	 * @param out
+	 * :  Where to write it.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out) throws IOException
+	{
+		out.writeInt(builtSize);
+		if(builtSize < 0)
+			return;
+
+		for(int i = 0; i < builtSize; i++)
+		{
+			out.writeDouble(refX[i]);
+			out.writeDouble(refY[i]);
+		}
+		out.writeInt(size);
+		for(int k = 0; k < size; k++)
+		{
+			out.writeInt(pairI[k]);
+			out.writeInt(pairJ[k]);
+		}
+	}
+
+	/**
+	 * Puts the list back in a state written by writeState(), so it goes through the same pairs in
+	 * the same order, and is rebuilt on the same tick, as the list that wrote it.
+	 * @param in
+	 * :  Where to read the state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException
+	{
+		builtSize = in.readInt();
+		if(builtSize < 0)
+			return;
+
+		if(refX.length < builtSize)
+		{
+			refX = new double[builtSize];
+			refY = new double[builtSize];
+		}
+		for(int i = 0; i < builtSize; i++)
+		{
+			refX[i] = in.readDouble();
+			refY[i] = in.readDouble();
+		}
+		size = in.readInt();
+		if(pairI.length < size)
+		{
+			pairI = new int[size];
+			pairJ = new int[size];
+		}
+		for(int k = 0; k < size; k++)
+		{
+			pairI[k] = in.readInt();
+			pairJ[k] = in.readInt();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "NeighborList[ticks=" + ticks + ", rebuilds=" + rebuilds + ", hitRate=" + getHitRate()
+			+ ", meanInterval=" + getMeanRebuildInterval() + ", pairs=" + size + "]";
+	}
+}
@@ -33,6 +33,8 @@ public class OozeView extends View
 	private BufferedImageOp fader;
 	private BufferedImageOp threshold;
         private LiquidFilter liquid;
+	//Draws the ooze straight into its own pixels instead of with the filters above, or null
+	private MetaballRenderer metaballs;
 	
 	public OozeView(Game game, int layers, int preferredWidth,
 			int preferredHeight, double scale) 
@@ -56,14 +58,11 @@ public class OozeView extends View
 		if( ! game.repaintFlag.testAndTurnOff() )
 			return;
 		
+		applyPendingChanges();
 		Graphics2D graphics = (Graphics2D) g;
 		
-		fader.filter(smallAccum, smallBack);
-                
-		
-		Graphics2D small = smallBack.createGraphics();
-		small.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		
+		// when the Schedule runs on its own thread the Blobs and the SnapshotSprites are drawn from the last snapshot
+		RenderSnapshot frame = ((OozeWars) game).getLatestFrame();
 		
 		Iterator<Sprite> iterator = sprites[0].iterator();
 		while(iterator.hasNext())
@@ -72,7 +71,42 @@ public class OozeView extends View
 			sprite.draw(graphics, game);
 		}
 		
-		iterator = sprites[1].iterator();
+		if( metaballs != null )
+			paintOoze(graphics, frame);
+		else
+			paintFilteredOoze(graphics, frame);
+		
+		for(int i = 2; i < sprites.length; i++)
+		{
+			iterator = sprites[i].iterator();
+			while(iterator.hasNext())
+			{
+				Sprite sprite = iterator.next();
+				sprite.draw(graphics, game);
+			}
+		}
+		
+		if( frame != null )
+			frame.drawOverlay(graphics);
+		
+		graphics.dispose();
+		
+	}
+	
+	/*
+	 * Draws layer 1 with Java2D and runs the fade, threshold and liquid filters over it.
+	 */
+	private void paintFilteredOoze(Graphics2D graphics, RenderSnapshot frame)
+	{
+		fader.filter(smallAccum, smallBack);
+		
+		Graphics2D small = smallBack.createGraphics();
+		small.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		if( frame != null )
+			frame.draw(small, SCALE, game.getInterpolation(frame.getStepTime()));
+		
+		Iterator<Sprite> iterator = sprites[1].iterator();
 		while(iterator.hasNext())
 		{
 			Sprite sprite = (Sprite)(iterator.next());
@@ -89,20 +123,57 @@ public class OozeView extends View
 		//BufferedImage temp = smallBack;
 		//smallBack = smallFront;
 		//smallFront = temp;
+	}
+	
+	/*
+	 * Lays the Particles of layer 1 straight into the MetaballRenderer's field, draws the rest of
+	 * it with Java2D over the same field, and shades it in a single pass.
+	 */
+	private void paintOoze(Graphics2D graphics, RenderSnapshot frame)
+	{
+		Graphics2D small = metaballs.createGraphics();
 		
+		if( frame != null )
+			frame.draw(metaballs, small, SCALE, game.getInterpolation(frame.getStepTime()));
 		
-		for(int i = 2; i < sprites.length; i++)
+		Iterator<Sprite> iterator = sprites[1].iterator();
+		while(iterator.hasNext())
 		{
-			iterator = sprites[i].iterator();
-			while(iterator.hasNext())
-			{
-				Sprite sprite = (Sprite)(iterator.next());
-				sprite.draw(graphics, game);
-			}
+			Sprite sprite = iterator.next();
+			if( sprite instanceof FieldSprite )
+				((FieldSprite)sprite).draw(metaballs, small, game);
+			else
+				sprite.draw(small, game);
 		}
+		small.dispose();
 		
-		graphics.dispose();
-		
+		graphics.drawRenderedImage(metaballs.finish(), transform);
+	}
+	
+	/**
+	 * Chooses how the ooze is drawn.  The MetaballRenderer lays Particles straight into an array
+	 * of pixels and shades them in one pass, which is much faster than drawing them with Java2D
+	 * and running three filters over the result.
+	 * @param useMetaballs
+	 * :  <b>TRUE</b> to draw the ooze with a MetaballRenderer, <b>FALSE</b> to draw it with
+	 *    Java2D and filters.
+	 */
+	public void setMetaballRendering(boolean useMetaballs)
+	{
+		if( !useMetaballs )
+			metaballs = null;
+		else if( metaballs == null )
+			metaballs = new MetaballRenderer( smallBack.getWidth(), smallBack.getHeight(), 0.7f,
+					(int)(255*0.3), (int)(255*0.4), (int)(255*0.4), 2 );
+	}
+	
+	/**
+	 * @return
+	 * <b>TRUE</b> if the ooze is drawn with a MetaballRenderer.
+	 */
+	public boolean isMetaballRendering()
+	{
+		return metaballs != null;
 	}
 	
 	public void setMenu(MenuScreen menu)
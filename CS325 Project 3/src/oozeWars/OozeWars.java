@@ -4,19 +4,27 @@ import java.awt.Color;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.prefs.*;
 
+import javax.management.JMException;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
+import com.jhlabs.image.AbstractBufferedImageOp;
+
 /**
  * <center><b>OOZEWARS.JAVA</b></center>
  * This extends Game.java and is the custom Game class used to make the OozeWars game.
@@ -45,8 +53,11 @@ public class OozeWars extends Game
 	//Used to store each Blob that is currently in game
 	private LinkedHashMap<Integer, Blob> hBlobs;
 	
-	//All the particles currently in the game
-	private ArrayList<Particle> allParticles;
+	//The Blobs in hBlobs, in the same order, so they can be looped over without an Iterator
+	private Blob[] blobArray = new Blob[0];
+	
+	//All the particles currently in the game, with their state kept in parallel arrays
+	private ParticleStore allParticles;
 	
 	//The Agent that will be scheduled and handles all particle behavior
 	private ParticleManager manager;
@@ -54,6 +65,9 @@ public class OozeWars extends Game
 	//The background of the game
 	private Backdrop backdrop;
 	
+	//The color of a BOOST PowerUp
+	private static final Color BOOST_COLOR = new Color(235, 99, 7);
+	
 	//The size of a section of the playing field
 	private final double CELL_WIDTH = 100;
 	
@@ -64,11 +78,16 @@ public class OozeWars extends Game
 	/**Used for rendering, scales the size of the window down*/
 	public final double SCALE = 1.0;
 	
-	//The width and height of the OozeView
-	private int width, height;
+	//The width and height of the playing field, which is the OozeView's size plus a margin
+	private int width = 820, height = 620;
+	
+	//The songs, one of which is randomly chosen each time music starts, made the first time
+	//music is needed so that headless games never touch MIDI.  Only the songs that are picked
+	//are ever parsed.
+	private static MusicManager music;
 	
-	//The array of songs that will be randomly chosen each time start() is called
-	private static final Midi[] songs = initializeSongs();
+	//Picks the songs, so that music never draws from the game's Random
+	private static final Random musicRandom = new Random();
 	
 	//Used to save preferences
 	private final String key = "edu/gmu/cs/OozeWars";
@@ -79,6 +98,50 @@ public class OozeWars extends Game
 	//The long that is used when there has not been a player score that beats this score
 	private final long defaultHighScore = 1000;
 	
+	//Whether neighbors are found through the SpatialHash rather than by checking every pair
+	private boolean useSpatialHash = true;
+	
+	//Whether both neighbor searches are run and checked against each other every tick
+	private boolean validateSpatialHash = false;
+	
+	//Whether candidate neighbor pairs are cached between ticks in a NeighborList.  Off by default,
+	//since in a game being played Particles outrun any skin that doesn't also make many more pairs
+	private boolean useNeighborLists = false;
+	
+	//Applies the stick constraints on several threads, or null to apply them one at a time
+	private ConstraintSolver solver = null;
+	
+	//Hands snapshots of the Particles to the View when the game is simulation-threaded, or null
+	private RenderSnapshot.Exchange frames = null;
+	
+	//The Sprites copied into every snapshot instead of being drawn by the View, in the order they were added
+	private ArrayList<SnapshotSprite> snapshotSprites = new ArrayList<SnapshotSprite>();
+	
+	//The Bots playing instead of each player, or null for the players at the keyboard
+	private Bot[] bots;
+	
+	//The player who won the last game, 0 if it was a draw, or -1 if it hasn't ended
+	private int winner = -1;
+	
+	//The file each game is recorded to, or null, and the Recorder writing this game's replay
+	private File recordFile;
+	private Replay.Recorder recorder;
+	
+	//The replay each game is played back from instead of the players, or null, and the
+	//Playback setting this game's controls from it
+	private Replay replay;
+	private Replay.Playback playback;
+	
+	//The snapshot each game is restored from instead of starting from the beginning, or null
+	private Snapshot snapshot;
+	
+	/**The phases of the ParticleManager's tick, in the order they run, as a PhaseTimer names them*/
+	public static final String[] PARTICLE_PHASES = {"blobs", "integrate", "act", "updateNeighbors",
+		"keepInBounds", "getConnectivity", "spawn", "findStragglers", "removePlayers"};
+	
+	//Times each phase of the ParticleManager's tick, or null if they aren't being timed
+	private PhaseTimer phaseTimer;
+	
 	/**
 	 * The constructor for the game OozeWars.  Calls the constructor for Game.java.  
 	 * Initializes the number of players, sets up the controls for each player, initializes 
@@ -89,22 +152,33 @@ public class OozeWars extends Game
 	 * :  The number of players that this game will contain.
 	 */
 	public OozeWars(double maximumFrameRate, int numPlayers) 
+	{
+		this(maximumFrameRate, numPlayers, false);
+	}
+	
+	/**
+	 * The constructor for the game OozeWars, choosing how the game's Schedule stores its Agents.
+	 * @param maximumFrameRate
+	 * :  The number of frames per second that the game will run at.
+	 * @param numPlayers
+	 * :  The number of players that this game will contain.
+	 * @param useTimingWheel
+	 * :  <b>TRUE</b> to use a TimingWheelSchedule, <b>FALSE</b> to use the heap-based Schedule.
+	 */
+	public OozeWars(double maximumFrameRate, int numPlayers, boolean useTimingWheel) 
 	{
 		// only need 2 schedule priority levels for now (?)
-		super(2, maximumFrameRate);
+		super(2, maximumFrameRate, useTimingWheel);
 		this.numPlayers = numPlayers;
 		controls = new PlayerControls[numPlayers];
 		hBlobs = new LinkedHashMap<Integer, Blob>();
-		allParticles = new ArrayList<Particle>();
+		allParticles = new ParticleStore(numPlayers * 100);
+		
+		bots = new Bot[numPlayers];
 		
 		for(int i = 0; i < numPlayers; i++)
 			controls[i] = setPlayerControls(i);
 		
-		//System.out.println(System.getProperty("user.dir"));
-		String imgPath = "cells_bg.jpg";
-
-		backdrop = new Backdrop(imgPath);
-		
 		if(prefs.getLong("High Score", defaultHighScore) == 5000)
 		{
 			prefs.putLong("High Score", defaultHighScore);
@@ -119,9 +193,41 @@ public class OozeWars extends Game
 	@Override
 	protected void start() 
 	{	
-		width = view.preferredWidth + 20;
-		height = view.preferredHeight + 20;
-
+		//Without a View the playing field keeps the size it was given with setWidth() and setHeight()
+		if(view != null)
+		{
+			width = view.preferredWidth + 20;
+			height = view.preferredHeight + 20;
+		}
+		winner = -1;
+		
+		//A restored game picks up where its snapshot was taken
+		if(snapshot != null)
+		{
+			restoreSnapshot();
+			return;
+		}
+		
+		//A replayed game starts from its seed, and a recorded one from a seed that is written down
+		if(replay != null)
+		{
+			if(view == null)
+			{
+				width = replay.getWidth();
+				height = replay.getHeight();
+			}
+			random.setSeed(replay.getSeed());
+		}
+		else if(recordFile != null)
+		{
+			long seed = random.nextLong();
+			random.setSeed(seed);
+			try
+			{
+				recorder = new Replay.Recorder(this, recordFile, seed, queue instanceof TimingWheelSchedule);
+			}
+			catch (IOException e) {System.out.println("Could not record the game: " + e);}
+		}
 		
 		int numParticles = 50;
 		int player = numPlayers;
@@ -152,22 +258,99 @@ public class OozeWars extends Game
 			neutralParticles.add(new Particle(700 + random.nextInt(80) - 40, 100 + random.nextInt(80) - 40, 8*SCALE, Color.WHITE, 0));
 		
 		hBlobs.put(0, new Blob(neutralParticles, this));
+		blobsChanged();
 		
 		for(Blob b: getBlobs())
 		{
 			for(Particle p: b.getParticles())
 				addParticle(p);
-			view.addSprite(b, 1);
+			addSprite(b, 1);
 		}
 		
-		view.addSprite(backdrop, 0);
+		startPlaying();
 		
-		MAX_X = (int)(view.getWidth() / CELL_WIDTH);
-		MAX_Y = (int)(view.getHeight() / CELL_WIDTH);
+		//The Bots, or the replay, go first so the ParticleManager sees their controls in the same
+		//tick, and the Recorder writes down what it will see
+		scheduleControllers();
+		if(recorder != null)
+			queue.scheduleRepeating(1, 0, recorder);
+		queue.scheduleRepeating(1, 0, manager);
+	}
+	
+	/*
+	 * Starts the game from the snapshot instead of from the beginning.  The Snapshot puts every
+	 * Agent it saved back on the Schedule, with the Bots or the replay where the controls were set
+	 * before.  A restored game isn't recorded, since a replay has to start from a seed.
+	 */
+	private void restoreSnapshot()
+	{
+		if(view == null)
+		{
+			width = snapshot.getWidth();
+			height = snapshot.getHeight();
+		}
 		
+		manager = new ParticleManager(this, snapshot.getMaxParticles());
+		snapshot.restore(this);
+		for(Blob b : getBlobs())
+			addSprite(b, 1);
+		
+		startPlaying();
+	}
+	
+	/*
+	 * Puts up the backdrop, gets the frames ready and starts the Game, once the Blobs are in place.
+	 */
+	private void startPlaying()
+	{
+		if(view != null)
+		{
+			if(backdrop == null)
+				backdrop = new Backdrop("cells_bg.jpg");
+			view.addSprite(backdrop, 0);
+		}
+		
+		MAX_X = (int)(getViewWidth() / CELL_WIDTH);
+		MAX_Y = (int)(getViewHeight() / CELL_WIDTH);
+		
+		if(isSimulationThreaded())
+		{
+			frames = new RenderSnapshot.Exchange();
+			publishFrame();
+		}
 		
 		super.start();
-		queue.schedule(0, manager);
+	}
+	
+	/*
+	 * Has the replay, or the Bots, set the players' controls every tick.  The replay picks up at
+	 * the tick the game is at, which is only past the start for a restored game.
+	 */
+	void scheduleControllers()
+	{
+		if(replay != null)
+		{
+			playback = replay.new Playback();
+			playback.seek(queue.getTicks() + 1);
+			queue.scheduleRepeating(1, 0, playback);
+		}
+		else
+		{
+			playback = null;
+			for(int i = 0; i < bots.length; i++)
+			{
+				if(bots[i] != null)
+					queue.scheduleRepeating(1, 0, new BotAgent(i));
+			}
+		}
+	}
+	
+	/*
+	 * Whether an Agent is one of the ones scheduleControllers() registers.
+	 */
+	boolean isController(Agent agent)
+	{
+		return agent instanceof BotAgent || agent instanceof Replay.Playback;
 	}
 	
 	/*
@@ -177,41 +360,145 @@ public class OozeWars extends Game
 	@Override
 	protected void stop()
 	{
+		if(recorder != null)
+		{
+			recorder.close(winner, getStateChecksum());
+			recorder = null;
+		}
+		
 		super.stop();
 		
 		stopMusic();
 		
-		KeyListener[] kl = view.getKeyListeners();
-		if(kl.length == 1 && kl[0] != null)
-			view.removeKeyListener( kl[0] );
+		if(view != null)
+		{
+			KeyListener[] kl = view.getKeyListeners();
+			if(kl.length == 1 && kl[0] != null)
+				view.removeKeyListener( kl[0] );
+		}
 		
 		pace = null;
+		frames = null;
+		snapshotSprites.clear();
 		hBlobs.clear();
+		blobsChanged();
 		allParticles.clear();
 		manager = null;
 		for(PlayerControls pc : controls)
 			pc.resetBooleans();
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see oozeWars.Game#publishFrame()
+	 */
+	@Override
+	protected void publishFrame()
+	{
+		RenderSnapshot frame = frames.getWritable();
+		frame.clear();
+		frame.setStepTime(getLastStepTime());
+		for(Blob b : blobArray)
+			b.snapshot(frame);
+		for(int i = 0; i < snapshotSprites.size(); i++)
+			snapshotSprites.get(i).snapshot(frame);
+		frames.publish();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see oozeWars.Game#addSprite(oozeWars.Sprite, int)
+	 * While the game is simulation-threaded, a SnapshotSprite is kept here and copied into every
+	 * snapshot rather than given to the View, which would draw it as it changes.
+	 */
+	@Override
+	public void addSprite(Sprite sprite, int layer)
+	{
+		if(view == null || !isSimulationThreaded() || !(sprite instanceof SnapshotSprite))
+			super.addSprite(sprite, layer);
+		else if(!snapshotSprites.contains(sprite))
+			snapshotSprites.add((SnapshotSprite)sprite);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see oozeWars.Game#removeSprite(oozeWars.Sprite, int)
+	 */
+	@Override
+	public void removeSprite(Sprite sprite, int layer)
+	{
+		if(!snapshotSprites.remove(sprite))
+			super.removeSprite(sprite, layer);
+	}
+	
+	/**
+	 * Returns the newest snapshot of the Blobs' Particles, which the View draws them from while
+	 * the game is simulation-threaded.  Only called from the Swing thread.
+	 * @return
+	 * The newest RenderSnapshot, or <b>NULL</b> if the game is not simulation-threaded.
+	 */
+	public RenderSnapshot getLatestFrame()
+	{
+		return frames == null ? null : frames.getLatest();
+	}
+	
 	/**
 	 * Starts the game's music by picking a random song.
 	 */
 	public void startMusic()
 	{
+		MusicManager music = getMusic();
 		try 
 		{
-			songs[random.nextInt(4)].play(true, true);
+			music.play(musicRandom.nextInt(music.getTrackCount()), true);
 		} 
 		catch (InvalidMidiDataException e) {e.printStackTrace();}
+		catch (MidiUnavailableException e) {System.out.println("No MIDI devices for the music");}
+		catch (IOException e) {e.printStackTrace();}
 	}
 	
 	/**
-	 * Stops the game's music.  Will stop multiple songs if more than one is playing.
+	 * Stops the game's music.
 	 */
 	public void stopMusic()
 	{
-		for(Midi song : songs)
-			song.stop();
+		if(music != null)
+			music.stop();
+	}
+	
+	/**
+	 * Starts loading every image, font and sound the game uses, and opening the synthesizer for
+	 * its music, all in the background with the AssetManager.  The menu can then be shown
+	 * right away, and each asset is ready or nearly so by the time it is needed.
+	 */
+	public static void preloadAssets()
+	{
+		AssetManager assets = AssetManager.getDefault();
+		assets.loadFont("Splats_Unsplatted.ttf");
+		assets.loadImage("RadioactiveGoop.jpg");
+		assets.loadImage("cells_bg.jpg");
+		Blob.preloadSounds();
+		Bullet.preloadSounds();
+		Explosion.preloadSounds();
+		assets.load("MIDI synthesizer", "music", new Callable<MusicManager>()
+		{
+			public MusicManager call() throws MidiUnavailableException
+			{
+				MusicManager music = getMusic();
+				music.open();
+				return music;
+			}
+		});
+	}
+	
+	/*
+	 * Makes the MusicManager the first time it is needed.
+	 */
+	private static synchronized MusicManager getMusic()
+	{
+		if(music == null)
+			music = initializeSongs();
+		return music;
 	}
 	
 	/**
@@ -223,6 +510,204 @@ public class OozeWars extends Game
 		catch(BackingStoreException ex) { }
 	}
 
+	/**
+	 * @return
+	 * The width of the OozeView, or of the playing field without its margin if the game is
+	 * headless.
+	 */
+	public int getViewWidth()
+	{
+		return view != null ? view.getWidth() : width - 20;
+	}
+	
+	/**
+	 * @return
+	 * The height of the OozeView, or of the playing field without its margin if the game is
+	 * headless.
+	 */
+	public int getViewHeight()
+	{
+		return view != null ? view.getHeight() : height - 20;
+	}
+	
+	/**
+	 * Has a Bot play instead of the given player, starting with the next game.
+	 * @param player
+	 * :  The player number, starting from 0.
+	 * @param bot
+	 * :  The Bot that will set the player's controls every tick, or <b>NULL</b> to go back to
+	 *    the keyboard.
+	 */
+	public void setBot(int player, Bot bot)
+	{
+		bots[player] = bot;
+	}
+	
+	/**
+	 * Records every following game to a file, starting with the next one.  Each game replaces
+	 * the last one's file.  Games played back from a replay aren't recorded.
+	 * @param file
+	 * :  The file to write the Replay to, or <b>NULL</b> to stop recording.
+	 */
+	public void setRecording(File file)
+	{
+		recordFile = file;
+	}
+	
+	/**
+	 * @return
+	 * The file games are recorded to, or <b>NULL</b> if they aren't being recorded.
+	 */
+	public File getRecording()
+	{
+		return recordFile;
+	}
+	
+	/**
+	 * Plays every following game back from a replay, starting with the next one, instead of
+	 * letting the players or Bots control it.  A headless game is played on the replay's field.
+	 * @param replay
+	 * :  The replay, or <b>NULL</b> to go back to the players.
+	 */
+	public void setReplay(Replay replay)
+	{
+		if(replay != null && replay.getPlayers() != controls.length)
+			throw new IllegalArgumentException("The replay has " + replay.getPlayers() + " players, not " + controls.length);
+		this.replay = replay;
+	}
+	
+	/**
+	 * @return
+	 * The replay games are played back from, or <b>NULL</b> if the players control them.
+	 */
+	public Replay getReplay()
+	{
+		return replay;
+	}
+	
+	/**
+	 * @return
+	 * The Playback setting this game's controls from a replay, or <b>NULL</b> if the game isn't
+	 * being played back.
+	 */
+	public Replay.Playback getPlayback()
+	{
+		return playback;
+	}
+	
+	/**
+	 * Restores every following game from a snapshot, starting with the next one, instead of
+	 * starting it from the beginning.  The Bots or the replay set for the game take over the
+	 * controls, and restored games aren't recorded.  A headless game is played on the snapshot's
+	 * field.
+	 * @param snapshot
+	 * :  The snapshot, or <b>NULL</b> to start games from the beginning again.
+	 */
+	public void setSnapshot(Snapshot snapshot)
+	{
+		if(snapshot != null && snapshot.getPlayers() != controls.length)
+			throw new IllegalArgumentException("The snapshot has " + snapshot.getPlayers() + " players, not " + controls.length);
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * @return
+	 * The snapshot games are restored from, or <b>NULL</b> if they start from the beginning.
+	 */
+	public Snapshot getSnapshot()
+	{
+		return snapshot;
+	}
+	
+	/*
+	 * The store holding the state of every Particle in the game, in the order they are moved.
+	 */
+	ParticleStore getParticleStore()
+	{
+		return allParticles;
+	}
+	
+	/*
+	 * The Agent that moves every Particle each tick, or null if the game isn't running.
+	 */
+	Agent getParticleManager()
+	{
+		return manager;
+	}
+	
+	/*
+	 * The most Particles the game lets in at once.
+	 */
+	int getMaxParticles()
+	{
+		return manager.MAX_PARTICLES;
+	}
+	
+	/*
+	 * Writes the ParticleManager's SpatialHash and cached neighbor pairs for a Snapshot.
+	 */
+	void writeNeighborCaches(Snapshot.Writer out) throws IOException
+	{
+		manager.writeCaches(out);
+	}
+	
+	/*
+	 * Puts back the SpatialHash and cached neighbor pairs written by writeNeighborCaches(), once
+	 * the Particles have been restored.
+	 */
+	void readNeighborCaches(Snapshot.Reader in) throws IOException
+	{
+		manager.readCaches(in);
+	}
+	
+	/**
+	 * Turns on or off timing each phase of the ParticleManager's tick.  Turning it on starts a
+	 * new PhaseTimer with the phases in PARTICLE_PHASES.
+	 * @param time
+	 * :  <b>TRUE</b> to time the phases.
+	 */
+	public void setTimingPhases(boolean time)
+	{
+		phaseTimer = time ? new PhaseTimer(PARTICLE_PHASES) : null;
+	}
+	
+	/**
+	 * @return
+	 * The PhaseTimer timing each phase of the ParticleManager's tick, or null if they aren't
+	 * being timed.
+	 */
+	public PhaseTimer getPhaseTimer()
+	{
+		return phaseTimer;
+	}
+	
+	/**
+	 * @return
+	 * A hash of where every Particle is and which Blob it belongs to, which comes out the same
+	 * only if two games have played out the same.
+	 */
+	public long getStateChecksum()
+	{
+		long hash = allParticles.size();
+		for(int i = 0; i < allParticles.size(); i++)
+		{
+			hash = hash * 31 + Double.doubleToLongBits(allParticles.x[i]);
+			hash = hash * 31 + Double.doubleToLongBits(allParticles.y[i]);
+			hash = hash * 31 + allParticles.blobID[i];
+		}
+		return hash;
+	}
+	
+	/**
+	 * @return
+	 * The player who won the last game, <b>0</b> if it was a draw, or <b>-1</b> if it hasn't
+	 * ended yet.
+	 */
+	public int getWinner()
+	{
+		return winner;
+	}
+	
 	/**
 	 * A method to retrieve the width of the OozeView
 	 * @return
@@ -327,6 +812,10 @@ public class OozeWars extends Game
 				scores[1] = score;
 			}
 			
+			//Games played by Bots without a View don't count towards the high score
+			if(isHeadless())
+				continue;
+			
 			try
 			{
 				if( score > prefs.getLong("High Score", defaultHighScore) )
@@ -349,6 +838,8 @@ public class OozeWars extends Game
 		}
 		
 		Blob b = hBlobs.remove(player+1);
+		blobsChanged();
+		b.cancelAgents();
 		
 		ArrayList<Particle> theList = b.getParticles();
 		
@@ -359,6 +850,9 @@ public class OozeWars extends Game
 
 		int playerLeft = 0;
 		Collection<Blob> blobsLeft = getBlobs();
+		final String scoreText = "Player 1 scored:  " + scores[0] + "\n"
+								+ "Player 2 scored:  " + scores[1] + "\n"
+								+ "High Score:  " + prefs.getLong("High Score", defaultHighScore);
 		
 		if(--numPlayers == 1)
 		{
@@ -368,25 +862,38 @@ public class OozeWars extends Game
 				if(playerLeft != 0)
 					break;
 			}
-			JOptionPane.showMessageDialog(null, "Player " + playerLeft  + " wins!");
-			//TODO:  Make it so a message prints when a player gets a bonus for no
-			//       PowerUps collected
-			JOptionPane.showMessageDialog(null, "Player 1 scored:  " + scores[0] + "\n"
-										+ "Player 2 scored:  " + scores[1] + "\n"
-										+ "High Score:  " + prefs.getLong("High Score", defaultHighScore));
-
-			((OozeView)view).swapToMainMenu();
+			winner = playerLeft;
+			if(isHeadless())
+				return;
+			final String winText = "Player " + playerLeft  + " wins!";
 			
+			//The dialogs and menus have to be shown on the Swing thread
+			invokeOnView(new Runnable()
+			{
+				public void run()
+				{
+					JOptionPane.showMessageDialog(null, winText);
+					//TODO:  Make it so a message prints when a player gets a bonus for no
+					//       PowerUps collected
+					JOptionPane.showMessageDialog(null, scoreText);
+					((OozeView)view).swapToMainMenu();
+				}
+			});
 		}
 		else if(numPlayers == 0) //There was a draw
 		{
-			JOptionPane.showMessageDialog(null, "DRAW!");
-			
-			JOptionPane.showMessageDialog(null, "Player 1 scored:  " + scores[0] + "\n"
-					+ "Player 2 scored:  " + scores[1] + "\n"
-					+ "High Score:  " + prefs.getLong("High Score", defaultHighScore));
-			
-			((OozeView)view).swapToMainMenu();
+			winner = 0;
+			if(isHeadless())
+				return;
+			invokeOnView(new Runnable()
+			{
+				public void run()
+				{
+					JOptionPane.showMessageDialog(null, "DRAW!");
+					JOptionPane.showMessageDialog(null, scoreText);
+					((OozeView)view).swapToMainMenu();
+				}
+			});
 		}
 	}
 	
@@ -446,6 +953,15 @@ public class OozeWars extends Game
 		}
 		
 		hBlobs = blobs;
+		blobsChanged();
+	}
+	
+	/*
+	 * Copies the Blobs into blobArray.  Must be called whenever hBlobs changes.
+	 */
+	private void blobsChanged()
+	{
+		blobArray = hBlobs.values().toArray( new Blob[hBlobs.size()] );
 	}
 	
 	/*
@@ -478,12 +994,11 @@ public class OozeWars extends Game
 	{	
 		int lastInd = allParticles.size()-1;
 		int ind = aParticle.getIndex();
-		Particle anotherParticle = allParticles.remove( lastInd );
-		if( ind != lastInd )
-		{
-			anotherParticle.setIndex( ind );
-			allParticles.set( ind, anotherParticle);
-		}
+		allParticles.remove( aParticle );
+		if( aParticle instanceof PowerUp )
+			((PowerUp) aParticle).cancelRemover();
+		if( manager != null )
+			manager.particleRemoved( ind, lastInd );
 		aParticle = null;
 		//view.removeSprite(aParticle, 1);
 	}
@@ -493,10 +1008,137 @@ public class OozeWars extends Game
 	 * @param aParticle
 	 * :  The Particle that will be added to allParticles
 	 */
-	public void addParticle(Particle aParticle)
+	public void addParticle(Particle aParticle)
+	{
+		allParticles.add(aParticle);
+		if( manager != null )
+			manager.particleAdded( aParticle );
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if neighboring Particles are found with the SpatialHash.<br />
+	 * <b>FALSE</b> if every pair of Particles is checked.
+	 */
+	public boolean isUsingSpatialHash()
+	{
+		return useSpatialHash;
+	}
+	
+	/**
+	 * Chooses how neighboring Particles are found each tick.
+	 * @param useSpatialHash
+	 * :  <b>TRUE</b> to only check Particles in the same or adjacent cells of a SpatialHash,
+	 *    <b>FALSE</b> to check every pair of Particles.
+	 */
+	public void setUsingSpatialHash(boolean useSpatialHash)
+	{
+		this.useSpatialHash = useSpatialHash;
+	}
+	
+	/**
+	 * @return
+	 * <b>TRUE</b> if both neighbor searches are being checked against each other.
+	 */
+	public boolean isValidatingSpatialHash()
+	{
+		return validateSpatialHash;
+	}
+	
+	/**
+	 * Turns on a debugging mode where, every tick, the neighbors found by the SpatialHash are
+	 * compared to the neighbors found by checking every pair.  An IllegalStateException is thrown
+	 * if the two ever disagree.  This is slow and is only meant for testing.
+	 * @param validateSpatialHash
+	 * :  The value that this.validateSpatialHash will be set to.
+	 */
+	public void setValidatingSpatialHash(boolean validateSpatialHash)
+	{
+		this.validateSpatialHash = validateSpatialHash;
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if candidate neighbor pairs are cached between ticks.
+	 */
+	public boolean isUsingNeighborLists()
+	{
+		return useNeighborLists;
+	}
+	
+	/**
+	 * Chooses whether the pairs of Particles that could be neighbors are cached in a NeighborList
+	 * and only searched for again once some Particle has moved far enough.  Only has an effect
+	 * while the SpatialHash is in use.
+	 * <p>
+	 * This is off by default.  Particles pulled along by a Head move up to about 17 pixels a
+	 * tick, more than half the skin, so in a game being played the list is rebuilt nearly every
+	 * tick and costs more than it saves.  SimulationBenchmark -lists times it against searching
+	 * the SpatialHash every tick.
+	 * @param useNeighborLists
+	 * :  The value that this.useNeighborLists will be set to.
+	 */
+	public void setUsingNeighborLists(boolean useNeighborLists)
+	{
+		this.useNeighborLists = useNeighborLists;
+		if(manager != null)
+			manager.neighborList.invalidate();
+	}
+	
+	/**
+	 * Returns the NeighborList of the game in progress, which counts how often it has to be
+	 * rebuilt and how often the cached pairs are reused.
+	 * @return
+	 * The NeighborList, or <b>NULL</b> if no game is in progress.
+	 */
+	public NeighborList getNeighborList()
+	{
+		return manager == null ? null : manager.neighborList;
+	}
+	
+	/**
+	 * Returns the most neighbors any Particle has had in the game in progress.  Every Particle's
+	 * list of neighbors has room for that many, so they only grow on a tick that beats it.
+	 * @return
+	 * The most neighbors, or 0 if no game is in progress.
+	 */
+	public int getMostNeighbors()
+	{
+		return manager == null ? 0 : manager.mostNeighbors;
+	}
+	
+	/**
+	 * @return
+	 * The number of threads the stick constraints are applied on.  1 means they are
+	 * applied one at a time as the neighbors are found.
+	 */
+	public int getSolverThreads()
+	{
+		return solver == null ? 1 : solver.getWorkers();
+	}
+	
+	/**
+	 * Sets the number of threads used to apply the stick constraints between neighboring
+	 * Particles.  With more than one thread the neighbors are found first, then the constraints
+	 * are split into batches that share no Particles and each batch is run in parallel.  The
+	 * result does not depend on the number of threads, but it is not the same as applying the
+	 * constraints one at a time, which is what a single thread does.  Parallel solving needs the
+	 * SpatialHash to be in use.
+	 * @param threads
+	 * :  The number of threads to use.  Must be at least 1.
+	 */
+	public void setSolverThreads(int threads)
 	{
-		aParticle.setIndex(allParticles.size());
-		allParticles.add(aParticle);
+		if(threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads");
+		
+		if(solver != null)
+		{
+			if(solver.getWorkers() == threads)
+				return;
+			solver.shutdown();
+		}
+		solver = threads > 1 ? new ConstraintSolver(threads) : null;
 	}
 
 	/**
@@ -511,90 +1153,147 @@ public class OozeWars extends Game
 		{
 			public void keyPressed(KeyEvent e)
 			{
-				for(PlayerControls pc : controls)
-				{
-					if(e.getKeyCode() == pc.getDownKey())
-					{
-						pc.setDown(true);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getUpKey())
-					{
-						pc.setUp(true);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getLeftKey())
-					{
-						pc.setLeft(true);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getRightKey())
-					{
-						pc.setRight(true);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getFireKey())
-					{
-						pc.setFire(true);
-						return;
-					}
-				}
-				
-				if(e.getKeyCode() == KeyEvent.VK_P )
+				if(e.getKeyCode() == KeyEvent.VK_P && !isControlKey(e.getKeyCode()))
 				{
 					togglePaused();
 					((OozeView)view ).swapToPauseMenu();
+					return;
 				}
+				post(new KeyInput(e.getKeyCode(), true));
 			}
 			
 			public void keyReleased(KeyEvent e)
 			{
-				for(PlayerControls pc : controls)
-				{
-					if(e.getKeyCode() == pc.getDownKey())
-					{
-						pc.setDown(false);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getUpKey())
-					{
-						pc.setUp(false);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getLeftKey())
-					{
-						pc.setLeft(false);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getRightKey())
-					{
-						pc.setRight(false);
-						return;
-					}
-					else if(e.getKeyCode() == pc.getFireKey())
-					{
-						pc.setFire(false);
-						return;
-					}
-				}
+				post(new KeyInput(e.getKeyCode(), false));
 			}
 		});
 
 	}
+	
+	/*
+	 * Tells whether the key is one of the players' controls.
+	 */
+	private boolean isControlKey(int keyCode)
+	{
+		for(PlayerControls pc : controls)
+		{
+			if(keyCode == pc.getDownKey() || keyCode == pc.getUpKey() || keyCode == pc.getLeftKey()
+					|| keyCode == pc.getRightKey() || keyCode == pc.getFireKey())
+				return true;
+		}
+		return false;
+	}
+	
+	/*
+	 * A key being pressed or released, posted by the key listener so that the players' controls
+	 * are only changed by the thread stepping the Schedule.
+	 */
+	private class KeyInput implements Runnable
+	{
+		private final int keyCode;
+		private final boolean pressed;
+		
+		KeyInput(int keyCode, boolean pressed)
+		{
+			this.keyCode = keyCode;
+			this.pressed = pressed;
+		}
+		
+		public void run()
+		{
+			for(PlayerControls pc : controls)
+			{
+				if(keyCode == pc.getDownKey())
+				{
+					pc.setDown(pressed);
+					return;
+				}
+				else if(keyCode == pc.getUpKey())
+				{
+					pc.setUp(pressed);
+					return;
+				}
+				else if(keyCode == pc.getLeftKey())
+				{
+					pc.setLeft(pressed);
+					return;
+				}
+				else if(keyCode == pc.getRightKey())
+				{
+					pc.setRight(pressed);
+					return;
+				}
+				else if(keyCode == pc.getFireKey())
+				{
+					pc.setFire(pressed);
+					return;
+				}
+			}
+		}
+	}
 
 	/**
 	 * The method that runs the game.
 	 */
 	public static void main(String[] args) 
 	{	
+		preloadAssets();
 		OozeWars game = new OozeWars(30, 2);
+		game.setSimulationThreaded(Boolean.getBoolean("oozeWars.simulationThread"));
 		OozeView view = new OozeView(game, 3, 800, 600, 0.5);
+		view.setMetaballRendering(Boolean.getBoolean("oozeWars.metaballs"));
+		AbstractBufferedImageOp.setParallelByDefault(Boolean.getBoolean("oozeWars.parallelFilters"));
+		if(System.getProperty("oozeWars.record") != null)
+			game.setRecording(new File(System.getProperty("oozeWars.record")));
+		if(System.getProperty("oozeWars.replay") != null)
+		{
+			try
+			{
+				game.setReplay(Replay.read(new File(System.getProperty("oozeWars.replay"))));
+			}
+			catch (IOException e) {System.out.println("Could not read the replay: " + e);}
+		}
+		if(System.getProperty("oozeWars.snapshot") != null)
+		{
+			try
+			{
+				game.setSnapshot(Snapshot.read(new File(System.getProperty("oozeWars.snapshot"))));
+			}
+			catch (IOException e) {System.out.println("Could not read the snapshot: " + e);}
+		}
+		//The profiler can be turned on through JMX at any time, or from the start
+		game.queue.setProfiling(Boolean.getBoolean("oozeWars.profile"));
+		try
+		{
+			game.queue.getProfiler().register("OozeWars");
+		}
+		catch (JMException e) {System.out.println("Could not register the profiler: " + e);}
 		JFrame frame = view.createFrame("Ooze Wars");
 		view.setKeystrokeFocus(frame);
 		MenuScreen menu = new MenuScreen(game, view);
 		view.swapToMainMenu();
 	}
 	
+	/*
+	 * Lets a Bot set a player's controls every tick, for as long as the player's Blob is alive.
+	 */
+	private class BotAgent implements Agent
+	{
+		private final int player;
+		
+		BotAgent(int player)
+		{
+			this.player = player;
+		}
+		
+		public void go(Game game, long timestep, int priorityLevel)
+		{
+			Blob blob = hBlobs.get(player + 1);
+			if(blob != null)
+				bots[player].control(OozeWars.this, blob, controls[player]);
+		}
+	}
+	
 	/**
 	 * Sets up the key bindings necessary for the controls that the player will be using.
 	 * @author Nick Kitten <br /> Sean Fedak
@@ -885,7 +1584,7 @@ public class OozeWars extends Game
 	*/
 	
 	/* The class that gets scheduled to maintain all Particle behavior */
-	private class ParticleManager implements Agent
+	private class ParticleManager implements Agent, ConstraintSolver.Constraint
 	{
 		//Used to determine which Particles have been touched
 		private BitSet touchedSet;
@@ -899,11 +1598,30 @@ public class OozeWars extends Game
 		private final double neutralSpawnProbability = getProbability(1, .5);
 		//The probability that a powerUp particle will spawn
 		private final double powerUpSpawnProbability = getProbability(30, .05);
+		//The extra distance beyond RANGE that candidate neighbor pairs are cached for
+		private final double SKIN = RANGE * 0.2;
+		//Buckets the Particles by location so only nearby pairs are checked
+		private SpatialHash grid;
+		//A grid built from scratch for checking the SpatialHash, so that the live one is left alone
+		private SpatialHash scratchGrid;
+		//The cached candidate neighbor pairs
+		private NeighborList neighborList;
+		//Whether the pairs visited in the grid are being cached rather than connected
+		private boolean caching = false;
+		//Collects the pairs visited in the grid instead of connecting them while they are being
+		//validated, or null
+		private ArrayList<Long> visitedPairs = null;
+		//Which players died this tick, kept here so the array isn't made again every tick
+		private boolean[] isDead = new boolean[2];
+		//The queue used by the breadth-first search, reused from one search to the next
+		private ArrayDeque<Particle> searchQueue = new ArrayDeque<Particle>();
+		//The most neighbors any Particle has had, which every Particle's list makes room for
+		private int mostNeighbors = 0;
 		
-		/* Calculates a probability based on a timeframe as well as a base probability */
+		/* Calculates the chance per step that makes something happen with probability 1 - p over the given number of seconds */
 		private double getProbability(double time, double p)
 		{
-			return Math.exp(Math.log(p)/(time*frameRate));
+			return Math.exp(Math.log(p)/(time*getSimulationRate()));
 		}
 		
 		/* The constructor for a ParticleManager
@@ -913,9 +1631,52 @@ public class OozeWars extends Game
 		{
 			MAX_PARTICLES = maxParticles;
 			touchedSet = new BitSet( MAX_PARTICLES );
+			grid = new SpatialHash( RANGE + SKIN, ow.getWidth(), ow.getHeight(), MAX_PARTICLES );
+			neighborList = new NeighborList( SKIN );
 			
 			this.ow = ow;
 		}
+		
+		/*
+		 * Gives a Particle that was just added room for as many neighbors as any Particle has had,
+		 * and the SpatialHash room for its index, so both grow on the tick it appears rather than
+		 * on a later one.
+		 */
+		void particleAdded( Particle p )
+		{
+			grid.ensureCapacity( allParticles.size() );
+			p.getNeighbors().ensureCapacity( mostNeighbors );
+		}
+		
+		/*
+		 * Keeps the SpatialHash in step with allParticles when the Particle at index ind is
+		 * removed and the Particle at lastInd takes its place.
+		 */
+		void particleRemoved( int ind, int lastInd )
+		{
+			grid.remove( ind );
+			grid.move( lastInd, ind );
+			neighborList.invalidate();
+		}
+		
+		/*
+		 * Writes the SpatialHash and the cached pairs.  The order of the grid's cells and of the
+		 * pairs decides the order forces are applied in, so a restored game needs them as they are.
+		 */
+		void writeCaches( Snapshot.Writer out ) throws IOException
+		{
+			grid.writeState( out, allParticles.size() );
+			neighborList.writeState( out );
+		}
+		
+		/*
+		 * Reads back what writeCaches() wrote.
+		 */
+		void readCaches( Snapshot.Reader in ) throws IOException
+		{
+			grid.readState( in );
+			neighborList.readState( in );
+		}
 
 		/* (non-Javadoc) 
 		 * @see oozeWars.Agent#go(Game game, long timestep, int priorityLevel) 
@@ -923,30 +1684,53 @@ public class OozeWars extends Game
 		@Override
 		public void go(Game game, long timestep, int priorityLevel) 
 		{
-			// avoid ConcurrentModificationException
-			boolean isDead[] = new boolean[2];
+			PhaseTimer timer = phaseTimer;
+			if( timer != null )
+				timer.start();
 			
+			// avoid ConcurrentModificationException
 			for( int i = 0; i < isDead.length; i++ )
 			{
 				isDead[i] = false;
 			}
 			
-			for(Blob b : getBlobs())
+			Blob[] blobs = blobArray;
+			for( int i = 0; i < blobs.length; i++ )
 			{
+				Blob b = blobs[i];
 				if( b.isDead() && b.getBlobID() != 0)
 					isDead[ b.getBlobID() - 1 ] = true;
 				b.go(game, timestep, priorityLevel);
 			}			
+			if( timer != null )
+				timer.lap();
+			
+			allParticles.integrate();
+			if( timer != null )
+				timer.lap();
+			
+			// firing reads where the Heads are now, so it waits until they have moved
+			for( int i = 0; i < blobs.length; i++ )
+				blobs[i].act(ow, priorityLevel);
+			if( timer != null )
+				timer.lap();
 			
 			wipeClean();
 			updateNeighbors( RANGE );
+			makeRoomForNeighbors();
+			if( timer != null )
+				timer.lap();
 			
 			double xMax = ow.getWidth();
 			double yMax = ow.getHeight();
 			keepInBounds(xMax, yMax);
+			if( timer != null )
+				timer.lap();
 			
 			wipeClean();
 			getConnectivity();
+			if( timer != null )
+				timer.lap();
 
 			// 50% chance of  a new particle every 2 seconds : .9885
 			// use .9772 for every second
@@ -967,20 +1751,20 @@ public class OozeWars extends Game
 					{
 						type = PowerUp.Type.GOD;
 						color = Color.yellow;
-						powerUpTicks = (int) (10*frameRate);
+						powerUpTicks = (int) (10*getSimulationRate());
 						break;
 					}
 					case 1:
 					{
 						type = PowerUp.Type.NITRO;
 						color = Color.red;
-						powerUpTicks = (int) (10*frameRate);
+						powerUpTicks = (int) (10*getSimulationRate());
 						break;
 					}
 					case 2:
 					{
 						type = PowerUp.Type.BOOST;
-						color = new Color(235, 99, 7);
+						color = BOOST_COLOR;
 						powerUpTicks = 1;
 						break;
 					}
@@ -988,7 +1772,7 @@ public class OozeWars extends Game
 					{
 						type = PowerUp.Type.GLUE;
 						color = Color.cyan;
-						powerUpTicks = (int) (10*frameRate);
+						powerUpTicks = (int) (10*getSimulationRate());
 						break;
 					}
 					case 4:
@@ -1006,9 +1790,13 @@ public class OozeWars extends Game
 				addParticle( new PowerUp( random.nextFloat()* width, random.nextFloat()* height,
 						8, color, type, powerUpTicks, ow));
 			}
+			if( timer != null )
+				timer.lap();
 				
 				
 			findStragglers();
+			if( timer != null )
+				timer.lap();
 
 			
 			/*
@@ -1022,8 +1810,6 @@ public class OozeWars extends Game
 			/*for(Particle p : allParticles)
 				addParticle(p);*/
 			
-			game.queue.schedule(priorityLevel, this);
-			
 			for( int i = 0; i < isDead.length; i++ )
 			{
 				if( isDead[i] )
@@ -1031,6 +1817,8 @@ public class OozeWars extends Game
 					removePlayer(i);
 				}
 			}
+			if( timer != null )
+				timer.lap();
 		}
 		
 		/*
@@ -1040,7 +1828,7 @@ public class OozeWars extends Game
 		{
 			ArrayList<Particle> constituents;
 			
-			for(Blob b : getBlobs())
+			for(Blob b : blobArray)
 			{	
 				int id = b.getBlobID();
 				
@@ -1094,8 +1882,26 @@ public class OozeWars extends Game
 		 */
 		private void clearNeighbors()
 		{
-			for( Particle p : allParticles )
-				p.getNeighbors().clear();
+			for( int i = 0; i < allParticles.size(); i++ )
+				allParticles.get(i).getNeighbors().clear();
+		}
+		
+		/*
+		 * Gives every Particle's list of neighbors room for as many as the most crowded Particle
+		 * has now, if that is more than any has had before.  Otherwise the lists would keep
+		 * growing one at a time, long after, as each Particle gets that crowded in turn.
+		 */
+		private void makeRoomForNeighbors()
+		{
+			int most = mostNeighbors;
+			for( int i = 0; i < allParticles.size(); i++ )
+				most = Math.max( most, allParticles.get(i).getNeighbors().size() );
+			if( most == mostNeighbors )
+				return;
+			
+			mostNeighbors = most;
+			for( int i = 0; i < allParticles.size(); i++ )
+				allParticles.get(i).getNeighbors().ensureCapacity( most );
 		}
 		
 		/*
@@ -1105,62 +1911,303 @@ public class OozeWars extends Game
 		 */
 		private void updateNeighbors( double range )
 		{
-			double squaredRange = range*range;
-			
 			clearNeighbors();
 			
+			if( !useSpatialHash )
+			{
+				updateNeighborsBruteForce( range );
+				return;
+			}
+			
+			if( solver != null )
+				solver.clear();
+			
+			if( useNeighborLists )
+			{
+				boolean rebuild = neighborList.needsRebuild( allParticles );
+				
+				if( rebuild )
+					updateGrid();
+				if( validateSpatialHash )
+					validateGrid( buildScratchGrid(), range );
+				
+				if( rebuild )
+				{
+					neighborList.rebuild( allParticles );
+					caching = true;
+					visitGrid( grid, range + SKIN );
+					caching = false;
+				}
+				
+				if( validateSpatialHash )
+					validateNeighborList( range );
+				
+				for( int k = 0; k < neighborList.size(); k++ )
+					tryNeighbors( neighborList.getI(k), neighborList.getJ(k), range );
+			}
+			else
+			{
+				updateGrid();
+				if( validateSpatialHash )
+					validateGrid( grid, range );
+				
+				visitGrid( grid, range );
+			}
+			
+			if( solver != null )
+				solver.solve( this, allParticles.size() );
+		}
+		
+		/*
+		 * Visits every pair of Particles in the same or adjacent cells of a grid.
+		 */
+		private void visitGrid( SpatialHash hash, double range )
+		{
+			int columns = hash.getColumns();
+			int rows = hash.getRows();
+			
+			for( int cy = 0; cy < rows; cy++ )
+			{
+				for( int cx = 0; cx < columns; cx++ )
+				{
+					int cell = cy * columns + cx;
+					
+					for( int i = hash.first(cell); i != SpatialHash.NONE; i = hash.next(i) )
+					{
+						// the rest of this cell, then the four cells ahead of it so that
+						// every adjacent pair of cells is only visited once
+						for( int j = hash.next(i); j != SpatialHash.NONE; j = hash.next(j) )
+							tryNeighbors( i, j, range );
+						
+						if( cx + 1 < columns )
+							tryCell( hash, i, cell + 1, range );
+						if( cy + 1 < rows )
+						{
+							if( cx > 0 )
+								tryCell( hash, i, cell + columns - 1, range );
+							tryCell( hash, i, cell + columns, range );
+							if( cx + 1 < columns )
+								tryCell( hash, i, cell + columns + 1, range );
+						}
+					}
+				}
+			}
+		}
+		
+		/*
+		 * Pairs a Particle up with every Particle in the given cell.
+		 */
+		private void tryCell( SpatialHash hash, int i, int cell, double range )
+		{
+			for( int j = hash.first(cell); j != SpatialHash.NONE; j = hash.next(j) )
+				tryNeighbors( i, j, range );
+		}
+		
+		/*
+		 * Makes two Particles neighbors and applies a force between them if they are within range.
+		 * The Particle with the lower index always applies the constraint, as in the pair loop.
+		 */
+		private void tryNeighbors( int i, int j, double range )
+		{
+			if( i > j )
+			{
+				int tmp = i;
+				i = j;
+				j = tmp;
+			}
+			
+			double[] x = allParticles.x;
+			double[] y = allParticles.y;
+			double dx = x[j] - x[i];
+			double dy = y[j] - y[i];
+			double squaredDistance = dx*dx + dy*dy;
+			
+			if(squaredDistance < range*range)
+			{
+				if( visitedPairs != null )
+					visitedPairs.add( ((long)i << 32) | j );
+				else if( caching )
+					neighborList.add( i, j );
+				else if( solver == null )
+					connect( allParticles.get(i), allParticles.get(j), squaredDistance, dx, dy, range );
+				else
+				{
+					// constraints are applied later, in batches
+					allParticles.get(i).addNeighbor( allParticles.get(j) );
+					allParticles.get(j).addNeighbor( allParticles.get(i) );
+					solver.add( i, j );
+				}
+			}
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see oozeWars.ConstraintSolver.Constraint#apply(int, int)
+		 * Applies the stick constraint between two neighbors found earlier in the tick, using
+		 * where they are now.  Called by the ConstraintSolver, possibly on another thread.
+		 */
+		@Override
+		public void apply( int i, int j )
+		{
+			Particle p = allParticles.get(i);
+			Particle op = allParticles.get(j);
+			double dx = allParticles.x[j] - allParticles.x[i];
+			double dy = allParticles.y[j] - allParticles.y[i];
+			constrain( p, op, Math.sqrt(dx*dx + dy*dy), dx, dy, RANGE );
+		}
+		
+		/*
+		 * Records two Particles as neighbors and applies the stick constraint between them.
+		 */
+		private void connect( Particle p, Particle op, double squaredDistance, double dx, double dy, double range )
+		{
+			p.addNeighbor(op);
+			op.addNeighbor(p);
+			constrain( p, op, Math.sqrt(squaredDistance), dx, dy, range );
+		}
+		
+		/*
+		 * Applies the stick constraint between two neighboring Particles, using the average
+		 * force and comfortable distance of their Blobs.
+		 */
+		private void constrain( Particle p, Particle op, double distance, double dx, double dy, double range )
+		{
+			Blob blob = hBlobs.get( p.getBlobID() );
+			double bForce = blob.getBlobForce();
+			double comfy = blob.getComfyDistance();
+			
+			Blob oBlob = hBlobs.get( op.getBlobID() );
+			double obForce = oBlob.getBlobForce();
+			double oComfy = oBlob.getComfyDistance();
+			
+			p.applyStickConstraint(op, 0.5 * (bForce + obForce), distance, dx, dy, range, 0.5*( comfy + oComfy ));
+		}
+		
+		/*
+		 * The original neighbor search, which checks every pair of Particles.
+		 * @param range 
+		 * :  The maximum distance from this Particle to a neighbor
+		 */
+		private void updateNeighborsBruteForce( double range )
+		{
+			double squaredRange = range*range;
+			double[] x = allParticles.x;
+			double[] y = allParticles.y;
+			
 			for(int i = 0; i < allParticles.size(); i++)
 			{
-				Particle p = allParticles.get(i);
 				for(int j = i+1; j < allParticles.size(); j++)
 				{
-					Particle op = allParticles.get(j);
-					
-					double dx = op.getX() - p.getX();
-					double dy = op.getY() - p.getY();
+					double dx = x[j] - x[i];
+					double dy = y[j] - y[i];
 					double squaredDistance = dx*dx + dy*dy;
 					
 					if(squaredDistance < squaredRange)
-					{
-						p.addNeighbor(op);
-						op.addNeighbor(p);
-						
-						double distance = Math.sqrt(squaredDistance);
-						Blob blob = hBlobs.get( p.getBlobID() );
-						double bForce = blob.getBlobForce();
-						double comfy = blob.getComfyDistance();
-						
-						Blob oBlob = hBlobs.get( op.getBlobID() );
-						double obForce = oBlob.getBlobForce();
-						double oComfy = oBlob.getComfyDistance();
-						
-						p.applyStickConstraint(op, 0.5 * (bForce + obForce), distance, dx, dy, range, 0.5*( comfy + oComfy ));	
-					}
+						connect( allParticles.get(i), allParticles.get(j), squaredDistance, dx, dy, range );
 				}
 			}
 		}
 		
 		/*
-		 * Used to keep the Particles from going off-screen
+		 * Moves every Particle into the cell for its current location.  Only Particles that
+		 * crossed a cell boundary since the last tick actually change cells.
 		 */
-		private void keepInBounds( double xMax, double yMax )
+		private void updateGrid()
 		{
-			for( Particle p : allParticles )
+			double[] x = allParticles.x;
+			double[] y = allParticles.y;
+			
+			for( int i = 0; i < allParticles.size(); i++ )
+				grid.update( i, x[i], y[i] );
+		}
+		
+		/*
+		 * Puts every Particle in a separate grid where it is now.  Between rebuilds of the
+		 * NeighborList the live grid is out of date on purpose, and updating it only to check it
+		 * would change the order of its cells, and so the order the game goes through its pairs.
+		 */
+		private SpatialHash buildScratchGrid()
+		{
+			if( scratchGrid == null )
+				scratchGrid = new SpatialHash( grid.getCellWidth(), ow.getWidth(), ow.getHeight(), MAX_PARTICLES );
+			else
+				scratchGrid.clear();
+			
+			for( int i = 0; i < allParticles.size(); i++ )
+				scratchGrid.update( i, allParticles.x[i], allParticles.y[i] );
+			return scratchGrid;
+		}
+		
+		/*
+		 * Finds the neighboring pairs both by checking every pair and by visiting the SpatialHash
+		 * the way the tick does, without applying any forces, and throws an exception if the two
+		 * differ.  A pair the grid visits twice counts as a difference.
+		 */
+		private void validateGrid( SpatialHash hash, double range )
+		{
+			double squaredRange = range*range;
+			int n = allParticles.size();
+			ArrayList<Long> expected = new ArrayList<Long>();
+			ArrayList<Long> found = new ArrayList<Long>();
+			
+			for( int i = 0; i < n; i++ )
+				for( int j = i+1; j < n; j++ )
+					if( inRange( i, j, squaredRange ) )
+						expected.add( ((long)i << 32) | j );
+			
+			visitedPairs = found;
+			try
 			{
-				double x = p.getX();
-				double y = p.getY();
-				double r = p.halfWidth;
-				
-				if(x < r)
-					p.x = r;
-				else if(x > xMax - r)
-					p.x = xMax - r;
-				
-				if(y < r)
-					p.y = r;
-				else if(y > yMax - r)
-					p.y = yMax - r;
+				visitGrid( hash, range );
+			}
+			finally
+			{
+				visitedPairs = null;
 			}
+			
+			Collections.sort(expected);
+			Collections.sort(found);
+			
+			if( !expected.equals(found) )
+				throw new IllegalStateException("SpatialHash found " + found.size() + " neighbor pairs, expected " + expected.size());
+		}
+		
+		/*
+		 * Checks that every pair of Particles within range is in the NeighborList, and throws
+		 * an exception if one is missing.
+		 */
+		private void validateNeighborList( double range )
+		{
+			double squaredRange = range*range;
+			int n = allParticles.size();
+			ArrayList<Long> cached = new ArrayList<Long>();
+			
+			for( int k = 0; k < neighborList.size(); k++ )
+				cached.add( ((long)neighborList.getI(k) << 32) | neighborList.getJ(k) );
+			Collections.sort(cached);
+			
+			for( int i = 0; i < n; i++ )
+				for( int j = i+1; j < n; j++ )
+					if( inRange( i, j, squaredRange ) && Collections.binarySearch( cached, ((long)i << 32) | j ) < 0 )
+						throw new IllegalStateException("NeighborList is missing the pair " + i + ", " + j);
+		}
+		
+		/*
+		 * Checks whether the Particles at two indices are within range of each other.
+		 */
+		private boolean inRange( int i, int j, double squaredRange )
+		{
+			double dx = allParticles.x[j] - allParticles.x[i];
+			double dy = allParticles.y[j] - allParticles.y[i];
+			return dx*dx + dy*dy < squaredRange;
+		}
+		
+		/*
+		 * Used to keep the Particles from going off-screen
+		 */
+		private void keepInBounds( double xMax, double yMax )
+		{
+			allParticles.keepInBounds( xMax, yMax );
 		}
 		
 		/*
@@ -1168,8 +2215,9 @@ public class OozeWars extends Game
 		 */
 		private void applyConstraints( double pushDist )
 		{
-			for( Particle p : allParticles )
+			for( int i = 0; i < allParticles.size(); i++ )
 			{
+				Particle p = allParticles.get(i);
 				ArrayList<Particle> neighbors = p.getNeighbors();
 				Blob blob = hBlobs.get( p.getBlobID() );
 				double bForce = blob.getBlobForce();
@@ -1210,7 +2258,7 @@ public class OozeWars extends Game
 			if( seed.isEnemy(blobID) )
 				return;
 			
-			LinkedList<Particle> queue = new LinkedList<Particle>();
+			ArrayDeque<Particle> queue = searchQueue;
 			ArrayList<Particle> neighbors;
 			
 			queue.add(seed);
@@ -1223,8 +2271,9 @@ public class OozeWars extends Game
 				connected.add( currParticle = queue.pop() );
 				neighbors = currParticle.getNeighbors();
 				
-				for( Particle p : neighbors )
+				for( int i = 0; i < neighbors.size(); i++ )
 				{
+					Particle p = neighbors.get(i);
 					// only looking for particles which can be absorbed
 					// into the current blob.
 					index = p.getIndex();
@@ -1268,27 +2317,18 @@ public class OozeWars extends Game
 	}
 	
 	/*
-	 * Loads all the Midi songs for this game into memory and makes them playable.
+	 * Adds all the Midi songs for this game to a MusicManager, which reads each one the first
+	 * time it is played.
 	 */
-	private static Midi[] initializeSongs()
+	private static MusicManager initializeSongs()
 	{
-		Midi[] songs = new Midi[4];
+		MusicManager songs = new MusicManager();
 		int volume = 70;
 		
-		try 
-		{
-			songs[0] = new Midi(OozeWars.class.getResourceAsStream("rtft.mid"));
-			songs[0].setVolume(volume);
-			songs[1] = new Midi(OozeWars.class.getResourceAsStream("sonicsuf.mid"));
-			songs[1].setVolume(volume-20);
-			songs[2] = new Midi(OozeWars.class.getResourceAsStream("spheare.mid"));
-			songs[2].setVolume(volume-10);
-			songs[3] = new Midi(OozeWars.class.getResourceAsStream("absence.mid"));
-			songs[3].setVolume(volume-20);
-		} 
-		catch (InvalidMidiDataException e) {e.printStackTrace();}
-		catch (MidiUnavailableException e) {e.printStackTrace();}
-		catch (IOException e) {e.printStackTrace();}
+		songs.addTrack(OozeWars.class.getResource("rtft.mid"), volume);
+		songs.addTrack(OozeWars.class.getResource("sonicsuf.mid"), volume-20);
+		songs.addTrack(OozeWars.class.getResource("spheare.mid"), volume-10);
+		songs.addTrack(OozeWars.class.getResource("absence.mid"), volume-20);
 		
 		return songs;
 	}
@@ -4,29 +4,27 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.color.ColorSpace;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
-import java.awt.image.RescaleOp;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
-import com.jhlabs.image.BoxBlurFilter;
 import com.jhlabs.image.ImageMath;
 import com.jhlabs.image.ImageUtils;
 
 public class Particle extends Entity implements Comparable<Particle>
 {
-	protected double radius, inverseMass, scaleFactor;
+	protected double radius, inverseMass;
 	protected double friction;
 	protected ArrayList<Particle> neighbors;
 	Color color;
 	protected int blobID;
-	protected BufferedImage image, colored;
-	protected RescaleOp colorFilt;
-	protected float[] scales = {1f,1f,1f,1f};
-	protected final float[] offsets = {0f,0f,0f,0f};
+	//The color the Particle was last drawn in, which fades towards the color it is drawn with
+	protected int rgb;
 	public static final int BLUR_WIDTH = 15;
 	protected int index;
 	protected int halfWidth;
+	
+	//The store holding this Particle's state while it is in the game, or null if it is on its own
+	ParticleStore store;
 
 	/**
 	 * Used to create a new Particle at a given location with a defined radius.
@@ -45,21 +43,21 @@ public class Particle extends Entity implements Comparable<Particle>
 		
 		this.color = color;
 		index = -1;
-		image = createImage();
-		scaleFactor = 1.0 / halfWidth;
-		colored = new BufferedImage( halfWidth * 2, halfWidth * 2, BufferedImage.TYPE_INT_ARGB );
 		blobID = blobid;
-		colorFilt = new RescaleOp(offsets, scales, null);
+		rgb = color.getRGB();
 	}
 	
 	public int getBlobID() 
 	{
-		return blobID;
+		return store == null ? blobID : store.blobID[index];
 	}
 
 	public void setBlobID(int blobID2) 
 	{
-		this.blobID = blobID2;
+		if(store == null)
+			this.blobID = blobID2;
+		else
+			store.blobID[index] = blobID2;
 	}
 
 	/**
@@ -73,75 +71,84 @@ public class Particle extends Entity implements Comparable<Particle>
 	 */
 	public void draw(Graphics2D graphics, Game game, Color col, double scale) 
 	{
-		int newColor = col.getRGB();
-		int oldColor = this.color.getRGB();
-		color = new Color(0xff000000 | ImageMath.mixColors(.05f, oldColor, newColor));
-		float factor = (float) (1.0 / 255);
-		scales[0] = color.getRed() * factor;
-		scales[1] = color.getGreen() * factor;
-		scales[2] = color.getBlue() * factor;
-		colorFilt = new RescaleOp(scales, offsets, null);
-		colorFilt.filter(image.getRaster(), colored.getRaster());
-		
-		//double adjScale = Math.ceil( radius * scaleFactor );
+		draw(graphics, game, col, scale, getX(), getY());
+	}
+	
+	/**
+	 * Draws the Particle at the given location rather than where it is now, such as between where
+	 * it was at the last two steps.
+	 * @param graphics
+	 * :  The graphics that will be used to draw the Particle.
+	 * @param game
+	 * :  The game that the Particle needs to be drawn for.
+	 * @param col
+	 * :  The color that the Particle will be.
+	 * @param scale
+	 * :  The scale the Particle is drawn at.
+	 * @param x
+	 * :  The x location to draw the center of the Particle at.
+	 * @param y
+	 * :  The y location to draw the center of the Particle at.
+	 */
+	public void draw(Graphics2D graphics, Game game, Color col, double scale, double x, double y) 
+	{
+		int newColor = 0xff000000 | ImageMath.mixColors(.05f, rgb, col.getRGB());
 		
-		graphics.drawRenderedImage( colored, getTransform( scale ));
+		// the sprites are shared, so a color that is still fading is rounded to fewer sprites
+		SpriteCache.draw( graphics, halfWidth, newColor, newColor != rgb, scale, x, y );
+		rgb = newColor;
 		//graphics.setColor(this.color);
 		//graphics.fillOval((int)x - halfWidth, (int)y - halfWidth, 2 * halfWidth, 2 * halfWidth);
 	}
 	
-	protected AffineTransform getTransform( double scale )
+	/**
+	 * Lays the Particle's falloff kernel straight into a MetaballRenderer's field rather than
+	 * drawing it with Java2D.
+	 * @param renderer
+	 * :  The MetaballRenderer the Particle is drawn into.
+	 * @param col
+	 * :  The color that the Particle will be.
+	 * @param scale
+	 * :  The scale the Particle is drawn at.
+	 * @param x
+	 * :  The x location to draw the center of the Particle at.
+	 * @param y
+	 * :  The y location to draw the center of the Particle at.
+	 */
+	public void draw(MetaballRenderer renderer, Color col, double scale, double x, double y)
 	{
-		double adjScale = halfWidth * scaleFactor;
-		AffineTransform at = AffineTransform.getScaleInstance(scale, scale);
-		at.translate((int)x - halfWidth, (int)y - halfWidth);
-		at.scale(adjScale, adjScale);
-		return at;
+		renderer.splat( halfWidth, fadeTo(col), scale, x, y );
 	}
 	
-	protected BufferedImage createImage()
+	/**
+	 * Moves the color the Particle is drawn in a step toward the given one, as drawing it does.
+	 * A RenderSnapshot calls this on the simulation thread, so that the Swing thread never
+	 * changes the Particle.
+	 * @param col
+	 * :  The color that the Particle will be.
+	 * @return
+	 * The color to draw the Particle in now.
+	 */
+	public int fadeTo(Color col)
 	{
-		halfWidth = (int)(radius + BLUR_WIDTH);
-		int size =  halfWidth * 2;
-		//BufferedImage img = new BufferedImage( size, size, BufferedImage.TYPE_BYTE_GRAY );
-		BufferedImage img = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
-		Graphics2D g = img.createGraphics();
-
-		
-		g.setColor(Color.white);
-                // replacing blur with calculated alpha
-                BoxBlurFilter blur = new BoxBlurFilter(BLUR_WIDTH/3f, BLUR_WIDTH/3f, 3);
-		//g.fillOval(BLUR_WIDTH, BLUR_WIDTH, (int)radius * 2, (int)radius * 2);
-                g.fillOval(0, 0, size, size);
-		g.dispose();
-                
-                int[] pixels = new int[size*size];
-                blur.getRGB( img, 0, 0, size, size, pixels );
-                float invWidth = 1.f / (float)(halfWidth);
-                for( int y = 0; y < size; ++y)
-                    for( int x = 0; x < size; ++x){
-                        float dx = invWidth*(halfWidth - x);
-                        float dy = invWidth*(halfWidth - y);
-                        int alpha;
-                        float r2 = dx*dx + dy*dy;
-                        if(r2 > 1.f) {
-                            alpha = 0;
-                        }
-                        else {
-                            float q = (1.f - (dx*dx + dy*dy));
-                            alpha = (int)(q*q*255.f);
-                        }
-                        int px = pixels[y*size+x];
-                        pixels[y*size+x] = px & 0xffffff | (alpha << 24);
-                    }
-		
-                blur.setRGB( img, 0, 0, size, size, pixels );
-		return img;
+		rgb = 0xff000000 | ImageMath.mixColors(.05f, rgb, col.getRGB());
+		return rgb;
 	}
-
+	
+	/**
+	 * Advances the Particle one timestep with Verlet integration.  Particles that are in a
+	 * ParticleStore are only marked here, and integrated all at once by
+	 * <code>ParticleStore.integrate()</code>, so this only moves Particles that are on their own.
+	 */
 	@Override
 	public void go(Game game, long timestep, int priorityLevel) 
 	{	
+		if(store != null)
+		{
+			store.flags[index] |= ParticleStore.STEPPED;
+			return;
+		}
+		
 		double tmpX = x;
 		double tmpY = y;
 		x += friction*( x - oldX );
@@ -154,7 +161,8 @@ public class Particle extends Entity implements Comparable<Particle>
 			double minSpeed, double maxSpeed, double frictn, double maxRadius, double growth )
 	{
 		//applyFriction(minSpeed, maxSpeed, friction);
-		friction = frictn;
+		setFriction( frictn );
+		double radius = getRadius();
 		if( radius < maxRadius )
 			setRadius( Math.min(maxRadius, radius + growth) );
 		go(game, timestep, priorityLevel);
@@ -225,9 +233,10 @@ public class Particle extends Entity implements Comparable<Particle>
 	public void applyStickConstraint(Particle neighbor, double k, double distance, double dx, double dy, double pushDist, double pullDist)
 	{
 		double nInvMass = neighbor.getInverseMass();
+		double inverseMass = getInverseMass();
 		if( ( inverseMass + nInvMass ) == 0 )
 			return;
-		double dr = radius + neighbor.getRadius();
+		double dr = getRadius() + neighbor.getRadius();
 		pushDist += dr;
 		pullDist += dr;
 		double comfyDist = isEnemy(neighbor) ? pushDist : pullDist;
@@ -242,6 +251,7 @@ public class Particle extends Entity implements Comparable<Particle>
 	
 	public void damage( double amount )
 	{
+		double radius = getRadius();
 		if( amount >= radius )
 			setDead(true);
 		else
@@ -302,7 +312,7 @@ public class Particle extends Entity implements Comparable<Particle>
 	
 	public boolean isEnemy( int id )
 	{
-		return ( id != blobID && id != 0 );
+		return ( id != getBlobID() && id != 0 );
 	}
 	
 	/**
@@ -311,18 +321,111 @@ public class Particle extends Entity implements Comparable<Particle>
 	 */
 	public double getRadius()
 	{
-		return radius;
+		return store == null ? radius : store.radius[index];
 	}
 	
 	public void setRadius( double newRadius )
 	{
-		radius = newRadius;
+		setRadiusAndMass( newRadius, 1 / newRadius );
+	}
+	
+	/*
+	 * Sets the radius and inverse mass together, wherever the Particle's state is kept.
+	 */
+	protected void setRadiusAndMass( double newRadius, double newInverseMass )
+	{
 		halfWidth = (int)newRadius + BLUR_WIDTH;
-		inverseMass = 1 / newRadius;
+		if(store == null)
+		{
+			radius = newRadius;
+			inverseMass = newInverseMass;
+		}
+		else
+		{
+			store.radius[index] = newRadius;
+			store.inverseMass[index] = newInverseMass;
+		}
 	}
 	
 	public double getInverseMass() {
-		return inverseMass;
+		return store == null ? inverseMass : store.inverseMass[index];
+	}
+	
+	/**
+	 * @return
+	 * The fraction of its velocity that the Particle keeps each timestep.
+	 */
+	public double getFriction()
+	{
+		return store == null ? friction : store.friction[index];
+	}
+	
+	/**
+	 * @param frictn
+	 * :  The fraction of its velocity that the Particle will keep each timestep.
+	 */
+	public void setFriction( double frictn )
+	{
+		if(store == null)
+			friction = frictn;
+		else
+			store.friction[index] = frictn;
+	}
+
+	@Override
+	public double getX()
+	{
+		return store == null ? x : store.x[index];
+	}
+
+	@Override
+	public double getY()
+	{
+		return store == null ? y : store.y[index];
+	}
+
+	@Override
+	public double getOldX()
+	{
+		return store == null ? oldX : store.oldX[index];
+	}
+
+	@Override
+	public double getOldY()
+	{
+		return store == null ? oldY : store.oldY[index];
+	}
+
+	@Override
+	public void push(double dx, double dy)
+	{
+		if(store == null)
+		{
+			x += dx;
+			y += dy;
+		}
+		else
+		{
+			store.x[index] += dx;
+			store.y[index] += dy;
+		}
+	}
+
+	@Override
+	public boolean isDead()
+	{
+		return store == null ? dead : (store.flags[index] & ParticleStore.DEAD) != 0;
+	}
+
+	@Override
+	public void setDead(boolean dead)
+	{
+		if(store == null)
+			this.dead = dead;
+		else if(dead)
+			store.flags[index] |= ParticleStore.DEAD;
+		else
+			store.flags[index] &= ~ParticleStore.DEAD;
 	}
 
 	public int getIndex() {
@@ -330,9 +433,47 @@ public class Particle extends Entity implements Comparable<Particle>
 	}
 
 	public void setIndex(int index) {
+		if(store != null)
+			throw new IllegalStateException("The index of a stored Particle belongs to its ParticleStore");
 		this.index = index;
 	}
 
+	/*
+	 * Writes the Particle's state for a Snapshot.  Subclasses with more state write theirs after it.
+	 */
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		out.writeDouble(getX());
+		out.writeDouble(getY());
+		out.writeDouble(getOldX());
+		out.writeDouble(getOldY());
+		out.writeDouble(getRadius());
+		out.writeDouble(getInverseMass());
+		out.writeDouble(getFriction());
+		out.writeInt(getBlobID());
+		out.writeBoolean(isDead());
+		out.writeColor(color);
+		out.writeInt(rgb);
+	}
+	
+	/*
+	 * Reads back the state written by writeState().  The Particle must not be in a store yet.
+	 */
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		x = in.readDouble();
+		y = in.readDouble();
+		oldX = in.readDouble();
+		oldY = in.readDouble();
+		double radius = in.readDouble();
+		setRadiusAndMass(radius, in.readDouble());
+		friction = in.readDouble();
+		blobID = in.readInt();
+		dead = in.readBoolean();
+		color = in.readColor();
+		rgb = in.readInt();
+	}
+	
 	/**
 	 * Compares this Particle's radius to the other Particle's radius.
 	 * @return
@@ -342,6 +483,7 @@ public class Particle extends Entity implements Comparable<Particle>
 	 */
 	public int compareTo(Particle theOther)
 	{
-		return (this.radius == theOther.getRadius() ? 0: (this.radius < theOther.getRadius()? -1: 1));
+		double radius = getRadius();
+		return (radius == theOther.getRadius() ? 0: (radius < theOther.getRadius()? -1: 1));
 	}
 }
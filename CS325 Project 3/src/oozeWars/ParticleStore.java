@@ -0,0 +1,223 @@
+package oozeWars;
+
+import java.util.Arrays;
+
+/**
+ * <center><b>PARTICLESTORE.JAVA</b></center>
+ * Holds the physical state of every Particle in the game in parallel primitive arrays.
+ *
+ * <p>Each Particle that is in the game has an index into the store (the same index returned by
+ *    <code>Particle.getIndex()</code>), and its position, previous position, radius, inverse mass,
+ *    friction, blob ID and flags live at that index in the arrays below.  While a Particle is in
+ *    the store it is only a thin view: its getters and setters read and write the arrays instead
+ *    of its own fields.  This lets the physics passes in the ParticleManager sweep linearly through
+ *    memory instead of jumping from one Particle object to the next.
+ *
+ * <p>Particles are removed by moving the last Particle into the removed Particle's slot, so the
+ *    arrays stay packed.  A removed Particle gets its state copied back into its own fields, so it
+ *    keeps working on its own afterwards (a Bullet, for example, is never in the store).
+ */
+public class ParticleStore
+{
+	/** Flag set when the Particle is dead. */
+	public static final byte DEAD = 1;
+
+	/** Flag set when the Particle has been stepped this tick and is waiting to be integrated. */
+	public static final byte STEPPED = 2;
+
+	//The number of Particles currently in the store
+	private int size;
+
+	//The Particle objects that each slot belongs to
+	private Particle[] owners;
+
+	//The physical state of each Particle, indexed by Particle.getIndex()
+	double[] x, y, oldX, oldY, radius, inverseMass, friction;
+	int[] blobID;
+	byte[] flags;
+
+	/**
+	 * Creates an empty store.
+	 * @param capacity
+	 * :  The number of Particles the store initially has room for.  It will grow as needed.
+	 */
+	public ParticleStore(int capacity)
+	{
+		capacity = Math.max(capacity, 16);
+		owners = new Particle[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		oldX = new double[capacity];
+		oldY = new double[capacity];
+		radius = new double[capacity];
+		inverseMass = new double[capacity];
+		friction = new double[capacity];
+		blobID = new int[capacity];
+		flags = new byte[capacity];
+	}
+
+	/**
+	 * @return
+	 * The number of Particles in the store.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param index
+	 * :  The slot to look at.
+	 * @return
+	 * The Particle that owns the given slot.
+	 */
+	public Particle get(int index)
+	{
+		return owners[index];
+	}
+
+	/**
+	 * Adds a Particle to the end of the store, copying its current state into the arrays and
+	 * making the Particle read and write its state through the store from now on.
+	 * @param p
+	 * :  The Particle to add.  It must not already be in a store.
+	 */
+	public void add(Particle p)
+	{
+		if(p.store != null)
+			throw new IllegalArgumentException("Particle is already stored");
+
+		ensureCapacity(size + 1);
+		int i = size++;
+		owners[i] = p;
+		x[i] = p.x;
+		y[i] = p.y;
+		oldX[i] = p.oldX;
+		oldY[i] = p.oldY;
+		radius[i] = p.radius;
+		inverseMass[i] = p.inverseMass;
+		friction[i] = p.friction;
+		blobID[i] = p.blobID;
+		flags[i] = p.dead ? DEAD : 0;
+
+		p.index = i;
+		p.store = this;
+	}
+
+	/**
+	 * Removes a Particle from the store.  Its state is copied back into its own fields, and the
+	 * last Particle in the store is moved into its slot.
+	 * @param p
+	 * :  The Particle to remove.  It must be in this store.
+	 */
+	public void remove(Particle p)
+	{
+		if(p.store != this)
+			throw new IllegalArgumentException("Particle is not in this store");
+
+		int i = p.index;
+		p.x = x[i];
+		p.y = y[i];
+		p.oldX = oldX[i];
+		p.oldY = oldY[i];
+		p.radius = radius[i];
+		p.inverseMass = inverseMass[i];
+		p.friction = friction[i];
+		p.blobID = blobID[i];
+		p.dead = (flags[i] & DEAD) != 0;
+		p.store = null;
+
+		int last = --size;
+		if(i != last)
+		{
+			owners[i] = owners[last];
+			x[i] = x[last];
+			y[i] = y[last];
+			oldX[i] = oldX[last];
+			oldY[i] = oldY[last];
+			radius[i] = radius[last];
+			inverseMass[i] = inverseMass[last];
+			friction[i] = friction[last];
+			blobID[i] = blobID[last];
+			flags[i] = flags[last];
+			owners[i].index = i;
+		}
+		owners[last] = null;
+	}
+
+	/**
+	 * Removes every Particle from the store.
+	 */
+	public void clear()
+	{
+		while(size > 0)
+			remove(owners[size - 1]);
+	}
+
+	/**
+	 * Advances every Particle that was stepped this tick one timestep with Verlet integration,
+	 * using the friction each Particle was last given, and clears the STEPPED flags.  Particles
+	 * that weren't stepped, such as those of a Blob that just died, stay where they are.
+	 */
+	public void integrate()
+	{
+		for(int i = 0; i < size; i++)
+		{
+			if((flags[i] & STEPPED) == 0)
+				continue;
+			flags[i] &= ~STEPPED;
+			double tmpX = x[i];
+			double tmpY = y[i];
+			x[i] += friction[i] * (tmpX - oldX[i]);
+			y[i] += friction[i] * (tmpY - oldY[i]);
+			oldX[i] = tmpX;
+			oldY[i] = tmpY;
+		}
+	}
+
+	/**
+	 * Keeps every Particle, including its blur, inside of the playing field.
+	 * @param xMax
+	 * :  The width of the playing field.
+	 * @param yMax
+	 * :  The height of the playing field.
+	 */
+	public void keepInBounds(double xMax, double yMax)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			double r = (int)radius[i] + Particle.BLUR_WIDTH;
+
+			if(x[i] < r)
+				x[i] = r;
+			else if(x[i] > xMax - r)
+				x[i] = xMax - r;
+
+			if(y[i] < r)
+				y[i] = r;
+			else if(y[i] > yMax - r)
+				y[i] = yMax - r;
+		}
+	}
+
+	/*
+	 * Grows the arrays so that they can hold the given number of Particles.
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		if(capacity <= owners.length)
+			return;
+
+		int newSize = Math.max(capacity, owners.length * 2);
+		owners = Arrays.copyOf(owners, newSize);
+		x = Arrays.copyOf(x, newSize);
+		y = Arrays.copyOf(y, newSize);
+		oldX = Arrays.copyOf(oldX, newSize);
+		oldY = Arrays.copyOf(oldY, newSize);
+		radius = Arrays.copyOf(radius, newSize);
+		inverseMass = Arrays.copyOf(inverseMass, newSize);
+		friction = Arrays.copyOf(friction, newSize);
+		blobID = Arrays.copyOf(blobID, newSize);
+		flags = Arrays.copyOf(flags, newSize);
+	}
+}
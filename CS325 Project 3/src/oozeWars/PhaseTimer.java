@@ -0,0 +1,146 @@
+package oozeWars;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * <center><b>PHASETIMER.JAVA</b></center>
+ * Adds up how long each phase of a repeated piece of work takes, and how many bytes the thread
+ *    doing it allocates in each phase where the JVM can measure them.
+ *
+ * <p>The work calls start() before its first phase and lap() at the end of every phase, in the
+ *    same order every time, so each lap is charged to the next phase in turn.  Reading the clock
+ *    costs a few tens of nanoseconds a lap, so a PhaseTimer is only given to the work while it is
+ *    being measured.  Bytes allocated by other threads, such as the ConstraintSolver's, are not
+ *    counted.
+ */
+public class PhaseTimer
+{
+	//The name of each phase, in the order they run
+	private final String[] names;
+
+	//The nanoseconds and bytes spent in each phase since the last reset
+	private final long[] nanos, bytes;
+
+	//The number of times the work has been started since the last reset
+	private long runs;
+
+	//Measures allocations, or null if the JVM can't
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	//The phase the next lap is charged to, and when the last lap ended
+	private int phase;
+	private long lastNanos, lastBytes;
+
+	/**
+	 * Creates a timer for work made up of the given phases.
+	 * @param names
+	 * :  The name of each phase, in the order they run.
+	 */
+	public PhaseTimer(String... names)
+	{
+		this.names = names.clone();
+		nanos = new long[names.length];
+		bytes = new long[names.length];
+
+		com.sun.management.ThreadMXBean sunBean = null;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+		{
+			sunBean = (com.sun.management.ThreadMXBean) bean;
+			if(sunBean.isThreadAllocatedMemorySupported())
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+			else
+				sunBean = null;
+		}
+		threadBean = sunBean;
+	}
+
+	/**
+	 * Marks the start of the first phase.
+	 */
+	public void start()
+	{
+		runs++;
+		phase = 0;
+		lastBytes = threadBean == null ? 0 : threadBean.getCurrentThreadAllocatedBytes();
+		lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of the phase that is running, and the start of the next one.
+	 */
+	public void lap()
+	{
+		long now = System.nanoTime();
+		nanos[phase] += now - lastNanos;
+		if(threadBean != null)
+		{
+			long allocated = threadBean.getCurrentThreadAllocatedBytes();
+			bytes[phase] += allocated - lastBytes;
+			lastBytes = allocated;
+		}
+		phase++;
+		lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Forgets everything measured so far.
+	 */
+	public void reset()
+	{
+		runs = 0;
+		for(int i = 0; i < names.length; i++)
+			nanos[i] = bytes[i] = 0;
+	}
+
+	/**
+	 * @return
+	 * The number of phases.
+	 */
+	public int getPhaseCount()
+	{
+		return names.length;
+	}
+
+	/**
+	 * @param phase
+	 * :  The number of a phase, counting from 0 in the order they run.
+	 * @return
+	 * The phase's name.
+	 */
+	public String getName(int phase)
+	{
+		return names[phase];
+	}
+
+	/**
+	 * @return
+	 * The number of times the work has been started since the last reset.
+	 */
+	public long getRuns()
+	{
+		return runs;
+	}
+
+	/**
+	 * @param phase
+	 * :  The number of a phase, counting from 0 in the order they run.
+	 * @return
+	 * The nanoseconds spent in the phase since the last reset.
+	 */
+	public long getNanos(int phase)
+	{
+		return nanos[phase];
+	}
+
+	/**
+	 * @param phase
+	 * :  The number of a phase, counting from 0 in the order they run.
+	 * @return
+	 * The bytes allocated in the phase since the last reset, or -1 if the JVM can't measure them.
+	 */
+	public long getBytes(int phase)
+	{
+		return threadBean == null ? -1 : bytes[phase];
+	}
+}
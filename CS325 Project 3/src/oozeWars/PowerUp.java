@@ -7,17 +7,21 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 
 public class PowerUp extends Particle 
 {
 	public static enum Type {GOD, NITRO, BOOST, GLUE, HEAL};
 	private Blob ownerBlob;
 	private boolean inBlob, collected;
-	private static int ticksOutsideBlob = 15*30;
+	//The number of seconds an uncollected PowerUp stays in the game
+	private static final int SECONDS_OUTSIDE_BLOB = 15;
+	private final int ticksOutsideBlob;
 	private int powerUpTicks;
 	private final Type type;
 	private PowerupLabel label;
 	private final Game game;
+	private Schedule.Handle remover;
 
 	public PowerUp(double x, double y, double radius, Color color, Type type, int powerUpTicks, Game game) 
 	{
@@ -27,26 +31,31 @@ public class PowerUp extends Particle
 		this.game = game;
 		
 		this.powerUpTicks = powerUpTicks;
-		Agent powerRemoverAgent = new Agent()
-                    { 
-                        boolean isScheduled = false;
-
-                        public void go(Game game, long timestep, int priorityLevel)
-                        {
-
-                                if(!isScheduled)
-                                {
-                                        isScheduled = true;
-                                        game.queue.scheduleIn(ticksOutsideBlob, 1, this);
-                                }
-                                else if(!inBlob)
-                                {
-                                        setDead(true);
-                                }
-                        }
-                    };
-		game.queue.schedule(1, powerRemoverAgent);
-		game.view.addSprite(label = getLabel(), 2);
+		ticksOutsideBlob = (int)(SECONDS_OUTSIDE_BLOB * game.getSimulationRate());
+		remover = game.queue.scheduleIn(ticksOutsideBlob + 1, 1, new Remover());
+		if(!game.isHeadless())
+			game.addSprite(label = getLabel(), 2);
+	}
+	
+	/*
+	 * Creates a PowerUp that is neither scheduled nor shown, for a Snapshot to fill in with
+	 * readState().
+	 */
+	PowerUp(Type type, Game game)
+	{
+		super(0, 0, 1, Color.WHITE, 0);
+		this.type = type;
+		this.game = game;
+		ticksOutsideBlob = (int)(SECONDS_OUTSIDE_BLOB * game.getSimulationRate());
+	}
+	
+	/**
+	 * @return
+	 * What the PowerUp does to the Blob that collects it.
+	 */
+	public Type getType()
+	{
+		return type;
 	}
 	
 	public PowerupLabel getLabel( )
@@ -69,15 +78,22 @@ public class PowerUp extends Particle
 	}
 	
 	@Override
-	public void draw(Graphics2D graphics, Game game, Color col, double scale)
+	public void draw(Graphics2D graphics, Game game, Color col, double scale, double x, double y)
+	{
+		super.draw(graphics, game, color, scale, x, y);
+	}
+	
+	@Override
+	public void draw(MetaballRenderer renderer, Color col, double scale, double x, double y)
 	{
-		super.draw(graphics, game, color, scale);
+		super.draw(renderer, color, scale, x, y);
 	}
 	
 	@Override
 	public void go(Game game, long timestep, int priorityLevel, 
 			double minSpeed, double maxSpeed, double frictn, double maxRadius, double growth )
 	{
+		int blobID = getBlobID();
 		if(blobID > 0 && !collected)
 		{
 			collected = true;
@@ -90,124 +106,154 @@ public class PowerUp extends Particle
 			}
 			
 			ownerBlob.incrementPowerUpsCollected();
-			game.queue.schedule(0, createAgent(type));
+			cancelRemover();
+			ownerBlob.addAgent(game.queue.schedule(0, new Effect()));
 		}
 		super.go(game, timestep, priorityLevel, minSpeed, maxSpeed, frictn, maxRadius, growth);
 	}
 	
-	private Agent createAgent(Type type)
+	/*
+	 * Removes the PowerUp if it is still outside a Blob ticksOutsideBlob + 1 ticks after it appeared.
+	 * It is registered for that tick when the PowerUp is made.  One restored from an older Snapshot
+	 * may first fire on the tick after the PowerUp appeared, and then schedules itself from there.
+	 */
+	class Remover implements Agent
 	{
-		Agent pAgent;
+		//Whether it has scheduled itself for when the PowerUp runs out of time
+		boolean isScheduled = true;
 		
-		switch(type)
+		public void go(Game game, long timestep, int priorityLevel)
 		{
-			case GOD:
+			if(!isScheduled)
 			{
-				pAgent = new Agent()
-				{   boolean isSet = false;
-					public void go(Game game, long timestep, int priorityLevel)
-					{
-						if(!isSet)
-						{
-							isSet = true;
-							ownerBlob.setColor(color);
-							ownerBlob.setGod(true);
-							
-							game.queue.scheduleIn(powerUpTicks, 1, this);
-						}
-						else
-						{
-							ownerBlob.backToBaseColor();
-							ownerBlob.setGod(false);
-							setDead(true);
-						}
-					}
-				};
-				break;
+				isScheduled = true;
+				remover = game.queue.scheduleIn(ticksOutsideBlob, 1, this);
 			}
-			case NITRO:
+			else if(!inBlob)
 			{
-				pAgent = new Agent()
-						{	boolean isSet = false;
-							public void go(Game game, long timestep, int priorityLevel)
-							{
-								if(!isSet)
-								{
-									isSet = true;
-									ownerBlob.setColor(color);
-									ownerBlob.setNitro(true);
-									
-									game.queue.scheduleIn(powerUpTicks, 1, this);
-								}
-								else
-								{
-									ownerBlob.backToBaseColor();
-									ownerBlob.setNitro(false);
-									setDead(true);
-								}
-							}
-						};
-				break;
+				setDead(true);
 			}
-			case BOOST:
+		}
+		
+		PowerUp getPowerUp()
+		{
+			return PowerUp.this;
+		}
+	}
+	
+	/*
+	 * Gives the Blob that collected the PowerUp its effect.  BOOST and HEAL are over at once; GOD,
+	 * NITRO and GLUE wear off when the Effect fires again powerUpTicks ticks later.
+	 */
+	class Effect implements Agent
+	{
+		//Whether the effect has been given and is waiting to wear off
+		boolean isSet = false;
+		//The Blob's comfy distance and force from before GLUE changed them
+		double oldComf, oldForce;
+		
+		Effect()
+		{
+			if(type == Type.GLUE)
 			{
-				pAgent = new Agent()
-						{
-							public void go(Game game, long timestep, int priorityLevel)
-							{
-								ownerBlob.addParticles(10, (OozeWars) game);
-								ownerBlob.updateHealth();
-								setDead(true);
-							}
-						};
-				break;
+				oldComf = ownerBlob.getComfyDistance();
+				oldForce = ownerBlob.getBlobForce();
 			}
-			case GLUE:
+		}
+		
+		public void go(Game game, long timestep, int priorityLevel)
+		{
+			switch(type)
+			{
+				case BOOST:
+					ownerBlob.addParticles(10, (OozeWars) game);
+					ownerBlob.updateHealth();
+					setDead(true);
+					return;
+				case HEAL:
+					ownerBlob.fullHeal();
+					setDead(true);
+					return;
+				default:
+					break;
+			}
+			
+			if(!isSet)
 			{
-				pAgent = new Agent()
-						{	boolean isSet = false;
-							double oldComf = ownerBlob.getComfyDistance();
-							double oldForce = ownerBlob.getBlobForce();
-							
-							public void go(Game game, long timestep, int priorityLevel)
-							{
-								if(!isSet)
-								{
-									isSet = true;
-									ownerBlob.setColor(color);
-									ownerBlob.setComfyDistance(oldComf*.5);
-									ownerBlob.setBlobForce(oldForce*2);
-									
-									game.queue.scheduleIn(powerUpTicks, 1, this);
-								}
-								else
-								{
-									ownerBlob.backToBaseColor();
-									ownerBlob.setComfyDistance(oldComf);
-									ownerBlob.setBlobForce(oldForce);
-									setDead(true);
-								}
-							}
-						};
-				break;
+				isSet = true;
+				ownerBlob.setColor(color);
+				if(type == Type.GOD)
+					ownerBlob.setGod(true);
+				else if(type == Type.NITRO)
+					ownerBlob.setNitro(true);
+				else
+				{
+					ownerBlob.setComfyDistance(oldComf*.5);
+					ownerBlob.setBlobForce(oldForce*2);
+				}
+				
+				ownerBlob.addAgent(game.queue.scheduleIn(powerUpTicks, 1, this));
 			}
-			case HEAL:
+			else
 			{
-				pAgent = new Agent()
-						{
-							public void go(Game game, long timestep, int priorityLevel)
-							{
-								ownerBlob.fullHeal();
-								setDead(true);
-							}
-						};
-				break;
+				ownerBlob.backToBaseColor();
+				if(type == Type.GOD)
+					ownerBlob.setGod(false);
+				else if(type == Type.NITRO)
+					ownerBlob.setNitro(false);
+				else
+				{
+					ownerBlob.setComfyDistance(oldComf);
+					ownerBlob.setBlobForce(oldForce);
+				}
+				setDead(true);
 			}
-			default:
-				throw new IllegalArgumentException("Undefined Powerup Type");
 		}
 		
-		return pAgent;
+		PowerUp getPowerUp()
+		{
+			return PowerUp.this;
+		}
+	}
+
+	/**
+	 * Unregisters the Agent that removes the PowerUp if it is not collected in time.  Called once
+	 * the PowerUp is collected, or removed from the game.
+	 */
+	public void cancelRemover()
+	{
+		if(remover != null)
+			remover.cancel();
+	}
+	
+	/*
+	 * Sets the Handle of the Remover, once a Snapshot has registered it again.
+	 */
+	void setRemover(Schedule.Handle handle)
+	{
+		remover = handle;
+	}
+	
+	@Override
+	void writeState(Snapshot.Writer out) throws IOException
+	{
+		super.writeState(out);
+		out.writeBlob(ownerBlob);
+		out.writeBoolean(inBlob);
+		out.writeBoolean(collected);
+		out.writeInt(powerUpTicks);
+	}
+	
+	@Override
+	void readState(Snapshot.Reader in) throws IOException
+	{
+		super.readState(in);
+		ownerBlob = in.readBlob();
+		inBlob = in.readBoolean();
+		collected = in.readBoolean();
+		powerUpTicks = in.readInt();
+		if(!game.isHeadless() && !isDead())
+			game.addSprite(label = getLabel(), 2);
 	}
 
 	/* (non-Javadoc)
@@ -217,7 +263,8 @@ public class PowerUp extends Particle
 	public void setDead(boolean dead) 
 	{
 		super.setDead(dead);
-		game.view.removeSprite(label, 2);
+		if(label != null)
+			game.removeSprite(label, 2);
 	}
 
 }
@@ -11,9 +11,11 @@ import java.awt.Graphics2D;
  * @author Nick
  *
  */
-public class PowerupLabel extends Label implements Sprite 
+public class PowerupLabel extends Label implements Sprite, SnapshotSprite
 {
 	private PowerUp target;
+	//The radius the font was last sized for
+	private double fontRadius = -1;
 
 	/**
 	 * @param x
@@ -31,12 +33,33 @@ public class PowerupLabel extends Label implements Sprite
 	 */
 	@Override
 	public void draw(Graphics2D graphics, Game game) 
+	{
+		place();
+		super.draw(graphics, game);
+	}
+	
+	/* (non-Javadoc)
+	 * @see oozeWars.SnapshotSprite#snapshot(oozeWars.RenderSnapshot)
+	 */
+	public void snapshot(RenderSnapshot frame)
+	{
+		place();
+		frame.addLabel(text, font, color, x, y);
+	}
+	
+	/*
+	 * Moves the label onto its PowerUp, and sizes the font to it if its size has changed.
+	 */
+	private void place()
 	{
 		double r = target.getRadius();
 		x = (int)( target.getX() - r );
 		y = (int)( target.getY() + r );
-		font = baseFont.deriveFont( (float) (1.25*(r + Particle.BLUR_WIDTH)) );
-		super.draw(graphics, game);
+		if( r != fontRadius )
+		{
+			font = baseFont.deriveFont( (float) (1.25*(r + Particle.BLUR_WIDTH)) );
+			fontRadius = r;
+		}
 	}
 
 }
@@ -0,0 +1,342 @@
+package oozeWars;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <center><b>RENDERSNAPSHOT.JAVA</b></center>
+ * A copy of where every Blob's Particles were at the end of a tick, and the tick before, for
+ * drawing while the simulation thread goes on to the next tick.
+ *
+ * <p>Everything the Swing thread needs is copied: each Particle's size and the color it is drawn
+ *    in, which fades toward its Blob's color once a tick as the snapshot is taken, and whatever
+ *    the health bars, Bullets, Explosions and labels draw.  The Swing thread never reads or
+ *    changes anything the simulation thread is working on.
+ *
+ * <p>Snapshots are handed from the simulation thread to the Swing thread through an Exchange,
+ *    which keeps three of them: one being written, one being drawn, and the newest finished one
+ *    waiting in between.  Neither thread ever waits for the other, and the snapshot being drawn
+ *    is never written to.
+ */
+public class RenderSnapshot
+{
+	//The number of Particles in the snapshot
+	private int size;
+
+	//The System.nanoTime() at which the step the snapshot was taken after was due
+	private long stepTime;
+
+	//Each Particle's half width, where it was at the last two steps, the color it is drawn in, and
+	//whether that color is still fading
+	private int[] halfWidths = new int[256], rgbs = new int[256];
+	private double[] x = new double[256], y = new double[256];
+	private double[] oldX = new double[256], oldY = new double[256];
+	private boolean[] fading = new boolean[256];
+
+	//The health bars, drawn over the Particles: where each one is, its size and its color
+	private int bars;
+	private double[] barX = new double[4], barY = new double[4];
+	private double[] barWidth = new double[4], barHeight = new double[4];
+	private Color[] barColors = new Color[4];
+
+	//The Explosions, drawn over everything else: how each one is placed and how opaque it is
+	private int explosions;
+	private AffineTransform[] transforms = new AffineTransform[0];
+	private float[] alphas = new float[0];
+
+	//The labels, drawn over everything else: each one's text, font, color and where it starts
+	private int labels;
+	private String[] texts = new String[4];
+	private Font[] fonts = new Font[4];
+	private Color[] labelColors = new Color[4];
+	private int[] labelX = new int[4], labelY = new int[4];
+
+	//The rectangle that is filled in for each health bar, reused by the Swing thread
+	private final Rectangle2D.Double rect = new Rectangle2D.Double();
+
+	/**
+	 * Empties the snapshot so it can be written again.
+	 */
+	public void clear()
+	{
+		Arrays.fill(barColors, 0, bars, null);
+		Arrays.fill(texts, 0, labels, null);
+		Arrays.fill(fonts, 0, labels, null);
+		Arrays.fill(labelColors, 0, labels, null);
+		size = bars = explosions = labels = 0;
+	}
+
+	/**
+	 * Records a Particle where it is now, and fades the color it is drawn in a step toward the
+	 * given one.  Only called by the simulation thread.
+	 * @param p
+	 * :  The Particle to record.
+	 * @param color
+	 * :  The color the Particle will be drawn in.
+	 */
+	public void add(Particle p, Color color)
+	{
+		if(size == x.length)
+		{
+			halfWidths = Arrays.copyOf(halfWidths, size * 2);
+			rgbs = Arrays.copyOf(rgbs, size * 2);
+			x = Arrays.copyOf(x, size * 2);
+			y = Arrays.copyOf(y, size * 2);
+			oldX = Arrays.copyOf(oldX, size * 2);
+			oldY = Arrays.copyOf(oldY, size * 2);
+			fading = Arrays.copyOf(fading, size * 2);
+		}
+		int old = p.rgb;
+		rgbs[size] = p.fadeTo(color);
+		fading[size] = rgbs[size] != old;
+		halfWidths[size] = p.halfWidth;
+		x[size] = p.getX();
+		y[size] = p.getY();
+		oldX[size] = p.getOldX();
+		oldY[size] = p.getOldY();
+		size++;
+	}
+
+	/**
+	 * Records a health bar, which is drawn over the Particles at the same scale.
+	 * @param x
+	 * :  The x location of the bar's top left corner.
+	 * @param y
+	 * :  The y location of the bar's top left corner.
+	 * @param width
+	 * :  The width of the filled in part of the bar.
+	 * @param height
+	 * :  The height of the bar.
+	 * @param color
+	 * :  The color of the bar.
+	 */
+	public void addBar(double x, double y, double width, double height, Color color)
+	{
+		if(bars == barX.length)
+		{
+			barX = Arrays.copyOf(barX, bars * 2);
+			barY = Arrays.copyOf(barY, bars * 2);
+			barWidth = Arrays.copyOf(barWidth, bars * 2);
+			barHeight = Arrays.copyOf(barHeight, bars * 2);
+			barColors = Arrays.copyOf(barColors, bars * 2);
+		}
+		barX[bars] = x;
+		barY[bars] = y;
+		barWidth[bars] = width;
+		barHeight[bars] = height;
+		barColors[bars] = color;
+		bars++;
+	}
+
+	/**
+	 * Records an Explosion, which is drawn over everything else.
+	 * @param transform
+	 * :  How the Explosion's star is placed.  It is copied.
+	 * @param alpha
+	 * :  How opaque the star is.
+	 */
+	public void addExplosion(AffineTransform transform, float alpha)
+	{
+		if(explosions == transforms.length)
+		{
+			transforms = Arrays.copyOf(transforms, Math.max(4, explosions * 2));
+			alphas = Arrays.copyOf(alphas, transforms.length);
+			for(int i = explosions; i < transforms.length; i++)
+				transforms[i] = new AffineTransform();
+		}
+		transforms[explosions].setTransform(transform);
+		alphas[explosions] = alpha;
+		explosions++;
+	}
+
+	/**
+	 * Records a line of text, which is drawn over everything else.
+	 * @param text
+	 * :  The text.
+	 * @param font
+	 * :  The font it is drawn in.
+	 * @param color
+	 * :  The color it is drawn in.
+	 * @param x
+	 * :  The x location the text starts at.
+	 * @param y
+	 * :  The y location of the text's baseline.
+	 */
+	public void addLabel(String text, Font font, Color color, int x, int y)
+	{
+		if(labels == texts.length)
+		{
+			texts = Arrays.copyOf(texts, labels * 2);
+			fonts = Arrays.copyOf(fonts, labels * 2);
+			labelColors = Arrays.copyOf(labelColors, labels * 2);
+			labelX = Arrays.copyOf(labelX, labels * 2);
+			labelY = Arrays.copyOf(labelY, labels * 2);
+		}
+		texts[labels] = text;
+		fonts[labels] = font;
+		labelColors[labels] = color;
+		labelX[labels] = x;
+		labelY[labels] = y;
+		labels++;
+	}
+
+	/**
+	 * @return
+	 * The number of Particles in the snapshot.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return
+	 * The System.nanoTime() at which the step the snapshot was taken after was due.
+	 */
+	public long getStepTime()
+	{
+		return stepTime;
+	}
+
+	/**
+	 * @param stepTime
+	 * :  The System.nanoTime() at which the step the snapshot is taken after was due.
+	 */
+	public void setStepTime(long stepTime)
+	{
+		this.stepTime = stepTime;
+	}
+
+	/**
+	 * Draws every Particle in the snapshot between where it was at the last two steps, then the
+	 * health bars over them.
+	 * @param graphics
+	 * :  The graphics the Particles will be drawn on.
+	 * @param scale
+	 * :  The scale the Particles are drawn at.
+	 * @param alpha
+	 * :  How far between the steps to draw the Particles, from 0 (the step before last) to 1
+	 *    (the last step).
+	 */
+	public void draw(Graphics2D graphics, double scale, double alpha)
+	{
+		for(int i = 0; i < size; i++)
+			SpriteCache.draw(graphics, halfWidths[i], rgbs[i], fading[i], scale,
+					oldX[i] + alpha * (x[i] - oldX[i]), oldY[i] + alpha * (y[i] - oldY[i]));
+		drawBars(graphics, scale);
+	}
+
+	/**
+	 * Lays every Particle in the snapshot into a MetaballRenderer's field, between where it was
+	 * at the last two steps, then draws the health bars into the same field.
+	 * @param renderer
+	 * :  The MetaballRenderer the Particles are drawn into.
+	 * @param graphics
+	 * :  The graphics that draw into the renderer's field.
+	 * @param scale
+	 * :  The scale the Particles are drawn at.
+	 * @param alpha
+	 * :  How far between the steps to draw the Particles, from 0 (the step before last) to 1
+	 *    (the last step).
+	 */
+	public void draw(MetaballRenderer renderer, Graphics2D graphics, double scale, double alpha)
+	{
+		for(int i = 0; i < size; i++)
+			renderer.splat(halfWidths[i], rgbs[i], scale,
+					oldX[i] + alpha * (x[i] - oldX[i]), oldY[i] + alpha * (y[i] - oldY[i]));
+		drawBars(graphics, scale);
+	}
+
+	/**
+	 * Draws the Explosions and labels in the snapshot, which go over everything else at full size.
+	 * @param graphics
+	 * :  The graphics they will be drawn on.
+	 */
+	public void drawOverlay(Graphics2D graphics)
+	{
+		for(int i = 0; i < explosions; i++)
+			Explosion.draw(graphics, transforms[i], alphas[i]);
+
+		for(int i = 0; i < labels; i++)
+		{
+			graphics.setPaint(labelColors[i]);
+			graphics.setFont(fonts[i]);
+			graphics.drawString(texts[i], labelX[i], labelY[i]);
+		}
+	}
+
+	/*
+	 * Fills in the health bars at the given scale.
+	 */
+	private void drawBars(Graphics2D graphics, double scale)
+	{
+		for(int i = 0; i < bars; i++)
+		{
+			graphics.setColor(barColors[i]);
+			rect.setRect(barX[i] * scale, barY[i] * scale, barWidth[i] * scale, barHeight[i] * scale);
+			graphics.fill(rect);
+		}
+	}
+
+	/**
+	 * Passes snapshots from the thread that writes them to the thread that draws them.
+	 */
+	public static class Exchange
+	{
+		//The snapshot being written by the simulation thread
+		private RenderSnapshot writing = new RenderSnapshot();
+
+		//The snapshot being drawn by the Swing thread
+		private RenderSnapshot drawing = new RenderSnapshot();
+
+		//The newest finished snapshot, or null if the Swing thread has already taken it
+		private final AtomicReference<RenderSnapshot> ready = new AtomicReference<RenderSnapshot>();
+
+		//A snapshot the Swing thread is done with, handed back for writing
+		private final AtomicReference<RenderSnapshot> spare = new AtomicReference<RenderSnapshot>(new RenderSnapshot());
+
+		/**
+		 * @return
+		 * The snapshot to write the next tick into.  Only called by the simulation thread.
+		 */
+		public RenderSnapshot getWritable()
+		{
+			return writing;
+		}
+
+		/**
+		 * Makes the snapshot that was just written the newest one, and picks another to write
+		 * next.  Only called by the simulation thread.
+		 */
+		public void publish()
+		{
+			RenderSnapshot next = ready.getAndSet(writing);
+			if(next == null)
+				next = spare.getAndSet(null);
+			if(next == null)
+				next = new RenderSnapshot();	// the Swing thread is between taking and handing back
+			writing = next;
+		}
+
+		/**
+		 * @return
+		 * The newest finished snapshot, or the one that was drawn last if nothing newer has been
+		 * published.  Only called by the Swing thread.
+		 */
+		public RenderSnapshot getLatest()
+		{
+			RenderSnapshot newest = ready.getAndSet(null);
+			if(newest != null)
+			{
+				spare.set(drawing);
+				drawing = newest;
+			}
+			return drawing;
+		}
+	}
+}
@@ -0,0 +1,443 @@
+package oozeWars;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <center><b>REPLAY.JAVA</b></center>
+ * A recorded game of OozeWars: the seed its Random started from and what every player's
+ *    controls were on every tick, which is all it takes to play the game out again exactly.
+ *
+ * <p>A Recorder is an Agent that writes the file while a game is played, and a Playback is an
+ *    Agent that sets the players' controls from it while the game is played out again, with or
+ *    without a View.  Both are fired after the Bots and before the ParticleManager, so they see
+ *    the controls the ParticleManager acts on.  The game has to be played out with the same
+ *    settings it was recorded with, such as the number of solver threads, for it to come out
+ *    the same.
+ *
+ * <p>The file starts with a header: MAGIC, VERSION, the seed, the number of players, the size
+ *    of the playing field and whether the game used a TimingWheelSchedule.  Each player's
+ *    controls make up BITS_PER_PLAYER bits of a mask, player 1 in the lowest bits, and the mask
+ *    of each tick is written as runs: the number of ticks in a row that had the same mask, then
+ *    the mask.  A run of 0 ticks ends them, and is followed by the number of ticks, the winner
+ *    and OozeWars.getStateChecksum() at the end of the game, so a Playback can check that it
+ *    came out the same.
+ */
+public class Replay
+{
+	//Marks a replay file, and the version of the format it was written in
+	public static final int MAGIC = 0x4F4F5A52;
+	public static final short VERSION = 1;
+
+	//The bit of each control in a player's part of the mask
+	public static final int UP = 1, DOWN = 2, LEFT = 4, RIGHT = 8, FIRE = 16;
+
+	//The number of bits each player's controls take up in the mask
+	public static final int BITS_PER_PLAYER = 5;
+
+	//The seed the game's Random started from
+	private final long seed;
+
+	//The number of players, and the size of the playing field
+	private final int players, width, height;
+
+	//Whether the game's Schedule was a TimingWheelSchedule
+	private final boolean timingWheel;
+
+	//The number of ticks in each run, and the mask they all had
+	private final int[] runLengths, runMasks;
+
+	//The number of ticks the game lasted, who won it, and OozeWars.getStateChecksum() at the end
+	private final long ticks;
+	private final int winner;
+	private final long checksum;
+
+	/*
+	 * Made by read().
+	 */
+	private Replay(long seed, int players, int width, int height, boolean timingWheel,
+			int[] runLengths, int[] runMasks, long ticks, int winner, long checksum)
+	{
+		this.seed = seed;
+		this.players = players;
+		this.width = width;
+		this.height = height;
+		this.timingWheel = timingWheel;
+		this.runLengths = runLengths;
+		this.runMasks = runMasks;
+		this.ticks = ticks;
+		this.winner = winner;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Reads a replay file.
+	 * @param file
+	 * :  The file, as written by a Recorder.
+	 * @return
+	 * The replay.
+	 * @throws IOException
+	 * If the file can't be read, isn't a replay, or was cut off before the end of the game.
+	 */
+	public static Replay read(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			if(in.readInt() != MAGIC)
+				throw new IOException(file + " is not a replay");
+			short version = in.readShort();
+			if(version != VERSION)
+				throw new IOException(file + " is a version " + version + " replay, not version " + VERSION);
+
+			long seed = in.readLong();
+			int players = in.readByte();
+			int width = in.readInt();
+			int height = in.readInt();
+			boolean timingWheel = in.readBoolean();
+
+			int[] lengths = new int[64], masks = new int[64];
+			int runs = 0;
+			long total = 0;
+			while(true)
+			{
+				int length = in.readInt();
+				if(length == 0)
+					break;
+				if(runs == lengths.length)
+				{
+					lengths = Arrays.copyOf(lengths, runs * 2);
+					masks = Arrays.copyOf(masks, runs * 2);
+				}
+				lengths[runs] = length;
+				masks[runs] = in.readInt();
+				total += length;
+				runs++;
+			}
+
+			long ticks = in.readLong();
+			int winner = in.readInt();
+			long checksum = in.readLong();
+			if(ticks != total)
+				throw new IOException(file + " says it has " + ticks + " ticks but has " + total);
+
+			return new Replay(seed, players, width, height, timingWheel,
+					Arrays.copyOf(lengths, runs), Arrays.copyOf(masks, runs), ticks, winner, checksum);
+		}
+		catch (EOFException e)
+		{
+			throw new IOException(file + " ends before the game does");
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * @return
+	 * The seed the game's Random started from.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * @return
+	 * The number of players.
+	 */
+	public int getPlayers()
+	{
+		return players;
+	}
+
+	/**
+	 * @return
+	 * The width of the playing field.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * @return
+	 * The height of the playing field.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if the game's Schedule was a TimingWheelSchedule.
+	 */
+	public boolean isTimingWheel()
+	{
+		return timingWheel;
+	}
+
+	/**
+	 * @return
+	 * The number of ticks the game lasted.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	/**
+	 * @return
+	 * The player who won, 0 if it was a draw, or -1 if the game was stopped before it ended.
+	 */
+	public int getWinner()
+	{
+		return winner;
+	}
+
+	/**
+	 * @return
+	 * OozeWars.getStateChecksum() at the end of the game.
+	 */
+	public long getChecksum()
+	{
+		return checksum;
+	}
+
+	/**
+	 * @param controls
+	 * :  Every player's controls.
+	 * @return
+	 * The mask of which controls are being pressed.
+	 */
+	public static int getMask(OozeWars.PlayerControls[] controls)
+	{
+		int mask = 0;
+		for(int i = 0; i < controls.length; i++)
+		{
+			OozeWars.PlayerControls pc = controls[i];
+			int bits = (pc.isUp() ? UP : 0) | (pc.isDown() ? DOWN : 0) | (pc.isLeft() ? LEFT : 0)
+				| (pc.isRight() ? RIGHT : 0) | (pc.isFire() ? FIRE : 0);
+			mask |= bits << (i * BITS_PER_PLAYER);
+		}
+		return mask;
+	}
+
+	/**
+	 * Presses and releases every player's controls to match a mask.
+	 * @param mask
+	 * :  The mask of which controls are being pressed.
+	 * @param controls
+	 * :  Every player's controls.
+	 */
+	public static void setControls(int mask, OozeWars.PlayerControls[] controls)
+	{
+		for(int i = 0; i < controls.length; i++)
+		{
+			int bits = mask >>> (i * BITS_PER_PLAYER);
+			OozeWars.PlayerControls pc = controls[i];
+			pc.setUp((bits & UP) != 0);
+			pc.setDown((bits & DOWN) != 0);
+			pc.setLeft((bits & LEFT) != 0);
+			pc.setRight((bits & RIGHT) != 0);
+			pc.setFire((bits & FIRE) != 0);
+		}
+	}
+
+	/**
+	 * Sets the players' controls from the replay, one tick at a time.  Once the replay runs out
+	 * every control is released.
+	 */
+	public class Playback implements Agent
+	{
+		//The run being played, and how many of its ticks have been played
+		private int run, played;
+
+		//The number of ticks played altogether
+		private long tick;
+
+		public void go(Game game, long timestep, int priorityLevel)
+		{
+			OozeWars.PlayerControls[] controls = ((OozeWars)game).getControls();
+			if(run == runLengths.length)
+			{
+				setControls(0, controls);
+				return;
+			}
+
+			setControls(runMasks[run], controls);
+			tick++;
+			if(++played == runLengths[run])
+			{
+				run++;
+				played = 0;
+			}
+		}
+
+		/**
+		 * Skips ahead without setting any controls, for a game restored from a Snapshot partway
+		 * through.
+		 * @param ticks
+		 * :  The number of ticks the game has already played.
+		 */
+		public void seek(long ticks)
+		{
+			while(tick < ticks && run < runLengths.length)
+			{
+				int skipped = (int)Math.min(runLengths[run] - played, ticks - tick);
+				tick += skipped;
+				played += skipped;
+				if(played == runLengths[run])
+				{
+					run++;
+					played = 0;
+				}
+			}
+		}
+
+		/**
+		 * @return
+		 * The number of ticks that have been played back.
+		 */
+		public long getTick()
+		{
+			return tick;
+		}
+
+		/**
+		 * @return
+		 * <b>TRUE</b> once every tick of the replay has been played back.
+		 */
+		public boolean isFinished()
+		{
+			return tick == ticks;
+		}
+	}
+
+	/**
+	 * Writes a replay file of the game being played.
+	 */
+	public static class Recorder implements Agent
+	{
+		//The file being written, or null once it has been closed or has failed
+		private DataOutputStream out;
+
+		//The mask of the run of ticks not yet written, and how many ticks it has
+		private int mask, length;
+
+		//The number of ticks recorded
+		private long ticks;
+
+		/**
+		 * Creates the file and writes its header.  The game's Random has to have just been given
+		 * the seed, so nothing else has drawn from it.
+		 * @param game
+		 * :  The game being recorded.
+		 * @param file
+		 * :  The file to write, replacing it if it is there.
+		 * @param seed
+		 * :  The seed the game's Random was given.
+		 * @param timingWheel
+		 * :  <b>TRUE</b> if the game's Schedule is a TimingWheelSchedule.
+		 * @throws IOException
+		 */
+		public Recorder(OozeWars game, File file, long seed, boolean timingWheel) throws IOException
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(seed);
+			out.writeByte(game.getControls().length);
+			out.writeInt(game.getWidth());
+			out.writeInt(game.getHeight());
+			out.writeBoolean(timingWheel);
+		}
+
+		public void go(Game game, long timestep, int priorityLevel)
+		{
+			if(out == null)
+				return;
+
+			int next = getMask(((OozeWars)game).getControls());
+			if(length > 0 && next != mask)
+			{
+				try
+				{
+					writeRun();
+				}
+				catch (IOException e)
+				{
+					fail(e);
+					return;
+				}
+			}
+			mask = next;
+			length++;
+			ticks++;
+		}
+
+		/**
+		 * @return
+		 * The number of ticks recorded.
+		 */
+		public long getTicks()
+		{
+			return ticks;
+		}
+
+		/**
+		 * Writes the last run of ticks and the end of the game, and closes the file.
+		 * @param winner
+		 * :  The player who won, 0 if it was a draw, or -1 if the game was stopped before it ended.
+		 * @param checksum
+		 * :  OozeWars.getStateChecksum() at the end of the game.
+		 */
+		public void close(int winner, long checksum)
+		{
+			if(out == null)
+				return;
+			try
+			{
+				if(length > 0)
+					writeRun();
+				out.writeInt(0);
+				out.writeLong(ticks);
+				out.writeInt(winner);
+				out.writeLong(checksum);
+				out.close();
+				out = null;
+			}
+			catch (IOException e) {fail(e);}
+		}
+
+		/*
+		 * Writes the run of ticks that have had the same mask.
+		 */
+		private void writeRun() throws IOException
+		{
+			out.writeInt(length);
+			out.writeInt(mask);
+			length = 0;
+		}
+
+		/*
+		 * Gives up on the file after it couldn't be written.
+		 */
+		private void fail(IOException e)
+		{
+			System.out.println("Could not write the replay: " + e);
+			try { out.close(); } catch (IOException e2) { /* oh well */ }
+			out = null;
+		}
+	}
+}
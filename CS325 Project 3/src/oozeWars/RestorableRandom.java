@@ -0,0 +1,112 @@
+package oozeWars;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * <center><b>RESTORABLERANDOM.JAVA</b></center>
+ * A Random whose state can be written out and read back in, so a saved game draws the same
+ *    numbers after it is restored as it would have if it had carried on.
+ *
+ * <p>java.util.Random keeps its seed to itself, so this runs the very same linear
+ *    congruential generator on a seed of its own.  Given the same seed it gives exactly the
+ *    same numbers as a java.util.Random, from every method.
+ */
+public class RestorableRandom extends Random
+{
+	private static final long serialVersionUID = 1L;
+
+	//The constants of java.util.Random's generator
+	private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+
+	//The generator's 48 bits of state.  Not given initial values here, since Random's constructor
+	//sets them through setSeed() before this class's initializers would run
+	private long seed;
+
+	//The second of the pair of numbers nextGaussian() makes, while it is waiting to be given out
+	private double nextNextGaussian;
+	private boolean haveNextNextGaussian;
+
+	/**
+	 * Creates a generator with a seed that is very likely different from any other's.
+	 */
+	public RestorableRandom()
+	{
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Creates a generator with the given seed.
+	 * @param seed
+	 * :  The seed, as it would be given to java.util.Random.
+	 */
+	public RestorableRandom(long seed)
+	{
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed)
+	{
+		this.seed = (seed ^ MULTIPLIER) & MASK;
+		haveNextNextGaussian = false;
+	}
+
+	@Override
+	protected synchronized int next(int bits)
+	{
+		seed = (seed * MULTIPLIER + ADDEND) & MASK;
+		return (int)(seed >>> (48 - bits));
+	}
+
+	@Override
+	public synchronized double nextGaussian()
+	{
+		if(haveNextNextGaussian)
+		{
+			haveNextNextGaussian = false;
+			return nextNextGaussian;
+		}
+
+		double v1, v2, s;
+		do
+		{
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while(s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		nextNextGaussian = v2 * multiplier;
+		haveNextNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+	/**
+	 * Writes the generator's state.
+	 * @param out
+	 * :  Where to write it.
+	 * @throws IOException
+	 */
+	public synchronized void writeState(DataOutput out) throws IOException
+	{
+		out.writeLong(seed);
+		out.writeBoolean(haveNextNextGaussian);
+		out.writeDouble(nextNextGaussian);
+	}
+
+	/**
+	 * Puts the generator back in a state written by writeState(), so it goes on to draw the
+	 * same numbers the generator that wrote it went on to draw.
+	 * @param in
+	 * :  Where to read the state from.
+	 * @throws IOException
+	 */
+	public synchronized void readState(DataInput in) throws IOException
+	{
+		seed = in.readLong() & MASK;
+		haveNextNextGaussian = in.readBoolean();
+		nextNextGaussian = in.readDouble();
+	}
+}
@@ -22,12 +22,32 @@
 	method.  Last, you often want to register an Agent to be fired at the very next timestep.  For that, you can use
 	the simplest schedule(...) method.
 		
-	<p>In the huge majority of cases a given Agent is registered to be fired each and every timestep.  To do this you
-	register the Agent, then in the Agent's go() method have the Agent register himself <i>again</i> for another
-	timestep in the near future.
+	<p>Every registering method returns a <i>Handle</i>.  Calling cancel() on the Handle unregisters the Agent, so it
+	will not be fired.  Cancelled Agents are not dug out of the queue right away: they are left in place as
+	tombstones and skipped when their time comes, and once tombstones make up half of a priority level's queue the
+	queue is compacted to get rid of them.  Since a Handle may be kept around after its Agent fires, each one-shot
+	registration creates a small Handle; repeating registrations create nothing after the first.
+	
+	<p>In the huge majority of cases a given Agent is registered to be fired each and every timestep.  One way to do
+	this is to register the Agent, then in the Agent's go() method have the Agent register himself <i>again</i> for
+	another timestep in the near future.  The better way is to register the Agent once with <tt>scheduleRepeating(<i>interval</i>, <i>prioritylevel</i>, <i>Agent</i>)</tt>,
+	which fires it every <i>interval</i> timesteps until the returned Handle is cancelled.  Repeating Agents are kept
+	in a plain array per priority level rather than in the queue, so firing them is just a loop.  In each timestep
+	the repeating Agents of a priority level are fired before the other Agents of that level.
+	
+	<p>For tracking down garbage, the Schedule can also measure how many bytes the thread stepping it allocates
+	during each step: see setMeasuringAllocations(...).  For finding out which Agents a slow step is spent in, it
+	can time every Agent it fires and add the times up by the Agent's class: see setProfiling(...) and AgentProfiler.
+	For saving a game, getHandles() lists every registered
+	Agent in an order that can be registered again to rebuild the Schedule exactly.
+	
+	<p>Schedule keeps its other Agents in one binary heap per priority level.  Subclasses can store them differently
+	by overriding insert(...), advance(...), fire(...), collect(...) and clear(); see TimingWheelSchedule.  Their
+	fire(...) has to fire each Agent through go(...), so the Agents can be profiled.
 */
 
 package oozeWars;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 @SuppressWarnings({"unchecked"})		// Java's generics handling of arrays is absolutely abysmal.  I chose to ignore it entirely.
@@ -38,16 +58,35 @@ public class Schedule
 	
 	// private members
 	private long ticks = EPOCH - 1;				// the current time in the game.  Initially "before the game starts" (EPOCH - 1)
+	private final int priorityLevels;			// the number of priority levels
 	private PriorityQueue[] priorityQueues;		// an array of PriorityQueues, one per priority level.  Each heap stores Agents keyed with timesteps to fire them.
+	private com.sun.management.ThreadMXBean threadBean;	// used to measure allocations, or null if they are not being measured
+	private long lastStepAllocatedBytes = -1;	// the bytes allocated by the last step, or -1 if unknown
+	private Repeater[][] repeaters;				// the repeating Agents of each priority level, in the order they were registered
+	private int[] repeaterCounts;				// the number of repeating Agents of each priority level
+	private boolean[] repeatersCancelled;		// whether a repeating Agent of each priority level has been cancelled since it was last compacted
+	private int clears = 0;						// the number of times clear() has been called
+	private int[] tombstones;					// the number of cancelled Agents still in each priority level's queue
+	private final AgentProfiler profiler;		// times the Agents fired, when it is enabled
+	
+	/** The fewest tombstones a priority level's queue must hold before it is compacted. */
+	protected static final int MIN_TOMBSTONES_TO_COMPACT = 32;
 	
 	/** Creates a Schedule from the given Game and priority level.  Typicaly this method is called from the Game constructor itself,
 		and you'd not call it. */
 	public Schedule(int priorityLevels)
 	{
+		this.priorityLevels = priorityLevels;
 		priorityQueues = new PriorityQueue[priorityLevels];
 
 		for(int i = 0; i < priorityLevels; i++)
 			priorityQueues[i] = new PriorityQueue();
+		
+		repeaters = new Repeater[priorityLevels][16];
+		repeaterCounts = new int[priorityLevels];
+		repeatersCancelled = new boolean[priorityLevels];
+		tombstones = new int[priorityLevels];
+		profiler = new AgentProfiler(priorityLevels);
 	}
 	
 	/** Returns the current time in the game. */
@@ -55,6 +94,12 @@ public class Schedule
 	{ 
 		return ticks;
 	}
+	
+	/** Returns the number of priority levels. */
+	public int getPriorityLevels()
+	{
+		return priorityLevels;
+	}
 
 	/** Steps the schedule.  This causes the schedule to increment the ticks, then check to see if any
 		agents are registered to be called at this new time.  If so, they're called in priority order as
@@ -65,47 +110,238 @@ public class Schedule
     		return;
 		// 1. Increment the ticks.
     	ticks++;
-		// 2. For each priority queue...
-    	for(int i = 0; i < priorityQueues.length; i++)
+    	long startBytes = threadBean == null ? 0 : threadBean.getCurrentThreadAllocatedBytes();
+    	advance(ticks);
+    	int clearsBefore = clears;
+    	// 2. For each priority level, fire the repeating Agents and then the Agents registered for this new time.
+    	//    If an Agent clears the Schedule, nothing else is fired.
+    	for(int i = 0; i < priorityLevels && clears == clearsBefore; i++)
+    	{
+    		fireRepeating(game, ticks, i);
+    		if(clears == clearsBefore)
+    			fire(game, ticks, i);
+    	}
+    	if(threadBean != null)
+    		lastStepAllocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+	}
+    
+    /** Called by step() once the ticks have been incremented, before any Agent is fired.  Schedule has nothing to
+    	do here; subclasses that need to move their Agents along as time passes can override it. */
+    protected void advance(long ticks)
+    {
+    }
+    
+    /** Calls go() on every non-repeating Agent registered for the given time and priority level, and removes them
+    	from the Schedule.  Should stop if an Agent clears the Schedule. */
+    protected void fire(final Game game, long ticks, int priorityLevel)
+    {
+		// For each Agent in the queue whose timestamp is NOW,
+		while(priorityQueues[priorityLevel].peek() != null && ((QueueElement) (priorityQueues[priorityLevel].peek())).getTimestamp() == ticks)
+		{
+			// Remove the Agent from the queue and call go() on the Agent, unless it was cancelled
+			QueueElement qe = (QueueElement) priorityQueues[priorityLevel].poll();
+			if(qe.cancelled)
+			{
+				discarded(priorityLevel);
+				continue;
+			}
+			qe.schedule = null;
+			go(qe.agent, game, ticks, priorityLevel);
+		}
+	}
+    
+    /* Calls go() on every repeating Agent of the given priority level that is due, then drops any that have been
+       cancelled from the array. */
+    private void fireRepeating(final Game game, long ticks, int priorityLevel)
+    {
+    	int clearsBefore = clears;
+    	
+    	// Agents registered during the loop are added to the end, but are never due until a later tick
+    	for(int k = 0; k < repeaterCounts[priorityLevel]; k++)
     	{
-    		// 3. For each Agent in the queue whose timestamp is NOW,
-    		while(priorityQueues[i].peek() != null && ((QueueElement) (priorityQueues[i].peek())).getTimestamp() == ticks)
+    		Repeater r = repeaters[priorityLevel][k];
+    		if(r.cancelled || r.timestep != ticks)
+    			continue;
+    		
+    		r.timestep += r.interval;
+    		go(r.agent, game, ticks, priorityLevel);
+    		if(clears != clearsBefore)
+    			return;
+    	}
+    	
+    	if(repeatersCancelled[priorityLevel])
+    	{
+    		Repeater[] list = repeaters[priorityLevel];
+    		int count = 0;
+    		for(int k = 0; k < repeaterCounts[priorityLevel]; k++)
     		{
-    			// 4. Remove the Agent from the queue and call go() on the Agent
-    			((QueueElement) priorityQueues[i].poll()).getAgent().go(game, ticks, i);
+    			if(!list[k].cancelled)
+    				list[count++] = list[k];
     		}
+    		Arrays.fill(list, count, repeaterCounts[priorityLevel], null);
+    		repeaterCounts[priorityLevel] = count;
+    		repeatersCancelled[priorityLevel] = false;
+    	}
+    }
+    
+    /** Calls go() on an Agent, timing it if the Schedule is being profiled.  Every Agent the Schedule fires is
+    	fired through here. */
+    protected final void go(Agent agent, final Game game, long ticks, int priorityLevel)
+    {
+    	if(profiler.isEnabled())
+    		profiler.fire(agent, game, ticks, priorityLevel);
+    	else
+    		agent.go(game, ticks, priorityLevel);
+    }
+    
+    /** Returns the number of Agents, including tombstones, in the queue of the given priority level.  Used to
+    	decide when the queue is worth compacting. */
+    protected int size(int priorityLevel)
+    {
+    	return priorityQueues[priorityLevel].size();
+    }
+    
+    /** Removes every cancelled Agent from the queue of the given priority level, and returns how many were
+    	removed. */
+    protected int compact(int priorityLevel)
+    {
+    	int before = priorityQueues[priorityLevel].size();
+    	priorityQueues[priorityLevel].removeIf(qe -> ((QueueElement) qe).cancelled);
+    	return before - priorityQueues[priorityLevel].size();
+    }
+    
+    /** Called by fire(...) whenever it takes a cancelled Agent out of the queue instead of firing it. */
+    protected void discarded(int priorityLevel)
+    {
+    	tombstones[priorityLevel]--;
+    }
+    
+    /* Called when a Handle is cancelled.  Repeating Agents are dropped after their next loop; other Agents become
+       tombstones, and the queue is compacted once there are enough of them. */
+    void cancelled(Handle handle)
+    {
+    	int level = handle.priorityLevel;
+    	if(handle instanceof Repeater)
+    	{
+    		repeatersCancelled[level] = true;
+    		return;
     	}
+    	
+    	tombstones[level]++;
+    	if(tombstones[level] >= MIN_TOMBSTONES_TO_COMPACT && tombstones[level] * 2 >= size(level))
+    		tombstones[level] -= compact(level);
+    }
+    
+    /** Returns the number of times the Schedule has been cleared, so that subclasses can tell when an Agent has
+    	cleared it in the middle of fire(...). */
+    protected int getClears()
+    {
+    	return clears;
+    }
+	
+	/** Turns on or off measuring how many bytes are allocated by the thread stepping the Schedule during each
+		step.  Measuring is only possible on JVMs that support it; elsewhere this quietly does nothing. */
+	public void setMeasuringAllocations(boolean measure)
+	{
+		threadBean = null;
+		lastStepAllocatedBytes = -1;
+		if(!measure)
+			return;
+		
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if(sunBean.isThreadAllocatedMemorySupported())
+			{
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+				threadBean = sunBean;
+			}
+		}
+	}
+	
+	/** Turns on or off timing every Agent fired, by class and priority level.  What has been measured is kept
+		until the AgentProfiler is reset. */
+	public void setProfiling(boolean profile)
+	{
+		profiler.setEnabled(profile);
+	}
+	
+	/** Returns true if every Agent fired is being timed. */
+	public boolean isProfiling()
+	{
+		return profiler.isEnabled();
+	}
+	
+	/** Returns the AgentProfiler that times the Agents, which can be read, reset or registered with JMX whether or
+		not profiling is turned on. */
+	public AgentProfiler getProfiler()
+	{
+		return profiler;
+	}
+	
+	/** Returns true if the bytes allocated during each step are being measured. */
+	public boolean isMeasuringAllocations()
+	{
+		return threadBean != null;
+	}
+	
+	/** Returns the number of bytes allocated by all of the Agents fired during the last step, or -1 if
+		allocations are not being measured. */
+	public long getLastStepAllocatedBytes()
+	{
+		return lastStepAllocatedBytes;
 	}
 		
-	/** Clears out the entire Schedule, removing all Agents registered with it. */
+	/** Clears out the entire Schedule, removing all Agents registered with it.  Their Handles all become cancelled. */
 	public void clear()
 	{
 		for(PriorityQueue q: priorityQueues)
+		{
+			for(Object qe : q)
+				((Handle) qe).expire();
 			q.clear();
+		}
 		
+		for(int i = 0; i < priorityLevels; i++)
+		{
+			for(int k = 0; k < repeaterCounts[i]; k++)
+			{
+				repeaters[i][k].expire();
+				repeaters[i][k] = null;
+			}
+			repeaterCounts[i] = 0;
+			repeatersCancelled[i] = false;
+			tombstones[i] = 0;
+		}
+		
+		clears++;
 		ticks = EPOCH - 1;
 	}
 
-	/** Schedules an Agent to be fired at the very next timestep, with the given priority level. */
-	public void schedule(int priorityLevel, Agent agent) throws RuntimeException
+	/** Schedules an Agent to be fired at the very next timestep, with the given priority level.  Returns a
+		Handle that unregisters the Agent when it is cancelled. */
+	public Handle schedule(int priorityLevel, Agent agent) throws RuntimeException
 	{
-		scheduleIn(1L, priorityLevel, agent);
+		return scheduleIn(1L, priorityLevel, agent);
 	}
 
-	/** Schedules an Agent to be fired in <i>interval</i> ticks from now, with the given priority level. */
-	public void scheduleIn(long interval, int priorityLevel, Agent agent) throws RuntimeException
+	/** Schedules an Agent to be fired in <i>interval</i> ticks from now, with the given priority level.  Returns
+		a Handle that unregisters the Agent when it is cancelled. */
+	public Handle scheduleIn(long interval, int priorityLevel, Agent agent) throws RuntimeException
 	{
-		schedule(ticks+interval, priorityLevel, agent);
+		return schedule(ticks+interval, priorityLevel, agent);
 	}
 				
 	/** Schedules an Agent to be fired at the specified timestep, with the given priority level.  The
-		provided timestep must be greater than the current ticks.  */
-	public void schedule(long timestep, int priorityLevel, Agent agent) throws RuntimeException
+		provided timestep must be greater than the current ticks.  Returns a Handle that unregisters the
+		Agent when it is cancelled. */
+	public Handle schedule(long timestep, int priorityLevel, Agent agent) throws RuntimeException
 	{
 		// Create a QueueElement for the given timestep and agent and schedule it in the appropriate
 		// PriorityQueue.  There are several things you need to check for and throw an error for:
 		// - is the priority level valid?
-		if( priorityLevel < 0 || priorityLevel >= priorityQueues.length)
+		if( priorityLevel < 0 || priorityLevel >= priorityLevels)
 			throw new RuntimeException("Invalid priorityLevel");
 		// - is the timestep greater than the current ticks?
 		if(timestep <= ticks)
@@ -114,46 +350,221 @@ public class Schedule
 		if(agent == null)
 			throw new RuntimeException("Invalid agent");
 		
-		priorityQueues[priorityLevel].add( new QueueElement(agent, timestep) );
+		return insert(timestep, priorityLevel, agent);
+	}
+	
+	/** Schedules an Agent to be fired every <i>interval</i> ticks, with the given priority level, starting
+		<i>interval</i> ticks from now.  The Agent should not reschedule itself.  Returns a Handle that stops
+		the Agent from being fired again when it is cancelled. */
+	public Handle scheduleRepeating(long interval, int priorityLevel, Agent agent) throws RuntimeException
+	{
+		if( priorityLevel < 0 || priorityLevel >= priorityLevels)
+			throw new RuntimeException("Invalid priorityLevel");
+		if(interval < 1)
+			throw new RuntimeException("Invalid interval");
+		if(agent == null)
+			throw new RuntimeException("Invalid agent");
+		
+		Repeater r = new Repeater(this, agent, ticks + interval, interval, priorityLevel);
+		int count = repeaterCounts[priorityLevel];
+		if(count == repeaters[priorityLevel].length)
+			repeaters[priorityLevel] = Arrays.copyOf(repeaters[priorityLevel], count * 2);
+		repeaters[priorityLevel][count] = r;
+		repeaterCounts[priorityLevel] = count + 1;
+		return r;
+	}
+	
+	/** Returns the Handle of every Agent registered with the Schedule, including the cancelled Agents still
+		waiting in a queue as tombstones.  The repeating Agents of each priority level come first, in the order they
+		fire, followed by the other Agents of each level in the order they are stored.  Registering them again in
+		this order with an empty Schedule of the same kind, moved to the same time with setTicks(...), stores every
+		Agent exactly where it was, so Agents with the same timestep still fire in the same order. */
+	public ArrayList<Handle> getHandles()
+	{
+		ArrayList<Handle> handles = new ArrayList<Handle>();
+		for(int i = 0; i < priorityLevels; i++)
+		{
+			for(int k = 0; k < repeaterCounts[i]; k++)
+			{
+				if(!repeaters[i][k].cancelled)
+					handles.add(repeaters[i][k]);
+			}
+		}
+		for(int i = 0; i < priorityLevels; i++)
+			collect(i, handles);
+		return handles;
+	}
+	
+	/** Adds the Handle of every non-repeating Agent of the given priority level, tombstones included, to the list,
+		in the order they are stored.  For the heap that's the order of its array, which inserting them again in
+		turn builds back up unchanged. */
+	protected void collect(int priorityLevel, List<Handle> handles)
+	{
+		for(Object qe : priorityQueues[priorityLevel].toArray())
+			handles.add((Handle) qe);
+	}
+	
+	/** Moves an empty Schedule to the given time, so a saved game can be picked up where it left off.  Throws a
+		RuntimeException if any Agent is registered. */
+	public void setTicks(long ticks) throws RuntimeException
+	{
+		for(int i = 0; i < priorityLevels; i++)
+		{
+			if(repeaterCounts[i] > 0 || size(i) > 0)
+				throw new RuntimeException("Schedule is not empty");
+		}
+		this.ticks = ticks;
+	}
+	
+	/** Puts back a tombstone at the given timestep and priority level, as returned by getHandles(), so the queue
+		fills up and is compacted just as it would have been.  The timestep must be greater than the current
+		ticks. */
+	public void scheduleTombstone(long timestep, int priorityLevel) throws RuntimeException
+	{
+		if( priorityLevel < 0 || priorityLevel >= priorityLevels)
+			throw new RuntimeException("Invalid priorityLevel");
+		if(timestep <= ticks)
+			throw new RuntimeException("Invalid timeStep");
+		
+		insert(timestep, priorityLevel, TOMBSTONE).expire();
+		tombstones[priorityLevel]++;
+	}
+	
+	/* The Agent of every tombstone put back by scheduleTombstone(...).  It is never fired. */
+	private static final Agent TOMBSTONE = new Agent()
+	{
+		public void go(Game game, long timestep, int priorityLevel) { }
+	};
+	
+	/** Stores an Agent to be fired at the given timestep and priority level, and returns its Handle.  The
+		arguments have already been checked by schedule(...). */
+	protected Handle insert(long timestep, int priorityLevel, Agent agent)
+	{
+		QueueElement qe = new QueueElement(this, agent, timestep, priorityLevel);
+		priorityQueues[priorityLevel].add( qe );
+		return qe;
 	}
 
 
 
-	/** The QueueElement is what's actually stored in the Schedule's PriorityQueue.
-		It holds an AGENT and a TIMESTAMP, and sorts itself in the PriorityQueue
-		lowest timestamp first. */
-		
-	protected static class QueueElement implements Comparable
+	/** A Handle is returned whenever an Agent is registered.  Cancelling it unregisters the Agent.  Handles are
+		subclassed by each kind of Schedule to hold whatever it needs to store the Agent. */
+	public static class Handle
 	{
-		long timestamp;
+		Schedule schedule;		// the Schedule the Agent is registered with, or null once it has fired or been cancelled
 		Agent agent;
+		long timestep;			// the timestep the Agent will be fired at next
+		int priorityLevel;
+		boolean cancelled = false;
 		
-		public long getTimestamp() 
+		protected Handle(Schedule schedule, Agent agent, long timestep, int priorityLevel)
+		{
+			this.schedule = schedule;
+			this.agent = agent;
+			this.timestep = timestep;
+			this.priorityLevel = priorityLevel;
+		}
+		
+		/** Unregisters the Agent so that it will not be fired (again).  Does nothing if the Agent has already
+			fired, or the Handle has already been cancelled. */
+		public void cancel()
 		{
-			return timestamp;
+			if(schedule == null)
+				return;
+			Schedule s = schedule;
+			expire();
+			s.cancelled(this);
 		}
+		
+		/** Returns true if the Handle was cancelled, or the Schedule it belongs to was cleared, before the Agent
+			was done firing. */
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+		
+		/** Returns true if the Agent is still registered to be fired. */
+		public boolean isPending()
+		{
+			return schedule != null;
+		}
+		
+		/** Returns the registered Agent. */
 		public Agent getAgent() 
 		{ 
 			return agent; 
 		}
+		
+		/** Returns the timestep the Agent will be fired at next. */
+		public long getTimestamp() 
+		{
+			return timestep;
+		}
+		
+		/** Returns the priority level the Agent is fired at. */
+		public int getPriorityLevel()
+		{
+			return priorityLevel;
+		}
+		
+		/** Returns how many ticks apart a repeating Agent is fired, or 0 if the Agent is fired just once. */
+		public long getInterval()
+		{
+			return 0;
+		}
+		
+		/* Marks the Handle as cancelled without telling its Schedule, for when the Schedule is already getting
+		   rid of it. */
+		void expire()
+		{
+			schedule = null;
+			cancelled = true;
+		}
+	}
+	
+	/** A Repeater is the Handle of a repeating Agent, and is what's actually stored in the repeating Agent
+		arrays.  It also holds how many ticks apart the Agent fires. */
+	static class Repeater extends Handle
+	{
+		long interval;
+		
+		Repeater(Schedule schedule, Agent agent, long timestep, long interval, int priorityLevel)
+		{
+			super(schedule, agent, timestep, priorityLevel);
+			this.interval = interval;
+		}
+		
+		public long getInterval()
+		{
+			return interval;
+		}
+		
 		public String toString() 
 		{ 
-			return "QE[" + timestamp + ", " + agent + "]"; 
+			return "Repeater[" + timestep + ", every " + interval + ", " + agent + "]"; 
+		}
+	}
+	
+	/** The QueueElement is what's actually stored in the Schedule's PriorityQueue.
+		It is the Handle of an AGENT registered for a TIMESTAMP, and sorts itself in the PriorityQueue
+		lowest timestamp first. */
+		
+	protected static class QueueElement extends Handle implements Comparable
+	{
+		public String toString() 
+		{ 
+			return "QE[" + timestep + ", " + agent + "]"; 
 		}
 
-		public QueueElement(Agent agent, long timestamp)
+		public QueueElement(Schedule schedule, Agent agent, long timestamp, int priorityLevel)
 		{
-			this.timestamp = timestamp;
-			this.agent = agent;
+			super(schedule, agent, timestamp, priorityLevel);
 		}
 		
 		public int compareTo(Object other)
 		{
 			QueueElement qe = (QueueElement) other;
-			return (qe.timestamp == timestamp ? 0 : (qe.timestamp < timestamp ? 1 : -1));
+			return (qe.timestep == timestep ? 0 : (qe.timestep < timestep ? 1 : -1));
 		}
 	}
 }
-
-
-
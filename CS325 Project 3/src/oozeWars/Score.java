@@ -13,10 +13,12 @@ import java.io.File;
  * @author Nick
  *
  */
-public class Score extends Label
+public class Score extends Label implements SnapshotSprite
 {
 	static final float  FONT_SIZE = 40;
 	long score;
+	//The score the text was last made for
+	private long textScore;
 	
 	public Score( int x, int y, Color color, long score )
 	{
@@ -35,6 +37,20 @@ public class Score extends Label
 		super.draw(graphics, game);
 	}
 
+	/* (non-Javadoc)
+	 * @see oozeWars.SnapshotSprite#snapshot(oozeWars.RenderSnapshot)
+	 */
+	public void snapshot(RenderSnapshot frame)
+	{
+		// the text is only made again when the score changes
+		if( text == null || textScore != score )
+		{
+			text = Long.toString(score);
+			textScore = score;
+		}
+		frame.addLabel(text, font, color, x, y);
+	}
+
 	public void setScore( long s )
 	{
 		score = s;
@@ -0,0 +1,157 @@
+package oozeWars;
+
+import java.util.Random;
+
+/**
+ * <center><b>SIMPLEBOT.JAVA</b></center>
+ * A Bot that chases the other players' Heads while its Blob is at least as big as theirs, and
+ *    goes after the nearest neutral Particle otherwise.  It fires whenever it can and an enemy
+ *    Head is close enough.
+ *
+ * <p>It decides when to fire with its own Random rather than the game's, so a game played
+ *    by SimpleBots with seeded Randoms always plays out the same way, and a replay of it plays
+ *    out the same way without them.
+ */
+public class SimpleBot implements Bot
+{
+	//How far off the target can be in either direction before the Bot steers towards it
+	private static final double DEADZONE = 10;
+	
+	//How close an enemy Head has to be before the Bot fires at it
+	private double range;
+	
+	//The chance of firing on any tick an enemy is in range and the Blob is ready to fire
+	private double trigger;
+	
+	//Decides whether to fire
+	private final Random random;
+	
+	/**
+	 * Creates a SimpleBot that fires at enemies within 250 pixels, a quarter of the time it can.
+	 */
+	public SimpleBot()
+	{
+		this(250, .25);
+	}
+	
+	/**
+	 * Creates a SimpleBot that fires at enemies within 250 pixels, a quarter of the time it can.
+	 * @param seed
+	 * :  The seed of the Random that decides when it fires.
+	 */
+	public SimpleBot(long seed)
+	{
+		this(250, .25, seed);
+	}
+	
+	/**
+	 * Creates a SimpleBot.
+	 * @param range
+	 * :  How close an enemy Head has to be before the Bot fires at it.
+	 * @param trigger
+	 * :  The chance of firing on any tick an enemy is in range and the Blob is ready to fire.
+	 */
+	public SimpleBot(double range, double trigger)
+	{
+		this(range, trigger, new Random());
+	}
+	
+	/**
+	 * Creates a SimpleBot.
+	 * @param range
+	 * :  How close an enemy Head has to be before the Bot fires at it.
+	 * @param trigger
+	 * :  The chance of firing on any tick an enemy is in range and the Blob is ready to fire.
+	 * @param seed
+	 * :  The seed of the Random that decides when it fires.
+	 */
+	public SimpleBot(double range, double trigger, long seed)
+	{
+		this(range, trigger, new Random(seed));
+	}
+	
+	/*
+	 * Creates a SimpleBot that decides when to fire with the given Random.
+	 */
+	private SimpleBot(double range, double trigger, Random random)
+	{
+		this.range = range;
+		this.trigger = trigger;
+		this.random = random;
+	}
+	
+	/* (non-Javadoc)
+	 * @see oozeWars.Bot#control(oozeWars.OozeWars, oozeWars.Blob, oozeWars.OozeWars.PlayerControls)
+	 */
+	public void control(OozeWars game, Blob blob, OozeWars.PlayerControls controls)
+	{
+		Head head = blob.getHead();
+		double x = head.getX(), y = head.getY();
+		
+		//Find the closest enemy Head, and the closest neutral Particle
+		Blob enemy = null;
+		Particle neutral = null;
+		double enemyDist = Double.MAX_VALUE, neutralDist = Double.MAX_VALUE;
+		for(Blob other : game.getBlobs())
+		{
+			if(other == blob)
+				continue;
+			if(other.getBlobID() == 0)
+			{
+				for(Particle p : other.getParticles())
+				{
+					double d = distanceSq(x, y, p);
+					if(!p.isDead() && d < neutralDist)
+					{
+						neutral = p;
+						neutralDist = d;
+					}
+				}
+			}
+			else
+			{
+				double d = distanceSq(x, y, other.getHead());
+				if(d < enemyDist)
+				{
+					enemy = other;
+					enemyDist = d;
+				}
+			}
+		}
+		
+		Particle target = null;
+		if(enemy != null && (neutral == null || blob.getParticles().size() >= enemy.getParticles().size()))
+			target = enemy.getHead();
+		else
+			target = neutral;
+		
+		if(target == null)
+		{
+			controls.setUp(false);
+			controls.setDown(false);
+			controls.setLeft(false);
+			controls.setRight(false);
+		}
+		else
+		{
+			double dx = target.getX() - x, dy = target.getY() - y;
+			controls.setLeft(dx < -DEADZONE);
+			controls.setRight(dx > DEADZONE);
+			controls.setUp(dy < -DEADZONE);
+			controls.setDown(dy > DEADZONE);
+		}
+		
+		//Bullets go the way the Head is moving, which is towards the target
+		controls.setFire(enemy != null && enemyDist < range * range && blob.isFireReady()
+				&& random.nextDouble() < trigger);
+	}
+	
+	/*
+	 * The squared distance from a point to a Particle.
+	 */
+	private static double distanceSq(double x, double y, Particle p)
+	{
+		double dx = p.getX() - x, dy = p.getY() - y;
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,675 @@
+package oozeWars;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * <center><b>SNAPSHOT.JAVA</b></center>
+ * A game of OozeWars saved partway through: every Particle, every Blob, every Agent waiting on
+ *    the Schedule and the state of the game's Random, which is all it takes to pick the game up
+ *    again where it was.  A crowded late game can be saved once and then restored in an instant
+ *    as often as it is needed, for instance to profile it.
+ *
+ * <p>take() saves a running game in memory, write() puts it in a file and read() gets it back.
+ *    A game given a snapshot with OozeWars.setSnapshot() is restored from it every time it
+ *    starts.  Restoring doesn't save the players: the Bots or the replay set for the restored game
+ *    take over the controls where the saved game's were set, starting from the controls that were
+ *    pressed.  SimpleBots draw from Randoms of their own, which aren't saved, so a game played by
+ *    Bots only carries on exactly as it would have when it is played back from a replay.
+ *
+ * <p>The order of the ParticleManager's SpatialHash and cached neighbor pairs decides the order
+ *    forces are applied in, so they are saved as they are, and taking a snapshot leaves the game
+ *    it is taken from alone.  The restored game carries on exactly like the saved one as long as
+ *    the two have the same kind of Schedule and the same settings, such as the number of solver
+ *    threads.
+ *
+ * <p>The file starts with a header: MAGIC, VERSION, the tick, the number of players and how
+ *    many are still in the game, the size of the playing field, the most Particles allowed,
+ *    whether the Schedule is a TimingWheelSchedule, the Random's state and the mask of the
+ *    controls being pressed.  Then the ID of each Blob, so the rest can refer to a Blob by its
+ *    place in the list; every Particle, those in the ParticleStore first and in the same order,
+ *    so the rest can refer to a Particle by its place; the rest of each Blob's state; the
+ *    SpatialHash and the cached neighbor pairs; and the Agents, in the order
+ *    Schedule.getHandles() gives them, each with its kind, priority level, timestep, interval,
+ *    the Blob it acts on, and whatever else its kind needs.
+ */
+public class Snapshot
+{
+	//Marks a snapshot file, and the version of the format it was written in
+	public static final int MAGIC = 0x4F4F5A53;
+	public static final short VERSION = 2;
+
+	//What kind of Particle each one is
+	private static final byte PLAIN = 0, HEAD = 1, BULLET = 2, POWERUP = 3;
+
+	//What kind of Agent each registered one is
+	private static final byte TOMBSTONE = 0, CONTROLS = 1, MANAGER = 2, HEALTH_BAR = 3, FIRED_BULLET = 4,
+			EXPLOSION = 5, GUN_ENABLER = 6, POWERUP_REMOVER = 7, POWERUP_EFFECT = 8;
+
+	//The whole snapshot, as it is written to a file
+	private final byte[] data;
+
+	//The tick the game was saved after
+	private final long ticks;
+
+	//The number of players, and the size of the playing field
+	private final int players, width, height;
+
+	//The most Particles the game lets in at once
+	private final int maxParticles;
+
+	//Whether the game's Schedule was a TimingWheelSchedule
+	private final boolean timingWheel;
+
+	/*
+	 * Made by take() and read(), which check the header.
+	 */
+	private Snapshot(byte[] data) throws IOException
+	{
+		this.data = data;
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if(in.readInt() != MAGIC)
+			throw new IOException("not a snapshot");
+		short version = in.readShort();
+		if(version != VERSION)
+			throw new IOException("a version " + version + " snapshot, not version " + VERSION);
+
+		ticks = in.readLong();
+		players = in.readByte();
+		in.readByte();
+		width = in.readInt();
+		height = in.readInt();
+		maxParticles = in.readInt();
+		timingWheel = in.readBoolean();
+	}
+
+	/**
+	 * Saves a game in memory.  Has to be called between steps, on the thread that steps the
+	 * game, such as from an Agent or with Game.post().
+	 * @param game
+	 * :  A game that has started and isn't over.
+	 * @return
+	 * The snapshot.
+	 */
+	public static Snapshot take(OozeWars game)
+	{
+		if(game.getParticleManager() == null)
+			throw new IllegalStateException("The game hasn't started");
+		if(game.getWinner() >= 0)
+			throw new IllegalStateException("The game is over");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer out = new Writer(bytes);
+		try
+		{
+			write(game, out);
+			out.close();
+			return new Snapshot(bytes.toByteArray());
+		}
+		catch (IOException e)
+		{
+			// nothing written to memory can fail
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads a snapshot file.
+	 * @param file
+	 * :  The file, as written by write().
+	 * @return
+	 * The snapshot.
+	 * @throws IOException
+	 * If the file can't be read or isn't a snapshot.
+	 */
+	public static Snapshot read(File file) throws IOException
+	{
+		byte[] data = Files.readAllBytes(file.toPath());
+		try
+		{
+			return new Snapshot(data);
+		}
+		catch (EOFException e)
+		{
+			throw new IOException(file + " ends in the middle of its header");
+		}
+		catch (IOException e)
+		{
+			throw new IOException(file + " is " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a file.
+	 * @param file
+	 * :  The file to write, replacing it if it is there.
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * @return
+	 * The tick the game was saved after.  The first tick of the restored game is the one after it.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	/**
+	 * @return
+	 * The number of players.
+	 */
+	public int getPlayers()
+	{
+		return players;
+	}
+
+	/**
+	 * @return
+	 * The width of the playing field.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * @return
+	 * The height of the playing field.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * @return
+	 * The most Particles the game lets in at once.
+	 */
+	public int getMaxParticles()
+	{
+		return maxParticles;
+	}
+
+	/**
+	 * @return
+	 * <b>TRUE</b> if the game's Schedule was a TimingWheelSchedule.
+	 */
+	public boolean isTimingWheel()
+	{
+		return timingWheel;
+	}
+
+	/**
+	 * @return
+	 * The number of bytes the snapshot takes up, in memory or in a file.
+	 */
+	public int getSize()
+	{
+		return data.length;
+	}
+
+	/*
+	 * Writes the whole game, header first.
+	 */
+	private static void write(OozeWars game, Writer out) throws IOException
+	{
+		Schedule queue = game.queue;
+		ParticleStore store = game.getParticleStore();
+		Collection<Blob> blobs = game.getBlobs();
+		ArrayList<Schedule.Handle> handles = queue.getHandles();
+
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeLong(queue.getTicks());
+		out.writeByte(game.getControls().length);
+		out.writeByte(game.getNumPlayers());
+		out.writeInt(game.getWidth());
+		out.writeInt(game.getHeight());
+		out.writeInt(game.getMaxParticles());
+		out.writeBoolean(queue instanceof TimingWheelSchedule);
+		game.random.writeState(out);
+		out.writeInt(Replay.getMask(game.getControls()));
+
+		out.writeInt(blobs.size());
+		for(Blob b : blobs)
+		{
+			out.blobs.put(b, out.blobs.size());
+			out.writeInt(b.getBlobID());
+		}
+
+		//The stored Particles come first, then any that only a Blob or an Agent still holds
+		for(int i = 0; i < store.size(); i++)
+			out.list(store.get(i));
+		for(Blob b : blobs)
+		{
+			for(Particle p : b.getParticles())
+				out.list(p);
+			out.list(b.getHead());
+		}
+		for(Schedule.Handle handle : handles)
+		{
+			Agent agent = handle.getAgent();
+			if(handle.isCancelled())
+				continue;
+			if(agent instanceof Bullet)
+				out.list((Bullet)agent);
+			else if(agent instanceof PowerUp.Remover)
+				out.list(((PowerUp.Remover)agent).getPowerUp());
+			else if(agent instanceof PowerUp.Effect)
+				out.list(((PowerUp.Effect)agent).getPowerUp());
+		}
+
+		out.writeInt(out.particleList.size());
+		out.writeInt(store.size());
+		for(Particle p : out.particleList)
+		{
+			byte kind = kindOf(p);
+			out.writeByte(kind);
+			if(kind == POWERUP)
+				out.writeByte(((PowerUp)p).getType().ordinal());
+			p.writeState(out);
+		}
+
+		for(Blob b : blobs)
+			b.writeState(out);
+		game.writeNeighborCaches(out);
+
+		writeAgents(game, handles, out);
+	}
+
+	/*
+	 * What kind of Particle it is.  Particles of any other class can't be saved.
+	 */
+	private static byte kindOf(Particle p)
+	{
+		Class<?> c = p.getClass();
+		if(c == Particle.class)
+			return PLAIN;
+		if(c == Head.class)
+			return HEAD;
+		if(c == Bullet.class)
+			return BULLET;
+		if(c == PowerUp.class)
+			return POWERUP;
+		throw new IllegalStateException("Can't save a " + c.getName());
+	}
+
+	/*
+	 * Writes every Agent registered with the Schedule, other than the Recorder, which isn't
+	 * carried over.  The Bots or the Playback are written as a single CONTROLS.
+	 */
+	private static void writeAgents(OozeWars game, ArrayList<Schedule.Handle> handles, Writer out)
+			throws IOException
+	{
+		IdentityHashMap<Schedule.Handle, Blob> owners = new IdentityHashMap<Schedule.Handle, Blob>();
+		for(Blob b : game.getBlobs())
+		{
+			for(Schedule.Handle handle : b.getAgents())
+			{
+				if(handle.isPending())
+					owners.put(handle, b);
+			}
+		}
+
+		ArrayList<Schedule.Handle> written = new ArrayList<Schedule.Handle>();
+		byte[] kinds = new byte[handles.size()];
+		boolean controls = false;
+		for(Schedule.Handle handle : handles)
+		{
+			Agent agent = handle.getAgent();
+			byte kind;
+			if(handle.isCancelled())
+				kind = TOMBSTONE;
+			else if(agent instanceof Replay.Recorder)
+				continue;
+			else if(game.isController(agent))
+			{
+				if(controls)
+					continue;
+				controls = true;
+				kind = CONTROLS;
+			}
+			else if(agent == game.getParticleManager())
+				kind = MANAGER;
+			else if(agent instanceof HealthBar)
+				kind = HEALTH_BAR;
+			else if(agent instanceof Bullet)
+				kind = FIRED_BULLET;
+			else if(agent instanceof Explosion)
+				kind = EXPLOSION;
+			else if(agent instanceof GunEnabler)
+				kind = GUN_ENABLER;
+			else if(agent instanceof PowerUp.Remover)
+				kind = POWERUP_REMOVER;
+			else if(agent instanceof PowerUp.Effect)
+				kind = POWERUP_EFFECT;
+			else
+				throw new IllegalStateException("Can't save " + agent);
+			kinds[written.size()] = kind;
+			written.add(handle);
+		}
+
+		out.writeInt(written.size());
+		for(int i = 0; i < written.size(); i++)
+		{
+			Schedule.Handle handle = written.get(i);
+			Agent agent = handle.getAgent();
+			out.writeByte(kinds[i]);
+			out.writeByte(handle.getPriorityLevel());
+			out.writeLong(handle.getTimestamp());
+			out.writeLong(handle.getInterval());
+			out.writeBlob(owners.get(handle));
+			switch(kinds[i])
+			{
+				case HEALTH_BAR:
+					out.writeBlob(((HealthBar)agent).getBlob());
+					break;
+				case FIRED_BULLET:
+					out.writeParticle((Bullet)agent);
+					break;
+				case EXPLOSION:
+					((Explosion)agent).writeState(out);
+					break;
+				case GUN_ENABLER:
+					out.writeBlob(((GunEnabler)agent).getBlob());
+					break;
+				case POWERUP_REMOVER:
+					PowerUp.Remover remover = (PowerUp.Remover)agent;
+					out.writeParticle(remover.getPowerUp());
+					out.writeBoolean(remover.isScheduled);
+					break;
+				case POWERUP_EFFECT:
+					PowerUp.Effect effect = (PowerUp.Effect)agent;
+					out.writeParticle(effect.getPowerUp());
+					out.writeBoolean(effect.isSet);
+					out.writeDouble(effect.oldComf);
+					out.writeDouble(effect.oldForce);
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/*
+	 * Fills in a game that is being started, and whose ParticleManager has been made, from the
+	 * snapshot.  Called by OozeWars.start() before the Game is started.
+	 */
+	void restore(OozeWars game)
+	{
+		try
+		{
+			restore(game, new Reader(new ByteArrayInputStream(data), game));
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("The snapshot is damaged", e);
+		}
+	}
+
+	/*
+	 * Reads the snapshot into the game.
+	 */
+	private void restore(OozeWars game, Reader in) throws IOException
+	{
+		Schedule queue = game.queue;
+		in.readInt();
+		in.readShort();
+		queue.setTicks(in.readLong());
+		in.readByte();
+		game.setNumPlayers(in.readByte());
+		in.readInt();
+		in.readInt();
+		in.readInt();
+		in.readBoolean();
+		game.random.readState(in);
+		Replay.setControls(in.readInt(), game.getControls());
+
+		//The Blobs are made first and filled in last, since Particles and Blobs refer to each other
+		LinkedHashMap<Integer, Blob> blobs = new LinkedHashMap<Integer, Blob>();
+		in.blobs = new Blob[in.readInt()];
+		for(int i = 0; i < in.blobs.length; i++)
+		{
+			Blob b = new Blob(new ArrayList<Particle>(), game);
+			b.setBlobID(in.readInt());
+			blobs.put(b.getBlobID(), b);
+			in.blobs[i] = b;
+		}
+		game.setBlobs(blobs);
+
+		in.particles = new Particle[in.readInt()];
+		int stored = in.readInt();
+		for(int i = 0; i < in.particles.length; i++)
+		{
+			Particle p;
+			switch(in.readByte())
+			{
+				case PLAIN:
+					p = new Particle(0, 0, 1, Color.WHITE, 0);
+					break;
+				case HEAD:
+					p = new Head(0, 0, 1, Color.WHITE, 0, 0);
+					break;
+				case BULLET:
+					p = new Bullet(0, 0, 1, Color.WHITE, 0, 0, 0);
+					break;
+				case POWERUP:
+					p = new PowerUp(PowerUp.Type.values()[in.readByte()], game);
+					break;
+				default:
+					throw new IOException("Unknown kind of Particle");
+			}
+			p.readState(in);
+			in.particles[i] = p;
+		}
+		for(int i = 0; i < stored; i++)
+			game.addParticle(in.particles[i]);
+
+		for(Blob b : in.blobs)
+			b.readState(in);
+		game.readNeighborCaches(in);
+
+		for(int i = in.readInt(); i > 0; i--)
+		{
+			byte kind = in.readByte();
+			int level = in.readByte();
+			long timestep = in.readLong();
+			long interval = in.readLong();
+			Blob owner = in.readBlob();
+			Agent agent;
+			switch(kind)
+			{
+				case TOMBSTONE:
+					queue.scheduleTombstone(timestep, level);
+					continue;
+				case CONTROLS:
+					game.scheduleControllers();
+					continue;
+				case MANAGER:
+					agent = game.getParticleManager();
+					break;
+				case HEALTH_BAR:
+					agent = in.readBlob().getHealthBar();
+					break;
+				case FIRED_BULLET:
+					Bullet bullet = (Bullet)in.readParticle();
+					game.addSprite(bullet, 1);
+					agent = bullet;
+					break;
+				case EXPLOSION:
+					Explosion explosion = new Explosion();
+					explosion.readState(in);
+					game.addSprite(explosion, 2);
+					agent = explosion;
+					break;
+				case GUN_ENABLER:
+					agent = new GunEnabler(in.readBlob());
+					break;
+				case POWERUP_REMOVER:
+					PowerUp.Remover remover = ((PowerUp)in.readParticle()).new Remover();
+					remover.isScheduled = in.readBoolean();
+					agent = remover;
+					break;
+				case POWERUP_EFFECT:
+					PowerUp.Effect effect = ((PowerUp)in.readParticle()).new Effect();
+					effect.isSet = in.readBoolean();
+					effect.oldComf = in.readDouble();
+					effect.oldForce = in.readDouble();
+					agent = effect;
+					break;
+				default:
+					throw new IOException("Unknown kind of Agent");
+			}
+
+			Schedule.Handle handle;
+			if(interval > 0)
+			{
+				handle = queue.scheduleRepeating(interval, level, agent);
+				handle.timestep = timestep;
+				if(agent instanceof Entity)
+					((Entity)agent).repeating = handle;
+			}
+			else
+				handle = queue.schedule(timestep, level, agent);
+
+			if(agent instanceof PowerUp.Remover)
+				((PowerUp.Remover)agent).getPowerUp().setRemover(handle);
+			if(owner != null)
+				owner.addAgent(handle);
+		}
+	}
+
+	/*
+	 * Writes a snapshot, turning each Particle and Blob referred to into its place in the
+	 * snapshot's lists of them.
+	 */
+	static class Writer extends DataOutputStream
+	{
+		//Every Particle in the snapshot, and each one's place in the list
+		final ArrayList<Particle> particleList = new ArrayList<Particle>();
+		final IdentityHashMap<Particle, Integer> particles = new IdentityHashMap<Particle, Integer>();
+
+		//Each Blob's place in the list of Blobs
+		final IdentityHashMap<Blob, Integer> blobs = new IdentityHashMap<Blob, Integer>();
+
+		Writer(OutputStream out)
+		{
+			super(out);
+		}
+
+		/*
+		 * Puts a Particle in the list, if it isn't already.
+		 */
+		void list(Particle p)
+		{
+			if(p != null && !particles.containsKey(p))
+			{
+				particles.put(p, particleList.size());
+				particleList.add(p);
+			}
+		}
+
+		/*
+		 * Writes a Particle's place in the list, or -1 for null.
+		 */
+		void writeParticle(Particle p) throws IOException
+		{
+			Integer place = p == null ? Integer.valueOf(-1) : particles.get(p);
+			if(place == null)
+				throw new IllegalStateException(p + " isn't held by anything in the game");
+			writeInt(place);
+		}
+
+		/*
+		 * Writes a Blob's place in the list, or -1 for null.
+		 */
+		void writeBlob(Blob b) throws IOException
+		{
+			Integer place = b == null ? Integer.valueOf(-1) : blobs.get(b);
+			if(place == null)
+				throw new IllegalStateException("Blob " + b.getBlobID() + " is no longer in the game");
+			writeInt(place);
+		}
+
+		/*
+		 * Writes a Color, which may be null.
+		 */
+		void writeColor(Color color) throws IOException
+		{
+			writeBoolean(color != null);
+			if(color != null)
+				writeInt(color.getRGB());
+		}
+	}
+
+	/*
+	 * Reads a snapshot back, turning places in the snapshot's lists back into the Particles and
+	 * Blobs made for them.
+	 */
+	static class Reader extends DataInputStream
+	{
+		private final OozeWars game;
+
+		//The Particles and Blobs made so far
+		Particle[] particles;
+		Blob[] blobs;
+
+		Reader(InputStream in, OozeWars game)
+		{
+			super(in);
+			this.game = game;
+		}
+
+		/*
+		 * The game being restored.
+		 */
+		OozeWars getGame()
+		{
+			return game;
+		}
+
+		Particle readParticle() throws IOException
+		{
+			int place = readInt();
+			return place < 0 ? null : particles[place];
+		}
+
+		Blob readBlob() throws IOException
+		{
+			int place = readInt();
+			return place < 0 ? null : blobs[place];
+		}
+
+		Color readColor() throws IOException
+		{
+			return readBoolean() ? new Color(readInt(), true) : null;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+/**
+	SNAPSHOTSPRITE.JAVA
+
+	A Sprite that draws state the Schedule changes.  When the game is simulation-threaded it isn't registered with
+	the View at all: the simulation thread copies what it would draw into a RenderSnapshot after every step, and
+	the View draws the copy.
+*/
+
+package oozeWars;
+
+public interface SnapshotSprite extends Sprite
+{
+	public void snapshot(RenderSnapshot frame);
+}
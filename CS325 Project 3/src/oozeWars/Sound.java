@@ -17,6 +17,10 @@ import java.net.*;
 	you're playing.  The second case is best if you have a short sound that you're playing or intend on
 	playing the sound many times.  If you sound is very long, do not load it into a memory buffer.
 
+	<p>A preloaded sound that is played with <b>play()</b> doesn't get a thread or a line of its own.
+	It is handed to the default AudioMixer, which mixes every such sound into one line.  Its volume
+	can be set with <b>setGain()</b>.
+
 	<p>You can play a Sound in any of three ways:
 
 	<ul>
@@ -46,6 +50,14 @@ public class Sound
 	// Preloaded sound.  If null, we're not preloading
 	byte[] buffer = null;
 
+	// Preloaded sound in the mixer's format, and the mixer it plays through.  If null, one-shot
+	// sounds get a line of their own
+	short[] samples = null;
+	AudioMixer mixer = null;
+
+	// The volume one-shot sounds are mixed at
+	volatile float gain = 1;
+
 	// Input stream, used if we've preloaded our sound
 	AudioInputStream stream;
 
@@ -105,10 +117,6 @@ public class Sound
 		{
 		stream = getStream();
 		AudioFormat format = stream.getFormat( );
-		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-		SourceDataLine line = (SourceDataLine)(AudioSystem.getLine(info));
-		line.open(format);
-		line.start( );
 
 		// build the buffer using a linked list of little buffers
 		byte[] b = new byte[DEFAULT_BUFFER_SIZE];
@@ -140,13 +148,42 @@ public class Sound
 			System.arraycopy(b, 0, buffer, pos, b.length); 
 			pos += b.length;
 			}
+
+		// one-shot sounds are mixed together rather than each getting a line
+		AudioMixer m = AudioMixer.getDefault();
+		if (m != null)
+			samples = m.load(format, buffer);
+		if (samples != null)
+			mixer = m;
+		else  // make sure there's a line for the sound to play on
+			{
+			DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+			SourceDataLine line = (SourceDataLine)(AudioSystem.getLine(info));
+			line.open(format);
+			line.close();
+			}
+		}
+
+	/** Sets the volume the sound is played at by play(), where 1 leaves it as it is.  Only sounds
+		played through the mixer have a volume. */
+	public void setGain(float gain)
+		{
+		this.gain = gain;
+		}
+
+	/** Returns the volume the sound is played at by play(). */
+	public float getGain()
+		{
+		return gain;
 		}
 
 	/** Plays the sound once in a non-stoppable fashion.  If you call this method again while this sound is
-		still playing, both sounds will overlap.  You dont' have to wait for the sound to complete first.  */
-	public synchronized void play()
+		still playing, both sounds will overlap.  You dont' have to wait for the sound to complete first.
+		A preloaded sound is only queued for the mixer, so this never blocks. */
+	public void play()
 		{
-		play(false, true);
+		if (mixer != null) mixer.play(samples, gain);
+		else play(false, true);
 		}
 
 	/** Plays the sound in a stoppable fashion.  If <i>loop</i> is true, loops the sound indefinitely.
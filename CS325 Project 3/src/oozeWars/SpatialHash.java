@@ -0,0 +1,354 @@
+package oozeWars;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <center><b>SPATIALHASH.JAVA</b></center>
+ * A uniform grid that buckets Particles by location so that neighbor searches only
+ * have to look at Particles in the same or adjacent cells.
+ *
+ * <p>The grid covers the playing field with square cells of a given width.  Positions
+ *    outside of the playing field are clamped into the border cells, so every Particle
+ *    always has a cell.  As long as the cell width is at least as large as the range of
+ *    influence of a Particle, any two Particles that can affect each other are guaranteed
+ *    to be in the same cell or in one of the eight cells around it.
+ *
+ * <p>Particles are identified by their index in <i>allParticles</i>.  Each cell keeps a
+ *    doubly linked list of the indices inside it, stored in plain int arrays, so moving a
+ *    Particle from one cell to another is constant time and the grid can be updated
+ *    incrementally every tick instead of being rebuilt.
+ */
+public class SpatialHash
+{
+	//Marks an empty cell or the end of a cell's list
+	public static final int NONE = -1;
+
+	//The width of a single cell, and its inverse
+	private final double cellWidth, invCellWidth;
+
+	//The number of cells across and down the playing field
+	private final int columns, rows;
+
+	//The first Particle index in each cell
+	private final int[] cellHead;
+
+	//For each Particle index: the cell it is in, and its neighbors in that cell's list
+	private int[] cellOf, next, prev;
+
+	/**
+	 * Creates a grid covering a playing field of the given size.
+	 * @param cellWidth
+	 * :  The width of each square cell.  Should be no smaller than the range of influence.
+	 * @param width
+	 * :  The width of the playing field.
+	 * @param height
+	 * :  The height of the playing field.
+	 * @param capacity
+	 * :  The number of Particles the grid initially has room for.  It will grow as needed.
+	 */
+	public SpatialHash(double cellWidth, double width, double height, int capacity)
+	{
+		if(cellWidth <= 0)
+			throw new IllegalArgumentException("Invalid cell width");
+
+		this.cellWidth = cellWidth;
+		invCellWidth = 1.0 / cellWidth;
+		columns = Math.max(1, (int)Math.ceil(width * invCellWidth));
+		rows = Math.max(1, (int)Math.ceil(height * invCellWidth));
+
+		cellHead = new int[columns * rows];
+		Arrays.fill(cellHead, NONE);
+
+		capacity = Math.max(capacity, 16);
+		cellOf = new int[capacity];
+		next = new int[capacity];
+		prev = new int[capacity];
+		Arrays.fill(cellOf, NONE);
+	}
+
+	/**
+	 * @return
+	 * The width of a single cell.
+	 */
+	public double getCellWidth()
+	{
+		return cellWidth;
+	}
+
+	/**
+	 * @return
+	 * The number of cells across the playing field.
+	 */
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * @return
+	 * The number of cells down the playing field.
+	 */
+	public int getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * Finds the cell that a location falls in.  Locations off of the playing field are
+	 * clamped into the nearest border cell.
+	 * @return
+	 * The index of the cell, in row-major order.
+	 */
+	public int cellFor(double x, double y)
+	{
+		int cx = (int)(x * invCellWidth);
+		int cy = (int)(y * invCellWidth);
+
+		if(x < 0 || cx < 0)
+			cx = 0;
+		else if(cx >= columns)
+			cx = columns - 1;
+
+		if(y < 0 || cy < 0)
+			cy = 0;
+		else if(cy >= rows)
+			cy = rows - 1;
+
+		return cy * columns + cx;
+	}
+
+	/**
+	 * Puts the Particle with the given index in the cell for its current location.  If the
+	 * Particle is already in that cell nothing changes, so calling this every tick only costs
+	 * real work for the Particles that crossed a cell boundary.
+	 * @param index
+	 * :  The index of the Particle in <i>allParticles</i>.
+	 * @param x
+	 * :  The current x location of the Particle.
+	 * @param y
+	 * :  The current y location of the Particle.
+	 */
+	public void update(int index, double x, double y)
+	{
+		ensureCapacity(index + 1);
+
+		int cell = cellFor(x, y);
+		int old = cellOf[index];
+
+		if(old == cell)
+			return;
+
+		if(old != NONE)
+			unlink(index);
+		link(index, cell);
+	}
+
+	/**
+	 * Takes the Particle with the given index out of the grid.
+	 * @param index
+	 * :  The index of the Particle in <i>allParticles</i>.
+	 */
+	public void remove(int index)
+	{
+		if(index < cellOf.length && cellOf[index] != NONE)
+			unlink(index);
+	}
+
+	/**
+	 * Relabels the Particle at one index as living at another.  This mirrors the
+	 * swap-with-last removal used by <i>allParticles</i>: the destination index must not
+	 * currently be in the grid.
+	 * @param from
+	 * :  The index the Particle used to have.
+	 * @param to
+	 * :  The index the Particle has now.
+	 */
+	public void move(int from, int to)
+	{
+		if(from == to || from >= cellOf.length || cellOf[from] == NONE)
+			return;
+
+		ensureCapacity(to + 1);
+
+		int cell = cellOf[from];
+		int n = next[from];
+		int p = prev[from];
+
+		cellOf[to] = cell;
+		next[to] = n;
+		prev[to] = p;
+
+		if(p == NONE)
+			cellHead[cell] = to;
+		else
+			next[p] = to;
+
+		if(n != NONE)
+			prev[n] = to;
+
+		cellOf[from] = NONE;
+	}
+
+	/**
+	 * Empties every cell.
+	 */
+	public void clear()
+	{
+		Arrays.fill(cellHead, NONE);
+		Arrays.fill(cellOf, NONE);
+	}
+
+	/**
+	 * @param cell
+	 * :  The index of a cell, in row-major order.
+	 * @return
+	 * The first Particle index in that cell, or <b>NONE</b> if the cell is empty.
+	 */
+	public int first(int cell)
+	{
+		return cellHead[cell];
+	}
+
+	/**
+	 * @param index
+	 * :  The index of a Particle that is in the grid.
+	 * @return
+	 * The next Particle index in the same cell, or <b>NONE</b> if there are no more.
+	 */
+	public int next(int index)
+	{
+		return next[index];
+	}
+
+	/**
+	 * @param index
+	 * :  The index of a Particle.
+	 * @return
+	 * The cell the Particle is currently in, or <b>NONE</b> if it is not in the grid.
+	 */
+	public int cellOf(int index)
+	{
+		return index < cellOf.length ? cellOf[index] : NONE;
+	}
+
+	/**
+	 * Writes the grid's state: its size in cells, then the cell of every Particle index in use and
+	 * the index after it in that cell's list.
+	 * @param out
+	 * :  Where to write it.
+	 * @param count
+	 * :  The number of Particle indices in use.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out, int count) throws IOException
+	{
+		out.writeInt(columns);
+		out.writeInt(rows);
+		out.writeInt(count);
+		for(int i = 0; i < count; i++)
+		{
+			int cell = cellOf(i);
+			out.writeInt(cell);
+			out.writeInt(cell == NONE ? NONE : next[i]);
+		}
+	}
+
+	/**
+	 * Puts the grid back in a state written by writeState(), with every cell listing the same
+	 * Particle indices in the same order.  If the grid that wrote it had a different number of
+	 * cells the grid is left empty instead, to be filled again by update().
+	 * @param in
+	 * :  Where to read the state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException
+	{
+		boolean fits = in.readInt() == columns;
+		fits &= in.readInt() == rows;
+		int count = in.readInt();
+		clear();
+		ensureCapacity(count);
+
+		for(int i = 0; i < count; i++)
+		{
+			int cell = in.readInt();
+			int n = in.readInt();
+			if(fits)
+			{
+				cellOf[i] = cell;
+				next[i] = n;
+				prev[i] = NONE;
+			}
+		}
+		if(!fits)
+			return;
+
+		// each list is put back together from the index after each one
+		for(int i = 0; i < count; i++)
+		{
+			if(cellOf[i] != NONE && next[i] != NONE)
+				prev[next[i]] = i;
+		}
+		for(int i = 0; i < count; i++)
+		{
+			if(cellOf[i] != NONE && prev[i] == NONE)
+				cellHead[cellOf[i]] = i;
+		}
+	}
+
+	/*
+	 * Pushes a Particle index onto the front of a cell's list.
+	 */
+	private void link(int index, int cell)
+	{
+		int head = cellHead[cell];
+		cellOf[index] = cell;
+		prev[index] = NONE;
+		next[index] = head;
+		if(head != NONE)
+			prev[head] = index;
+		cellHead[cell] = index;
+	}
+
+	/*
+	 * Takes a Particle index out of whichever cell's list it is in.
+	 */
+	private void unlink(int index)
+	{
+		int cell = cellOf[index];
+		int n = next[index];
+		int p = prev[index];
+
+		if(p == NONE)
+			cellHead[cell] = n;
+		else
+			next[p] = n;
+
+		if(n != NONE)
+			prev[n] = p;
+
+		cellOf[index] = NONE;
+	}
+
+	/**
+	 * Grows the per-Particle arrays so that they can hold the given number of indices, so that
+	 * they don't have to grow later while the grid is updated.
+	 * @param size
+	 * :  The number of indices the grid will have room for.
+	 */
+	public void ensureCapacity(int size)
+	{
+		if(size <= cellOf.length)
+			return;
+
+		int newSize = Math.max(size, cellOf.length * 2);
+		int oldSize = cellOf.length;
+		cellOf = Arrays.copyOf(cellOf, newSize);
+		next = Arrays.copyOf(next, newSize);
+		prev = Arrays.copyOf(prev, newSize);
+		Arrays.fill(cellOf, oldSize, newSize, NONE);
+	}
+}
@@ -0,0 +1,207 @@
+package oozeWars;
+
+import java.awt.Graphics2D;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <center><b>SPRITECACHE.JAVA</b></center>
+ * The images Particles are drawn with, already blurred and tinted, shared by every Particle
+ *    of the same size and color.  Drawing a Particle is then a single blit of a cached image.
+ *
+ * <p>Sprites are keyed by a Particle's half width, which is its radius rounded down plus the
+ *    blur, and by its color.  While a Particle fades from one color to another its color is
+ *    rounded to COLOR_STEPS levels per channel, so a fade only ever needs a handful of sprites.
+ *    Once the fade is done the exact color is used.  The least recently used sprites are
+ *    dropped once there are more than MAX_SPRITES of them.
+ *
+ * <p>The cache is only used by the thread drawing the View.
+ */
+public class SpriteCache
+{
+	//The number of levels each color channel is rounded to while a color is fading
+	public static final int COLOR_STEPS = 16;
+
+	//The most sprites kept at once
+	public static final int MAX_SPRITES = 1024;
+
+	//The tinted sprites, by half width and color, in the order they were last used
+	private static final Map<Long, BufferedImage> sprites = new LinkedHashMap<Long, BufferedImage>(256, .75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest)
+		{
+			return size() > MAX_SPRITES;
+		}
+	};
+
+	//The untinted pixels of a white sprite of each half width, which every tint is made from
+	private static final Map<Integer, int[]> shapes = new LinkedHashMap<Integer, int[]>();
+
+	/*
+	 * Not meant to be instantiated.
+	 */
+	private SpriteCache()
+	{
+	}
+
+	/**
+	 * Draws a sprite centered at the given location.
+	 * @param graphics
+	 * :  The graphics the sprite will be drawn on.
+	 * @param halfWidth
+	 * :  The half width of the sprite.
+	 * @param rgb
+	 * :  The color of the sprite.
+	 * @param fading
+	 * :  <b>TRUE</b> if the color is still fading, so it can be rounded.
+	 * @param scale
+	 * :  The scale the sprite is drawn at.
+	 * @param x
+	 * :  The x location of the center of the sprite.
+	 * @param y
+	 * :  The y location of the center of the sprite.
+	 */
+	public static void draw(Graphics2D graphics, int halfWidth, int rgb, boolean fading,
+			double scale, double x, double y)
+	{
+		BufferedImage sprite = getSprite(halfWidth, fading ? quantize(rgb) : rgb);
+		int left = (int)x - halfWidth, top = (int)y - halfWidth;
+		if(scale == 1)
+			graphics.drawImage(sprite, left, top, null);
+		else
+			graphics.drawImage(sprite, (int)(left * scale), (int)(top * scale),
+					(int)Math.ceil(halfWidth * 2 * scale), (int)Math.ceil(halfWidth * 2 * scale), null);
+	}
+
+	/**
+	 * @param halfWidth
+	 * :  The half width of the sprite.
+	 * @param rgb
+	 * :  The color of the sprite.
+	 * @return
+	 * The sprite of the given half width and color, made now if it isn't cached.
+	 */
+	public static BufferedImage getSprite(int halfWidth, int rgb)
+	{
+		Long key = ((long)halfWidth << 32) | (rgb & 0xffffffffL);
+		BufferedImage sprite = sprites.get(key);
+		if(sprite == null)
+		{
+			sprite = tint(getShape(halfWidth), halfWidth * 2, rgb);
+			sprites.put(key, sprite);
+		}
+		return sprite;
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	public static void clear()
+	{
+		sprites.clear();
+		shapes.clear();
+	}
+
+	/**
+	 * @return
+	 * The number of tinted sprites in the cache.
+	 */
+	public static int size()
+	{
+		return sprites.size();
+	}
+
+	/*
+	 * Rounds each channel of a color to one of COLOR_STEPS levels.
+	 */
+	private static int quantize(int rgb)
+	{
+		int r = (rgb >> 16) & 0xff, g = (rgb >> 8) & 0xff, b = rgb & 0xff;
+		int max = COLOR_STEPS - 1;
+		r = (r * max + 127) / 255 * 255 / max;
+		g = (g * max + 127) / 255 * 255 / max;
+		b = (b * max + 127) / 255 * 255 / max;
+		return (rgb & 0xff000000) | (r << 16) | (g << 8) | b;
+	}
+
+	/*
+	 * Scales the red, green and blue of every pixel of a white sprite by a color, keeping its
+	 * alpha.
+	 */
+	private static BufferedImage tint(int[] pixels, int size, int rgb)
+	{
+		int r = (rgb >> 16) & 0xff;
+		int g = (rgb >> 8) & 0xff;
+		int b = rgb & 0xff;
+		int[] tinted = new int[pixels.length];
+		for( int i = 0; i < pixels.length; i++ )
+		{
+			int px = pixels[i];
+			tinted[i] = (px & 0xff000000)
+				| ((((px >> 16) & 0xff) * r / 255) << 16)
+				| ((((px >> 8) & 0xff) * g / 255) << 8)
+				| ((px & 0xff) * b / 255);
+		}
+		BufferedImage sprite = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
+		sprite.getRaster().setDataElements(0, 0, size, size, tinted);
+		return sprite;
+	}
+
+	/*
+	 * The pixels of a white sprite of the given half width, made the first time it is needed.
+	 */
+	private static int[] getShape(int halfWidth)
+	{
+		int[] pixels = shapes.get(halfWidth);
+		if(pixels == null)
+		{
+			pixels = createShape(halfWidth);
+			shapes.put(halfWidth, pixels);
+		}
+		return pixels;
+	}
+
+	/*
+	 * Draws a blurred white circle that fills a square twice the half width across, with an
+	 * alpha that falls off smoothly from the center.
+	 */
+	private static int[] createShape(int halfWidth)
+	{
+		int size = halfWidth * 2;
+		BufferedImage img = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.white);
+		g.fillOval(0, 0, size, size);
+		g.dispose();
+
+		// replacing blur with calculated alpha
+		int[] pixels = new int[size*size];
+		img.getRaster().getDataElements( 0, 0, size, size, pixels );
+		float invWidth = 1.f / (float)(halfWidth);
+		for( int y = 0; y < size; ++y)
+		{
+			for( int x = 0; x < size; ++x)
+			{
+				float dx = invWidth*(halfWidth - x);
+				float dy = invWidth*(halfWidth - y);
+				int alpha;
+				float r2 = dx*dx + dy*dy;
+				if(r2 > 1.f)
+					alpha = 0;
+				else
+				{
+					float q = (1.f - r2);
+					alpha = (int)(q*q*255.f);
+				}
+				int px = pixels[y*size+x];
+				pixels[y*size+x] = px & 0xffffff | (alpha << 24);
+			}
+		}
+		return pixels;
+	}
+}
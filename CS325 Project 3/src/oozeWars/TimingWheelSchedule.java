@@ -0,0 +1,306 @@
+/**
+	TIMINGWHEELSCHEDULE.JAVA
+
+	A Schedule that keeps its Agents in hierarchical timing wheels instead of binary heaps.  It has exactly the
+	same schedule(...), scheduleIn(...), step(...) and clear() behavior as Schedule, and is chosen when the Game
+	is constructed.
+
+	<p>Each priority level has LEVELS wheels of SLOTS slots.  The lowest wheel has one slot per tick, each wheel
+	above it has one slot per full turn of the wheel below it, and Agents too far in the future for even the top
+	wheel wait in an overflow list.  Each slot is a linked list of Agents, so registering an Agent is just working
+	out its slot and appending to it, no matter how many Agents are registered.  When the lowest wheel comes
+	around to the start of a turn, the next slot of the wheel above is emptied and its Agents are spread out over
+	the wheel below, and so on up.  Most Agents in a game reschedule themselves for the very next tick and never
+	leave the lowest wheel.
+
+	<p>Agents registered with scheduleRepeating(...) are kept by Schedule itself and never enter the wheels.
+	Agents registered for the same timestep and priority level are fired in the order they were registered.
+	Each link holding an Agent is also the Handle returned for it.  Cancelled links stay in their slot until it
+	fires or the links are compacted, exactly like the tombstones in Schedule's heaps.
+*/
+
+package oozeWars;
+
+import java.util.List;
+
+public class TimingWheelSchedule extends Schedule
+{
+	private static final int SLOT_BITS = 6;						// the number of bits of the time each wheel covers
+	private static final int SLOTS = 1 << SLOT_BITS;			// the number of slots in each wheel
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;						// the number of wheels per priority level
+	private static final long SPAN = 1L << (SLOT_BITS * LEVELS);	// the number of ticks the wheels can hold
+
+	// private members
+	private long now = 0;						// the current time, counted from one tick before EPOCH so it starts at 0
+	private Node[][][] heads, tails;			// the first and last link in each slot, indexed [priority][wheel][slot]
+	private Node[] overflowHeads, overflowTails;	// the Agents too far in the future for the wheels, per priority level
+	private int[] sizes;						// the number of links, including cancelled ones, per priority level
+
+	/** Creates a TimingWheelSchedule with the given number of priority levels.  Typically this is called from
+		the Game constructor itself, and you'd not call it. */
+	public TimingWheelSchedule(int priorityLevels)
+	{
+		super(priorityLevels);
+		heads = new Node[priorityLevels][LEVELS][SLOTS];
+		tails = new Node[priorityLevels][LEVELS][SLOTS];
+		overflowHeads = new Node[priorityLevels];
+		overflowTails = new Node[priorityLevels];
+		sizes = new int[priorityLevels];
+	}
+
+	/** Moves the wheels on to the given time.  Every wheel has to be moved on before any Agent fires, since
+		Agents may register at any priority level. */
+	@Override
+	protected void advance(long ticks)
+	{
+		now = toClock(ticks);
+		for(int i = 0; i < heads.length; i++)
+			cascade(i);
+	}
+
+	/** Fires every Agent in the current slot of the lowest wheel of the given priority level, skipping the
+		cancelled ones. */
+	@Override
+	protected void fire(final Game game, long ticks, int priorityLevel)
+	{
+		int slot = (int)(now & SLOT_MASK);
+		int clearsBefore = getClears();
+
+		Node node = heads[priorityLevel][0][slot];
+		heads[priorityLevel][0][slot] = tails[priorityLevel][0][slot] = null;
+
+		while(node != null)
+		{
+			Node next = node.next;
+			node.next = null;
+			sizes[priorityLevel]--;
+			if(node.cancelled)
+				discarded(priorityLevel);
+			else
+			{
+				node.schedule = null;
+				go(node.agent, game, ticks, priorityLevel);
+			}
+			node = next;
+
+			// an Agent cleared the Schedule: the rest of this slot was cleared along with it
+			if(getClears() != clearsBefore)
+			{
+				expireAll(node);
+				return;
+			}
+		}
+	}
+
+	/** Appends the Agent to the slot for its timestep. */
+	@Override
+	protected Handle insert(long timestep, int priorityLevel, Agent agent)
+	{
+		Node node = new Node(this, agent, timestep, priorityLevel);
+		add(priorityLevel, node);
+		sizes[priorityLevel]++;
+		return node;
+	}
+
+	/** Adds every link of the given priority level, cancelled ones included, to the list one slot at a time and
+		in order within each slot.  Each link lands back in the same slot, in the same order, when they are
+		inserted again at the same time. */
+	@Override
+	protected void collect(int priorityLevel, List<Handle> handles)
+	{
+		for(int level = 0; level < LEVELS; level++)
+		{
+			for(int slot = 0; slot < SLOTS; slot++)
+			{
+				for(Node node = heads[priorityLevel][level][slot]; node != null; node = node.next)
+					handles.add(node);
+			}
+		}
+		for(Node node = overflowHeads[priorityLevel]; node != null; node = node.next)
+			handles.add(node);
+	}
+
+	/** Moves the empty wheels to the given time as well. */
+	@Override
+	public void setTicks(long ticks)
+	{
+		super.setTicks(ticks);
+		now = toClock(ticks);
+	}
+
+	/** Returns the number of links, including cancelled ones, in the wheels and overflow list of the given
+		priority level. */
+	@Override
+	protected int size(int priorityLevel)
+	{
+		return sizes[priorityLevel];
+	}
+
+	/** Unlinks every cancelled link of the given priority level, keeping the rest in order. */
+	@Override
+	protected int compact(int priorityLevel)
+	{
+		int removed = 0;
+		for(int level = 0; level < LEVELS; level++)
+		{
+			Node[] levelHeads = heads[priorityLevel][level];
+			Node[] levelTails = tails[priorityLevel][level];
+			for(int slot = 0; slot < SLOTS; slot++)
+			{
+				if(levelHeads[slot] == null)
+					continue;
+				Node before = levelHeads[slot];
+				levelHeads[slot] = levelTails[slot] = null;
+				removed += relink(levelHeads, levelTails, slot, before);
+			}
+		}
+
+		Node before = overflowHeads[priorityLevel];
+		overflowHeads[priorityLevel] = overflowTails[priorityLevel] = null;
+		removed += relink(overflowHeads, overflowTails, priorityLevel, before);
+
+		sizes[priorityLevel] -= removed;
+		return removed;
+	}
+
+	/** Clears out the entire Schedule, removing all Agents registered with it. */
+	@Override
+	public void clear()
+	{
+		super.clear();
+
+		for(int i = 0; i < heads.length; i++)
+		{
+			for(int level = 0; level < LEVELS; level++)
+			{
+				for(int slot = 0; slot < SLOTS; slot++)
+				{
+					expireAll(heads[i][level][slot]);
+					heads[i][level][slot] = tails[i][level][slot] = null;
+				}
+			}
+			expireAll(overflowHeads[i]);
+			overflowHeads[i] = overflowTails[i] = null;
+			sizes[i] = 0;
+		}
+		now = 0;
+	}
+
+	/* Converts a timestep into the time used by the wheels. */
+	private static long toClock(long timestep)
+	{
+		return timestep - (EPOCH - 1);
+	}
+
+	/* Puts a link into the lowest wheel whose current turn it falls in, or the overflow list if it is beyond all
+	   of them.  A link falls in the current turn of a wheel when its time only differs from now in the bits that
+	   wheel and the ones below it cover. */
+	private void add(int priorityLevel, Node node)
+	{
+		long clock = toClock(node.timestep);
+		long diff = clock ^ now;
+		int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+
+		if(level >= LEVELS)
+		{
+			if(overflowTails[priorityLevel] == null)
+				overflowHeads[priorityLevel] = node;
+			else
+				overflowTails[priorityLevel].next = node;
+			overflowTails[priorityLevel] = node;
+			return;
+		}
+
+		int slot = (int)((clock >>> (SLOT_BITS * level)) & SLOT_MASK);
+		Node[] levelTails = tails[priorityLevel][level];
+		if(levelTails[slot] == null)
+			heads[priorityLevel][level][slot] = node;
+		else
+			levelTails[slot].next = node;
+		levelTails[slot] = node;
+	}
+
+	/* Whenever a wheel starts a new turn, empties the slot for that turn in the wheel above it into the wheels
+	   below.  The top wheels go first, since their links may land in a slot that is about to be emptied. */
+	private void cascade(int priorityLevel)
+	{
+		if((now & (SPAN - 1)) == 0)
+		{
+			Node node = overflowHeads[priorityLevel];
+			overflowHeads[priorityLevel] = overflowTails[priorityLevel] = null;
+			readd(priorityLevel, node);
+		}
+
+		for(int level = LEVELS - 1; level > 0; level--)
+		{
+			if((now & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+				continue;
+
+			int slot = (int)((now >>> (SLOT_BITS * level)) & SLOT_MASK);
+			Node node = heads[priorityLevel][level][slot];
+			heads[priorityLevel][level][slot] = tails[priorityLevel][level][slot] = null;
+			readd(priorityLevel, node);
+		}
+	}
+
+	/* Puts every link in a list back into the wheels, keeping their order. */
+	private void readd(int priorityLevel, Node node)
+	{
+		while(node != null)
+		{
+			Node next = node.next;
+			node.next = null;
+			add(priorityLevel, node);
+			node = next;
+		}
+	}
+
+	/* Appends the links of a list that have not been cancelled to the (emptied) list at the given index of
+	   listHeads and listTails, and returns how many were left out. */
+	private static int relink(Node[] listHeads, Node[] listTails, int index, Node node)
+	{
+		int removed = 0;
+		while(node != null)
+		{
+			Node next = node.next;
+			node.next = null;
+			if(node.cancelled)
+				removed++;
+			else
+			{
+				if(listTails[index] == null)
+					listHeads[index] = node;
+				else
+					listTails[index].next = node;
+				listTails[index] = node;
+			}
+			node = next;
+		}
+		return removed;
+	}
+
+	/* Cancels every link in a list whose Agents were cleared, and unlinks them. */
+	private static void expireAll(Node node)
+	{
+		while(node != null)
+		{
+			Node next = node.next;
+			node.next = null;
+			node.expire();
+			node = next;
+		}
+	}
+
+	/** A single link in a slot's list, holding an Agent and the timestep to fire it.  It is also the Agent's
+		Handle. */
+	static class Node extends Handle
+	{
+		Node next;
+
+		Node(Schedule schedule, Agent agent, long timestep, int priorityLevel)
+		{
+			super(schedule, agent, timestep, priorityLevel);
+		}
+	}
+}
@@ -11,6 +11,8 @@
 	When the View is repainting, it will call all the Sprites in layer 0 (in arbitrary order), then all the sprites in
 	layer 1, then all the Sprites in layer 2, and so on.  This means that Sprites in higher layers will be drawn on top
 	of Sprites in lower layers.  You can add and delete Sprites from the view at any time.
+	When the Game's Schedule is stepped on a simulation thread, Sprites added or deleted from that thread are queued
+	up and only change the layers when the View next paints.
 	
 	 <p>The View has a convenience method called
 	 setKeystrokeFocus(...), which causes a JFrame (notionally the one holding the View) to cause all keystrokes to
@@ -23,6 +25,7 @@
 
 package oozeWars;
 import java.util.*;
+import java.util.concurrent.*;
 import java.awt.*;
 import javax.swing.*;
 import java.awt.event.*;
@@ -35,6 +38,7 @@ public class View extends JPanel
 	int preferredWidth;			// preferred view width
 	int preferredHeight;		// preferred view height
 	LinkedHashSet<Sprite>[] sprites;	// An array of Sets of sprites, each array element corresponding to a sprite layer
+	final ConcurrentLinkedQueue<Runnable> pendingChanges = new ConcurrentLinkedQueue<Runnable>();	// sprite changes made off the Swing thread, waiting for the next paint
 
 	/** Constructs a View with a given game, number of sprite layers, and preferred width and height.
 		Obviously the game must have already been constructed.  Sets the game's 'view' variable to this
@@ -74,27 +78,53 @@ public class View extends JPanel
 	}
 	
 	/** Adds a sprite for the given layer if it doesn't already exist for that layer. */
-	public void addSprite(Sprite sprite, int layer)
+	public void addSprite(final Sprite sprite, final int layer)
 	{
+		if(isDeferringChanges())
+		{
+			pendingChanges.add(new Runnable() { public void run() { sprites[layer].add(sprite); } });
+			return;
+		}
 		sprites[layer].add(sprite);
 	}
 
 	/** Removes a sprite from the given layer. */
-	public void removeSprite(Sprite sprite, int layer)
+	public void removeSprite(final Sprite sprite, final int layer)
 	{
+		if(isDeferringChanges())
+		{
+			pendingChanges.add(new Runnable() { public void run() { sprites[layer].remove(sprite); } });
+			return;
+		}
 		sprites[layer].remove(sprite);
 	}
 
-	/** Removes all sprites. */
+	/** Removes all sprites, including any changes still waiting for the next paint. */
 	public void clear()
 	{
+		pendingChanges.clear();
 		for(int i = 0; i < sprites.length; i++)
 			sprites[i] = new LinkedHashSet();
 	}
+	
+	/* Sprite changes are queued when they come from some thread other than the Swing thread, which may be painting. */
+	boolean isDeferringChanges()
+	{
+		return game.isSimulationThreaded() && !SwingUtilities.isEventDispatchThread();
+	}
+	
+	/** Makes the sprite changes queued up by the simulation thread.  Called at the start of painting. */
+	protected void applyPendingChanges()
+	{
+		Runnable change;
+		while((change = pendingChanges.poll()) != null)
+			change.run();
+	}
 		
 	/** Paints the View by drawing all the sprites in order.  Painting is done antialiased. */
 	public void paintComponent(Graphics g)
 	{
+		applyPendingChanges();
 		Graphics2D graphics = (Graphics2D) g;
 		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		for(int i = 0; i < sprites.length; i++)